@@ -0,0 +1,75 @@
+package com.szwl.supportbot.assistant.chat;
+
+import com.szwl.supportbot.assistant.config.AgentConfig;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.ToolCallback;
+
+/**
+ * 业务类型的 Agent 配置快照（不可变）
+ *
+ * 配置加载时编译一次：系统提示词模板、顾问、模型参数固化在 ChatClient 中，工具列表解析一次后复用。
+ * 每条消息只需提供会话历史和用户问题；配置变化时由 AgentProfileRegistry 整体替换。
+ *
+ * @param businessType 业务类型
+ * @param systemPromptTemplate 系统提示词模板，包含 {conversation_history} 占位符
+ * @param mcpConfig MCP配置，可以为空
+ * @param chatClient 预先构建的 ChatClient（不含系统提示词与工具，二者按请求传入）
+ * @param tools 解析好的工具
+ * @param mcpToolsResolved 是否成功获取到MCP工具（为 false 时使用默认工具或没有工具）
+ * @param toolsResolvedAtMs 工具解析时间
+ * @param configResolved 业务配置是否读取成功（为 false 时使用通用配置，需要重新读取）
+ * @param configLoadedAtMs 业务配置读取时间
+ */
+public record AgentProfile(String businessType,
+                           String systemPromptTemplate,
+                           AgentConfig.McpConfig mcpConfig,
+                           ChatClient chatClient,
+                           ToolCallback[] tools,
+                           boolean mcpToolsResolved,
+                           long toolsResolvedAtMs,
+                           boolean configResolved,
+                           long configLoadedAtMs) {
+
+    private static final String CONVERSATION_HISTORY_PLACEHOLDER = "{conversation_history}";
+    private static final String EMPTY_HISTORY = "新会话，无历史上下文";
+
+    /**
+     * 填充会话历史，得到本轮的系统提示词
+     */
+    public String renderSystemPrompt(String conversationHistory) {
+        if (systemPromptTemplate == null) {
+            return "";
+        }
+        String history = conversationHistory != null && !conversationHistory.trim().isEmpty() ? conversationHistory : EMPTY_HISTORY;
+        return systemPromptTemplate.replace(CONVERSATION_HISTORY_PLACEHOLDER, history);
+    }
+
+    /**
+     * 工具是否需要重新解析
+     *
+     * @param refreshMs 工具列表刷新间隔，0 表示不定期刷新
+     * @param retryMs MCP工具获取失败后的重试间隔
+     */
+    boolean toolsStale(long nowMs, long refreshMs, long retryMs) {
+        if (mcpConfig == null) {
+            return false;
+        }
+        long age = nowMs - toolsResolvedAtMs;
+        if (!mcpToolsResolved) {
+            return age >= retryMs;
+        }
+        return refreshMs > 0 && age >= refreshMs;
+    }
+
+    /**
+     * 业务配置读取失败，间隔 retryMs 后需要重新加载
+     */
+    boolean configStale(long nowMs, long retryMs) {
+        return !configResolved && nowMs - configLoadedAtMs >= retryMs;
+    }
+
+    AgentProfile withTools(ToolCallback[] newTools, boolean newMcpToolsResolved, long resolvedAtMs) {
+        return new AgentProfile(businessType, systemPromptTemplate, mcpConfig, chatClient, newTools, newMcpToolsResolved, resolvedAtMs,
+                configResolved, configLoadedAtMs);
+    }
+}
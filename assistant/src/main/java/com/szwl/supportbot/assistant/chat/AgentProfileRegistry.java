@@ -0,0 +1,261 @@
+package com.szwl.supportbot.assistant.chat;
+
+import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.assistant.config.DynamicConfigService;
+import com.szwl.supportbot.assistant.mcp.ToolProviderService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 业务类型 Agent 配置注册表
+ *
+ * 每个业务类型在首次使用时从 Nacos 加载一次配置，编译为不可变的 AgentProfile（ChatClient、提示词模板、工具列表），
+ * 之后每条消息直接复用，不再逐条读取 Nacos、创建 ChatClient.Builder 和拉取工具列表。
+ * Nacos 配置变化时重新编译并整体替换；MCP 工具列表按 agent.profile.tools-refresh-ms 定期刷新，
+ * 获取失败时按 agent.profile.tools-retry-ms 重试。刷新在后台线程进行，不阻塞消息处理。
+ * 业务配置读取失败（Nacos 异常、超时）时先用通用配置处理消息，同样按重试间隔在后台重新加载，
+ * 避免一次瞬时故障让该业务类型永久停留在通用配置上。
+ */
+@Slf4j
+@Component
+public class AgentProfileRegistry {
+
+    private static final String DEFAULT_BUSINESS_TYPE = "default";
+    private static final ToolCallback[] NO_TOOLS = new ToolCallback[0];
+
+    private final ChatModel chatModel;
+    private final ToolCallbackProvider defaultTools;
+    private final AgentConfig agentConfig;
+    private final DynamicConfigService dynamicConfigService;
+    private final ToolProviderService toolProviderService;
+    private final long toolsRefreshMs;
+    private final long toolsRetryMs;
+
+    private final Map<String, AgentProfile> profiles = new ConcurrentHashMap<>();
+    private final Set<String> listeningTypes = ConcurrentHashMap.newKeySet();
+    private final Set<String> refreshingTypes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService toolsRefresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "agent-tools-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AgentProfileRegistry(ChatModel chatModel,
+                                ToolCallbackProvider tools,
+                                AgentConfig agentConfig,
+                                DynamicConfigService dynamicConfigService,
+                                ToolProviderService toolProviderService,
+                                @Value("${agent.profile.tools-refresh-ms:300000}") long toolsRefreshMs,
+                                @Value("${agent.profile.tools-retry-ms:30000}") long toolsRetryMs) {
+        this.chatModel = chatModel;
+        this.defaultTools = tools;
+        this.agentConfig = agentConfig;
+        this.dynamicConfigService = dynamicConfigService;
+        this.toolProviderService = toolProviderService;
+        this.toolsRefreshMs = toolsRefreshMs;
+        this.toolsRetryMs = toolsRetryMs;
+    }
+
+    /**
+     * 获取业务类型的 Agent 配置，首次使用时加载并注册 Nacos 监听
+     *
+     * @param businessType 业务类型，为空时使用 default
+     */
+    public AgentProfile get(String businessType) {
+        String type = businessType == null || businessType.trim().isEmpty() ? DEFAULT_BUSINESS_TYPE : businessType;
+        AgentProfile profile = profiles.get(type);
+        if (profile == null) {
+            // 只有首次加载会阻塞；加载（Nacos、MCP 工具列表）在 Map 锁之外进行，并发加载时以先写入者为准
+            AgentProfile loaded = load(type);
+            profile = profiles.putIfAbsent(type, loaded);
+            if (profile == null) {
+                profile = loaded;
+            }
+        }
+        if (listeningTypes.add(type)) {
+            dynamicConfigService.addConfigListener(type, newConfig -> onConfigChange(type, newConfig));
+        }
+        long now = System.currentTimeMillis();
+        if (profile.configStale(now, toolsRetryMs)) {
+            scheduleReload(type, profile);
+        } else if (profile.toolsStale(now, toolsRefreshMs, toolsRetryMs)) {
+            scheduleToolsRefresh(type, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * 用当前的通用配置编译一个不缓存的 Agent 配置（调用方直接指定提示词和MCP配置时使用）
+     */
+    public AgentProfile compile(String systemPrompt, AgentConfig.McpConfig mcpConfig) {
+        AgentConfig.BusinessTypeConfig config = new AgentConfig.BusinessTypeConfig();
+        config.setSystemPrompt(systemPrompt);
+        config.setMcp(mcpConfig);
+        return build(null, config, true);
+    }
+
+    /**
+     * 移除业务类型的 Agent 配置，下次使用时重新加载
+     */
+    public void evict(String businessType) {
+        profiles.remove(businessType);
+    }
+
+    private AgentProfile load(String businessType) {
+        AgentConfig.BusinessTypeConfig businessConfig = dynamicConfigService.getBusinessTypeConfig(businessType);
+        if (businessConfig == null) {
+            log.warn("业务类型 {} 的配置获取失败，暂时使用默认配置，{}ms 后重新加载", businessType, toolsRetryMs);
+        }
+        return build(businessType, businessConfig, businessConfig != null);
+    }
+
+    private void onConfigChange(String businessType, AgentConfig.BusinessTypeConfig newConfig) {
+        try {
+            profiles.put(businessType, build(businessType, newConfig, true));
+            log.info("业务类型 Agent 配置已更新: {}", businessType);
+        } catch (Exception e) {
+            log.error("更新业务类型 Agent 配置失败，继续使用旧配置: {}", businessType, e);
+        }
+    }
+
+    /**
+     * 编译 Agent 配置：业务配置中缺少的提示词和MCP配置使用通用配置
+     */
+    private AgentProfile build(String businessType, AgentConfig.BusinessTypeConfig businessConfig, boolean configResolved) {
+        String systemPrompt = businessConfig != null && businessConfig.getSystemPrompt() != null
+                && !businessConfig.getSystemPrompt().trim().isEmpty()
+                ? businessConfig.getSystemPrompt() : agentConfig.getSystemPrompt();
+        AgentConfig.McpConfig mcpConfig = businessConfig != null && businessConfig.getMcp() != null
+                ? businessConfig.getMcp() : agentConfig.getMcp();
+
+        ChatClient.Builder builder = ChatClient.builder(chatModel)
+                .defaultAdvisors(new SimpleLoggerAdvisor());
+        ToolCallingChatOptions options = chatOptions(businessConfig != null ? businessConfig.getBusiness() : null);
+        if (options != null) {
+            builder.defaultOptions(options);
+        }
+
+        AgentProfile profile = new AgentProfile(businessType, systemPrompt, mcpConfig, builder.build(), NO_TOOLS, false, 0,
+                configResolved, System.currentTimeMillis());
+        profile = refreshTools(profile);
+        log.info("编译业务类型 Agent 配置: businessType={}, systemPromptLength={}, MCP配置: {}, 工具数量: {}",
+                businessType, systemPrompt != null ? systemPrompt.length() : 0,
+                mcpConfig != null ? "已配置" : "未配置", profile.tools().length);
+        return profile;
+    }
+
+    /**
+     * 后台重新加载业务配置读取失败的 Agent 配置，本次调用继续使用当前配置；
+     * 刷新期间配置已被替换（Nacos 配置变化、移除）时丢弃加载结果
+     */
+    private void scheduleReload(String businessType, AgentProfile current) {
+        if (!refreshingTypes.add(businessType)) {
+            return;
+        }
+        try {
+            toolsRefresher.execute(() -> {
+                try {
+                    if (profiles.replace(businessType, current, load(businessType))) {
+                        log.info("业务类型 Agent 配置已重新加载: {}", businessType);
+                    }
+                } catch (Exception e) {
+                    log.warn("重新加载业务类型配置失败: businessType={}, error={}", businessType, e.getMessage());
+                } finally {
+                    refreshingTypes.remove(businessType);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingTypes.remove(businessType);
+        }
+    }
+
+    /**
+     * 后台刷新工具列表，本次调用继续使用当前配置；同一业务类型同时只有一个刷新在进行，
+     * 刷新期间配置已被替换（Nacos 配置变化、移除）时丢弃刷新结果
+     */
+    private void scheduleToolsRefresh(String businessType, AgentProfile current) {
+        if (!refreshingTypes.add(businessType)) {
+            return;
+        }
+        try {
+            toolsRefresher.execute(() -> {
+                try {
+                    AgentProfile refreshed = refreshTools(current);
+                    if (!profiles.replace(businessType, current, refreshed)) {
+                        log.debug("业务类型 Agent 配置已变化，丢弃本次工具刷新: {}", businessType);
+                    }
+                } catch (Exception e) {
+                    log.warn("刷新业务类型工具列表失败: businessType={}, error={}", businessType, e.getMessage());
+                } finally {
+                    refreshingTypes.remove(businessType);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingTypes.remove(businessType);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        toolsRefresher.shutdownNow();
+    }
+
+    /**
+     * 解析工具列表：优先MCP工具，获取不到时使用默认工具
+     */
+    private AgentProfile refreshTools(AgentProfile profile) {
+        long now = System.currentTimeMillis();
+        ToolCallbackProvider mcpTools = toolProviderService.getToolsForConfig(profile.mcpConfig());
+        if (mcpTools != null && mcpTools.getToolCallbacks().length > 0) {
+            return profile.withTools(mcpTools.getToolCallbacks(), true, now);
+        }
+        if (defaultTools != null && defaultTools.getToolCallbacks().length > 0) {
+            log.info("使用默认工具，工具数量: {}", defaultTools.getToolCallbacks().length);
+            return profile.withTools(defaultTools.getToolCallbacks(), false, now);
+        }
+        log.warn("没有可用的工具，ChatClient将无法使用函数调用功能: businessType={}", profile.businessType());
+        return profile.withTools(NO_TOOLS, false, now);
+    }
+
+    /**
+     * 业务配置中的模型参数（business.model / business.temperature），都未配置时返回 null 使用全局默认值
+     * 使用 ToolCallingChatOptions，请求级附带的工具才会生效
+     */
+    private static ToolCallingChatOptions chatOptions(Map<String, Object> business) {
+        if (business == null) {
+            return null;
+        }
+        Object model = business.get("model");
+        Object temperature = business.get("temperature");
+        if (model == null && temperature == null) {
+            return null;
+        }
+        ToolCallingChatOptions.Builder options = ToolCallingChatOptions.builder();
+        if (model != null) {
+            options.model(String.valueOf(model));
+        }
+        if (temperature != null) {
+            try {
+                options.temperature(Double.parseDouble(String.valueOf(temperature)));
+            } catch (NumberFormatException e) {
+                log.warn("业务配置 temperature 不是数字，忽略: {}", temperature);
+            }
+        }
+        return options.build();
+    }
+}
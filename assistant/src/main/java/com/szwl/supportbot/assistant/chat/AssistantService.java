@@ -1,70 +1,47 @@
 package com.szwl.supportbot.assistant.chat;
 
 import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.assistant.mcp.McpToolPrefetch;
+import com.szwl.supportbot.assistant.mcp.McpToolSelector;
 import com.szwl.supportbot.assistant.mcp.ToolProviderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 /**
  * AI助手服务
- * 专注于对话逻辑，工具管理委托给ToolProviderService
+ * 专注于对话逻辑，业务类型的 ChatClient、提示词模板和工具由 AgentProfileRegistry 预先编译
  * 实现智能体功能：动态提示词、MCP工具
  */
 @Slf4j
 @Service
 public class AssistantService {
 
+    private static final String PREFETCH_CONTEXT_HEADER = "\n\n【已预先查询的数据】以下数据已根据用户问题查询，可直接使用，无需再次调用相同参数的工具：\n";
+
     private final ChatModel chatModel;
     private final ToolCallbackProvider defaultTools;
     
     @Autowired
     private ToolProviderService toolProviderService;
 
+    @Autowired
+    private McpToolSelector toolSelector;
+
+    @Autowired
+    private AgentProfileRegistry agentProfileRegistry;
+
     public AssistantService(ChatModel chatModel, ToolCallbackProvider tools) {
         this.chatModel = chatModel;
         this.defaultTools = tools;
     }
 
-    /**
-     * 根据配置动态创建ChatClient
-     */
-    private ChatClient createChatClientWithConfig(String chatId, String systemPrompt, AgentConfig.McpConfig mcpConfig) {
-        // 创建基础的ChatClient.Builder
-        ChatClient.Builder builder = ChatClient.builder(chatModel);
-        
-        // 设置系统提示词
-        if (systemPrompt != null && !systemPrompt.trim().isEmpty()) {
-            builder.defaultSystem(systemPrompt);
-        }
-        
-        // 设置默认顾问
-        builder.defaultAdvisors(
-                new SimpleLoggerAdvisor()
-        );
-        
-        // 通过ToolProviderService获取工具
-        ToolCallbackProvider finalTools = toolProviderService.getToolsForConfig(mcpConfig);
-        if (finalTools != null && finalTools.getToolCallbacks().length > 0) {
-            builder.defaultToolCallbacks(finalTools.getToolCallbacks());
-            log.info("成功设置MCP工具，工具数量: {}", finalTools.getToolCallbacks().length);
-        } else {
-            // 如果没有MCP工具，尝试使用默认工具
-            if (defaultTools != null && defaultTools.getToolCallbacks().length > 0) {
-                builder.defaultToolCallbacks(defaultTools.getToolCallbacks());
-                log.info("使用默认工具，工具数量: {}", defaultTools.getToolCallbacks().length);
-            } else {
-                log.warn("没有可用的工具，ChatClient将无法使用函数调用功能");
-            }
-        }
-        
-        return builder.build();
-    }
-
     /**
      * 聊天，支持动态配置
      */
@@ -74,27 +51,59 @@ public class AssistantService {
 
     /**
      * 聊天，支持动态配置和会话历史
+     * 直接指定提示词和MCP配置时每次编译一个临时的 Agent 配置，按业务类型处理消息请使用 AgentProfile 版本
      */
     public String chat(String chatId, String message, String systemPrompt, AgentConfig.McpConfig mcpConfig, String conversationHistory) {
+        return chat(chatId, message, agentProfileRegistry.compile(systemPrompt, mcpConfig), conversationHistory,
+                null, McpToolPrefetch.EMPTY);
+    }
+
+    /**
+     * 聊天，使用预先编译的业务类型 Agent 配置
+     * 每轮只填充会话历史和用户问题；MCP工具按问题相关度筛选后随请求附带，预取结果注入系统提示词并通过 ToolContext 供工具复用
+     *
+     * @param profile 业务类型的 Agent 配置
+     * @param category 问题分类，参与工具相关度打分，可以为空
+     * @param prefetch 本轮的工具预取
+     */
+    public String chat(String chatId, String message, AgentProfile profile, String conversationHistory,
+                       String category, McpToolPrefetch prefetch) {
         try {
-            log.info("开始对话: chatId={}, message={}, hasHistory={}", chatId, message, conversationHistory != null);
+            log.info("开始对话: chatId={}, businessType={}, message={}, hasHistory={}",
+                    chatId, profile.businessType(), message, conversationHistory != null);
             
-            // 构建完整的系统提示词
-            String fullSystemPrompt = systemPrompt;
+            // 填充 Nacos 配置中的占位符 {conversation_history}
+            String systemPrompt = profile.renderSystemPrompt(conversationHistory);
             if (conversationHistory != null && !conversationHistory.trim().isEmpty()) {
-                // 替换 Nacos 配置中的占位符 {conversation_history}
-                fullSystemPrompt = systemPrompt.replace("{conversation_history}", conversationHistory);
                 log.info("使用历史会话上下文: chatId={}, contextLength={}", chatId, conversationHistory.length());
             } else {
-                // 如果没有历史会话，替换为空字符串
-                fullSystemPrompt = systemPrompt.replace("{conversation_history}", "新会话，无历史上下文");
                 log.info("无历史会话上下文，使用默认值: chatId={}", chatId);
             }
-            
-            ChatClient client = createChatClientWithConfig(chatId, fullSystemPrompt, mcpConfig);
-            
-            String content = client
-                    .prompt()
+
+            String prefetchedContext = prefetch != null ? prefetch.renderContext() : null;
+            if (prefetchedContext != null) {
+                systemPrompt = systemPrompt + PREFETCH_CONTEXT_HEADER + prefetchedContext;
+                log.info("注入预取的工具结果: chatId={}, contextLength={}", chatId, prefetchedContext.length());
+            }
+
+            ChatClient.ChatClientRequestSpec request = profile.chatClient().prompt();
+            if (!systemPrompt.trim().isEmpty()) {
+                request = request.system(systemPrompt);
+            }
+
+            // 缓存的MCP工具先去掉熔断中连接的工具，再按问题相关度筛选，只附带前 K 个与业务配置固定附带的工具
+            ToolCallback[] tools = profile.mcpToolsResolved()
+                    ? toolSelector.select(toolProviderService.availableTools(profile.tools()), profile.mcpConfig(), message, category)
+                    : profile.tools();
+            if (tools.length > 0) {
+                request = request.toolCallbacks(tools);
+                log.info("附带工具，工具数量: {}", tools.length);
+            }
+            if (prefetch != null && !prefetch.isEmpty()) {
+                request = request.toolContext(Map.<String, Object>of(McpToolPrefetch.TOOL_CONTEXT_KEY, prefetch));
+            }
+
+            String content = request
                     .user(message)
                     .call()
                     .content();
@@ -14,6 +14,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * 动态配置服务
@@ -108,6 +109,17 @@ public class DynamicConfigService {
      * 监听配置变化
      */
     public void addConfigListener(String businessType, Runnable onChangeCallback) {
+        addConfigListener(businessType, newConfig -> {
+            if (onChangeCallback != null) {
+                onChangeCallback.run();
+            }
+        });
+    }
+
+    /**
+     * 监听配置变化，回调接收解析后的新配置
+     */
+    public void addConfigListener(String businessType, Consumer<AgentConfig.BusinessTypeConfig> onChange) {
         try {
             ConfigService configService = nacosConfigManager.getConfigService();
             String dataId = businessType + "-agent-config.yaml";
@@ -128,8 +140,8 @@ public class DynamicConfigService {
                             log.info("业务类型配置已应用: {}", businessType);
                             
                             // 执行回调
-                            if (onChangeCallback != null) {
-                                onChangeCallback.run();
+                            if (onChange != null) {
+                                onChange.accept(newConfig);
                             }
                         }
                     } catch (Exception e) {
@@ -0,0 +1,211 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP 连接熔断器（每个连接一个）
+ *
+ * - CLOSED：正常放行，按最近 N 次调用的滑动窗口统计失败率与慢调用率，任一超过阈值即打开
+ * - OPEN：直接拒绝，调用方跳过该连接的工具；到达打开时长后转为半开
+ * - HALF_OPEN：只放行一个探测调用，成功（且不慢）则关闭，否则重新打开
+ */
+@Slf4j
+public class McpCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * 熔断参数
+     *
+     * @param windowSize 滑动窗口大小（调用次数）
+     * @param minimumCalls 窗口内至少有多少次调用才计算比率
+     * @param failureRateThreshold 失败率阈值（百分比）
+     * @param slowCallRateThreshold 慢调用率阈值（百分比）
+     * @param slowCallDurationMs 超过该耗时视为慢调用
+     * @param openDurationMs 打开状态持续时间，之后允许一次探测
+     */
+    public record Settings(int windowSize, int minimumCalls, double failureRateThreshold,
+                           double slowCallRateThreshold, long slowCallDurationMs, long openDurationMs) {
+    }
+
+    private static final byte OUTCOME_SUCCESS = 0;
+    private static final byte OUTCOME_SLOW = 1;
+    private static final byte OUTCOME_FAILURE = 2;
+
+    private final String name;
+    private final Settings settings;
+
+    // 环形窗口，记录最近调用的结果
+    private final byte[] outcomes;
+    private int next;
+    private int size;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtMs;
+    private boolean probeInFlight;
+    private long probeStartedAtMs;
+
+    public McpCircuitBreaker(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.outcomes = new byte[Math.max(settings.windowSize(), 1)];
+    }
+
+    /**
+     * 申请调用许可，返回 false 时调用方应直接失败
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAtMs < settings.openDurationMs()) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                return startProbe();
+            default:
+                // 半开状态只允许一个探测调用；探测结果迟迟未上报时允许重新探测
+                if (probeInFlight && System.currentTimeMillis() - probeStartedAtMs < settings.openDurationMs()) {
+                    return false;
+                }
+                return startProbe();
+        }
+    }
+
+    /**
+     * 当前是否会放行调用（只查看状态，不占用半开探测名额），用于选择本轮附带的工具
+     */
+    public synchronized boolean isCallPermitted() {
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return now - openedAtMs >= settings.openDurationMs();
+            default:
+                return !probeInFlight || now - probeStartedAtMs >= settings.openDurationMs();
+        }
+    }
+
+    private boolean startProbe() {
+        probeInFlight = true;
+        probeStartedAtMs = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * 记录成功调用
+     *
+     * @param durationNanos 调用耗时
+     */
+    public synchronized void onSuccess(long durationNanos) {
+        boolean slow = TimeUnit.NANOSECONDS.toMillis(durationNanos) >= settings.slowCallDurationMs();
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (slow) {
+                open("探测调用过慢");
+            } else {
+                resetWindow();
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(slow ? OUTCOME_SLOW : OUTCOME_SUCCESS);
+    }
+
+    /**
+     * 记录失败调用
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            open("探测调用失败");
+            return;
+        }
+        record(OUTCOME_FAILURE);
+    }
+
+    /**
+     * 手动重置为关闭状态
+     */
+    public synchronized void reset() {
+        resetWindow();
+        probeInFlight = false;
+        transitionTo(State.CLOSED);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(byte outcome) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (size == outcomes.length) {
+            evict(outcomes[next]);
+        } else {
+            size++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if (outcome == OUTCOME_FAILURE) {
+            failures++;
+        } else if (outcome == OUTCOME_SLOW) {
+            slowCalls++;
+        }
+
+        if (size < settings.minimumCalls()) {
+            return;
+        }
+        double failureRate = failures * 100.0 / size;
+        double slowCallRate = slowCalls * 100.0 / size;
+        if (failureRate >= settings.failureRateThreshold()) {
+            open(String.format("失败率 %.0f%%", failureRate));
+        } else if (slowCallRate >= settings.slowCallRateThreshold()) {
+            open(String.format("慢调用率 %.0f%%", slowCallRate));
+        }
+    }
+
+    private void evict(byte outcome) {
+        if (outcome == OUTCOME_FAILURE) {
+            failures--;
+        } else if (outcome == OUTCOME_SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open(String reason) {
+        openedAtMs = System.currentTimeMillis();
+        resetWindow();
+        transitionTo(State.OPEN);
+        log.warn("MCP连接熔断器打开: connection={}, reason={}, openDuration={}ms", name, reason, settings.openDurationMs());
+    }
+
+    private void resetWindow() {
+        next = 0;
+        size = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            log.info("MCP连接熔断器状态变更: connection={}, {} -> {}", name, state, newState);
+            state = newState;
+        }
+    }
+}
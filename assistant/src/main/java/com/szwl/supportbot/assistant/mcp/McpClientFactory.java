@@ -1,10 +1,17 @@
 package com.szwl.supportbot.assistant.mcp;
 
 import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.common.http.PooledWebClientConnectorFactory;
+import com.szwl.supportbot.common.trace.TraceRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -13,13 +20,13 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * MCP客户端工厂服务
  * 根据配置动态创建MCP客户端连接，实现正确的MCP协议
+ * 每个连接一个熔断器：熔断打开时直接跳过该连接的工具，不再等待超时
  */
 @Slf4j
 @Service
@@ -28,12 +35,28 @@ public class McpClientFactory {
     // WebClient缓存 - 只缓存连接，不缓存工具列表
     private final Map<String, WebClient> webClientCache = new ConcurrentHashMap<>();
     
-    // 连接失败计数，用于重试逻辑
-    private final Map<String, AtomicInteger> connectionFailureCount = new ConcurrentHashMap<>();
-    
-    // 最大重试次数
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    
+    // 连接熔断器，按连接URL区分
+    private final Map<String, McpCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private final McpCircuitBreaker.Settings circuitBreakerSettings;
+
+    // Spring Boot 提供的 WebClient.Builder（已接入请求观测）与共享连接池
+    private final WebClient.Builder webClientBuilder;
+    private final PooledWebClientConnectorFactory connectorFactory;
+
+    // 只读工具结果缓存，跨对话共享
+    private final McpToolResultCache toolResultCache;
+
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
+
+    // 获取工具列表的超时与重试次数
+    private final long listToolsTimeoutMs;
+    private final int listToolsMaxRetries;
+
+    // 工具调用超时
+    private final long callTimeoutMs;
+
     // 重试延迟（毫秒）
     private static final long RETRY_DELAY_MS = 1000;
     
@@ -42,6 +65,32 @@ public class McpClientFactory {
     private static final String MCP_TOOLS_LIST_PATH = "/tools";
     private static final String MCP_TOOLS_CALL_PATH = "/tools";
 
+    public McpClientFactory(WebClient.Builder webClientBuilder,
+                            PooledWebClientConnectorFactory connectorFactory,
+                            McpToolResultCache toolResultCache,
+                            ObjectProvider<MeterRegistry> meterRegistry,
+                            ObjectProvider<TraceRecorder> traceRecorder,
+                            @Value("${mcp.list-tools-timeout-ms:5000}") long listToolsTimeoutMs,
+                            @Value("${mcp.list-tools-max-retries:1}") int listToolsMaxRetries,
+                            @Value("${mcp.call-timeout-ms:15000}") long callTimeoutMs,
+                            @Value("${mcp.circuit-breaker.window-size:20}") int windowSize,
+                            @Value("${mcp.circuit-breaker.minimum-calls:5}") int minimumCalls,
+                            @Value("${mcp.circuit-breaker.failure-rate-threshold:50}") double failureRateThreshold,
+                            @Value("${mcp.circuit-breaker.slow-call-rate-threshold:80}") double slowCallRateThreshold,
+                            @Value("${mcp.circuit-breaker.slow-call-duration-ms:3000}") long slowCallDurationMs,
+                            @Value("${mcp.circuit-breaker.open-duration-ms:30000}") long openDurationMs) {
+        this.webClientBuilder = webClientBuilder;
+        this.connectorFactory = connectorFactory;
+        this.toolResultCache = toolResultCache;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.traceRecorder = traceRecorder.getIfAvailable();
+        this.listToolsTimeoutMs = listToolsTimeoutMs;
+        this.listToolsMaxRetries = listToolsMaxRetries;
+        this.callTimeoutMs = callTimeoutMs;
+        this.circuitBreakerSettings = new McpCircuitBreaker.Settings(windowSize, minimumCalls,
+                failureRateThreshold, slowCallRateThreshold, slowCallDurationMs, openDurationMs);
+    }
+
     /**
      * 根据MCP配置获取或创建ToolCallbackProvider
      * 连接可以缓存，但每次都重新拉取工具列表
@@ -144,11 +193,13 @@ public class McpClientFactory {
 
     /**
      * 获取或创建WebClient
+     * 同一主机的连接共用一个连接池，WebClient 被清理后重新创建时继续复用
      */
     private WebClient getOrCreateWebClient(AgentConfig.Connection connection) {
         String cacheKey = generateWebClientCacheKey(connection);
         
-        return webClientCache.computeIfAbsent(cacheKey, k -> WebClient.builder()
+        return webClientCache.computeIfAbsent(cacheKey, k -> webClientBuilder.clone()
+                .clientConnector(connectorFactory.connector(connectorName(connection)))
                 .baseUrl(connection.getUrl())
                 .defaultHeader("Authorization", "Bearer " + connection.getApiKey())
                 .defaultHeader("Content-Type", "application/json")
@@ -159,11 +210,16 @@ public class McpClientFactory {
 
     /**
      * 创建MCP工具提供者
+     * 熔断打开时直接返回 null，本轮对话不提供该连接的工具
      */
     private ToolCallbackProvider createMcpToolProvider(WebClient webClient, AgentConfig.Connection connection, AgentConfig.ToolCallback toolCallback) {
-        String connectionKey = connection.getUrl();
-        AtomicInteger failureCount = connectionFailureCount.computeIfAbsent(connectionKey, k -> new AtomicInteger(0));
-        
+        McpCircuitBreaker circuitBreaker = getCircuitBreaker(connection);
+        if (!circuitBreaker.tryAcquire()) {
+            log.warn("MCP连接熔断中，跳过该连接的工具: {}", connection.getUrl());
+            return null;
+        }
+
+        long start = System.nanoTime();
         try {
             // 构建正确的MCP协议路径
             String baseUrl = connection.getUrl();
@@ -176,29 +232,74 @@ public class McpClientFactory {
             
             if (toolsResponse == null || toolsResponse.trim().isEmpty()) {
                 log.warn("MCP服务器未返回工具列表");
-                failureCount.incrementAndGet();
+                handleConnectionFailure(connection, circuitBreaker);
                 return null;
             }
             
             log.debug("MCP服务器返回工具列表，响应长度: {}", toolsResponse.length());
-            failureCount.set(0); // Reset on success
-            return createToolCallbackProviderFromResponse(toolsResponse, webClient, connection, toolCallback);
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            return createToolCallbackProviderFromResponse(toolsResponse, webClient, connection, toolCallback, circuitBreaker);
             
         } catch (WebClientResponseException e) {
-            failureCount.incrementAndGet();
             log.error("MCP服务器HTTP错误: {} - {}", e.getStatusCode(), e.getStatusText());
             log.debug("尝试的URL: {}", buildMcpUrl(connection.getUrl(), MCP_TOOLS_LIST_PATH));
-            handleConnectionFailure(connectionKey, failureCount.get());
+            handleConnectionFailure(connection, circuitBreaker);
             return null;
         } catch (Exception e) {
-            failureCount.incrementAndGet();
             log.error("连接MCP服务器失败: {}", connection.getUrl(), e);
             log.debug("尝试的URL: {}", buildMcpUrl(connection.getUrl(), MCP_TOOLS_LIST_PATH));
-            handleConnectionFailure(connectionKey, failureCount.get());
+            handleConnectionFailure(connection, circuitBreaker);
             return null;
         }
     }
 
+    /**
+     * 获取连接的工具调用器（不拉取工具列表，供预取直接调用工具）
+     */
+    public McpToolInvoker getToolInvoker(AgentConfig.Connection connection, AgentConfig.ToolCallback toolCallback) {
+        return createToolInvoker(getOrCreateWebClient(connection), connection, toolCallback, getCircuitBreaker(connection));
+    }
+
+    private McpToolInvoker createToolInvoker(WebClient webClient, AgentConfig.Connection connection,
+                                             AgentConfig.ToolCallback toolCallback, McpCircuitBreaker circuitBreaker) {
+        McpToolResultCache.Policy cachePolicy = McpToolResultCache.Policy.from(toolCallback != null ? toolCallback.getOptions() : null);
+        return new McpToolInvoker(webClient, connection, circuitBreaker, callTimeoutMs, toolResultCache, cachePolicy,
+                meterRegistry, traceRecorder);
+    }
+
+    /**
+     * 过滤掉熔断中连接的MCP工具
+     * 工具列表按业务类型缓存复用，熔断打开后不能再让模型选择必然快速失败的工具；非MCP工具原样保留
+     */
+    public ToolCallback[] filterAvailableTools(ToolCallback[] tools) {
+        if (tools == null || tools.length == 0 || circuitBreakers.isEmpty()) {
+            return tools;
+        }
+        List<ToolCallback> available = new ArrayList<>(tools.length);
+        for (ToolCallback tool : tools) {
+            if (tool instanceof McpToolCallbackProvider.McpToolCallback mcpTool) {
+                McpCircuitBreaker circuitBreaker = circuitBreakers.get(mcpTool.getConnection().getUrl());
+                if (circuitBreaker != null && !circuitBreaker.isCallPermitted()) {
+                    continue;
+                }
+            }
+            available.add(tool);
+        }
+        if (available.size() == tools.length) {
+            return tools;
+        }
+        log.warn("MCP连接熔断中，本轮跳过工具数量: {}", tools.length - available.size());
+        return available.toArray(new ToolCallback[0]);
+    }
+
+    /**
+     * 获取连接的熔断器
+     */
+    private McpCircuitBreaker getCircuitBreaker(AgentConfig.Connection connection) {
+        return circuitBreakers.computeIfAbsent(connection.getUrl(),
+                url -> new McpCircuitBreaker(url, circuitBreakerSettings));
+    }
+
     /**
      * 构建MCP协议URL
      */
@@ -232,15 +333,20 @@ public class McpClientFactory {
                 .bodyValue(listToolsRequest)
                 .retrieve()
                 .bodyToMono(String.class)
-                .timeout(Duration.ofSeconds(30))
-                .retryWhen(reactor.util.retry.Retry.fixedDelay(MAX_RETRY_ATTEMPTS, Duration.ofMillis(RETRY_DELAY_MS))
+                .timeout(Duration.ofMillis(listToolsTimeoutMs))
+                // 只重试服务端错误与连接失败，超时与 4xx 不重试，避免放大故障时的等待
+                .retryWhen(reactor.util.retry.Retry.fixedDelay(listToolsMaxRetries, Duration.ofMillis(RETRY_DELAY_MS))
                     .filter(throwable -> {
                         if (throwable instanceof WebClientResponseException) {
                             WebClientResponseException wcre = (WebClientResponseException) throwable;
-                            return wcre.getStatusCode().is5xxServerError() || wcre.getStatusCode().is4xxClientError();
+                            return wcre.getStatusCode().is5xxServerError();
+                        }
+                        return throwable instanceof WebClientRequestException;
+                    })
+                    .doBeforeRetry(signal -> {
+                        if (meterRegistry != null) {
+                            meterRegistry.counter("supportbot.mcp.list.retries").increment();
                         }
-                        return throwable instanceof java.net.ConnectException || 
-                               throwable instanceof java.net.SocketTimeoutException;
                     }))
                 .block();
             
@@ -256,9 +362,11 @@ public class McpClientFactory {
     /**
      * 从响应创建工具回调提供者
      */
-    private ToolCallbackProvider createToolCallbackProviderFromResponse(String toolsResponse, WebClient webClient, AgentConfig.Connection connection, AgentConfig.ToolCallback toolCallback) {
+    private ToolCallbackProvider createToolCallbackProviderFromResponse(String toolsResponse, WebClient webClient, AgentConfig.Connection connection,
+                                                                        AgentConfig.ToolCallback toolCallback, McpCircuitBreaker circuitBreaker) {
         try {
-            return new McpToolCallbackProvider(webClient, connection, toolsResponse, toolCallback);
+            McpToolInvoker toolInvoker = createToolInvoker(webClient, connection, toolCallback, circuitBreaker);
+            return new McpToolCallbackProvider(connection, toolsResponse, toolCallback, toolInvoker, callTimeoutMs);
         } catch (Exception e) {
             log.error("创建工具回调提供者失败", e);
             return null;
@@ -311,6 +419,18 @@ public class McpClientFactory {
         }
     }
 
+    /**
+     * 连接池名称：mcp-主机名
+     */
+    private String connectorName(AgentConfig.Connection connection) {
+        try {
+            String host = java.net.URI.create(connection.getUrl()).getHost();
+            return "mcp-" + (host != null ? host : "default");
+        } catch (Exception e) {
+            return "mcp-default";
+        }
+    }
+
     /**
      * 生成WebClient缓存键
      */
@@ -324,26 +444,24 @@ public class McpClientFactory {
     }
 
     /**
-     * 处理连接失败
+     * 处理连接失败：计入熔断器，熔断打开时清理缓存的连接
      */
-    private void handleConnectionFailure(String connectionKey, int failureCount) {
-        if (failureCount >= MAX_RETRY_ATTEMPTS) {
-            log.error("连接失败次数过多，清理连接: {}", connectionKey);
-            cleanupFailedConnection(connectionKey);
+    private void handleConnectionFailure(AgentConfig.Connection connection, McpCircuitBreaker circuitBreaker) {
+        circuitBreaker.onFailure();
+        if (circuitBreaker.getState() == McpCircuitBreaker.State.OPEN) {
+            cleanupFailedConnection(connection);
         }
     }
 
     /**
      * 清理失败的连接
      */
-    private void cleanupFailedConnection(String connectionKey) {
+    private void cleanupFailedConnection(AgentConfig.Connection connection) {
         try {
-            // 清理相关的缓存
-            webClientCache.remove(connectionKey);
-            connectionFailureCount.remove(connectionKey);
-            log.info("已清理失败的连接: {}", connectionKey);
+            webClientCache.remove(generateWebClientCacheKey(connection));
+            log.info("已清理失败的连接: {}", connection.getUrl());
         } catch (Exception e) {
-            log.error("清理失败连接时出错: {}", connectionKey, e);
+            log.error("清理失败连接时出错: {}", connection.getUrl(), e);
         }
     }
 
@@ -352,7 +470,8 @@ public class McpClientFactory {
      */
     public void clearCache() {
         webClientCache.clear();
-        connectionFailureCount.clear();
+        circuitBreakers.clear();
+        toolResultCache.clear();
         log.info("MCP客户端缓存已清理");
     }
 
@@ -362,13 +481,14 @@ public class McpClientFactory {
     public Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new ConcurrentHashMap<>();
         stats.put("webClientCount", webClientCache.size());
-        stats.put("connectionFailureCount", connectionFailureCount.size());
+        stats.put("circuitBreakerCount", circuitBreakers.size());
+        stats.put("toolResultCacheSize", toolResultCache.size());
         stats.put("webClientKeys", webClientCache.keySet());
-        stats.put("failedConnections", connectionFailureCount.entrySet().stream()
-            .filter(entry -> entry.getValue().get() > 0)
+        stats.put("failedConnections", circuitBreakers.entrySet().stream()
+            .filter(entry -> entry.getValue().getState() != McpCircuitBreaker.State.CLOSED)
             .collect(java.util.stream.Collectors.toMap(
                 Map.Entry::getKey,
-                entry -> entry.getValue().get()
+                entry -> entry.getValue().getState().name()
             )));
         return stats;
     }
@@ -386,12 +506,17 @@ public class McpClientFactory {
     }
 
     /**
-     * 刷新连接
+     * 刷新连接：清理缓存的 WebClient 并重置熔断器
+     * @param connectionKey 连接URL
      */
     public void refreshConnection(String connectionKey) {
         try {
             log.info("刷新连接: {}", connectionKey);
-            cleanupFailedConnection(connectionKey);
+            webClientCache.keySet().removeIf(key -> key.startsWith(connectionKey + "_"));
+            McpCircuitBreaker circuitBreaker = circuitBreakers.get(connectionKey);
+            if (circuitBreaker != null) {
+                circuitBreaker.reset();
+            }
         } catch (Exception e) {
             log.error("刷新连接失败: {}", connectionKey, e);
         }
@@ -0,0 +1,56 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * toolcallback.options 取值工具
+ * options 既可能来自 Nacos YAML 解析（原样的 Map/List），也可能来自 Spring 配置绑定（列表变为 {0: a, 1: b}），
+ * 键名同时支持 kebab-case 与 camelCase
+ */
+final class McpOptions {
+
+    private McpOptions() {
+    }
+
+    static Object option(Map<String, Object> map, String kebabKey, String camelKey) {
+        Object value = map.get(kebabKey);
+        return value != null ? value : map.get(camelKey);
+    }
+
+    static long longOption(Map<String, Object> map, long defaultValue, String kebabKey, String camelKey) {
+        Object value = option(map, kebabKey, camelKey);
+        return value != null ? Long.parseLong(String.valueOf(value).trim()) : defaultValue;
+    }
+
+    static double doubleOption(Map<String, Object> map, double defaultValue, String kebabKey, String camelKey) {
+        Object value = option(map, kebabKey, camelKey);
+        return value != null ? Double.parseDouble(String.valueOf(value).trim()) : defaultValue;
+    }
+
+    static boolean enabled(Map<String, Object> map) {
+        return Boolean.parseBoolean(String.valueOf(map.getOrDefault("enabled", "true")));
+    }
+
+    /**
+     * 列表可能来自 YAML 数组、Spring 绑定后的 {0: a, 1: b} 或逗号分隔字符串
+     */
+    static List<String> stringList(Object value) {
+        List<String> result = new ArrayList<>();
+        if (value instanceof Collection<?> collection) {
+            collection.stream().filter(Objects::nonNull).forEach(item -> result.add(String.valueOf(item).trim()));
+        } else if (value instanceof Map<?, ?> indexed) {
+            indexed.values().stream().filter(Objects::nonNull).forEach(item -> result.add(String.valueOf(item).trim()));
+        } else if (value != null && !String.valueOf(value).isBlank()) {
+            for (String item : String.valueOf(value).split(",")) {
+                if (!item.isBlank()) {
+                    result.add(item.trim());
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -5,10 +5,10 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.szwl.supportbot.assistant.config.AgentConfig;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.definition.ToolDefinition;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.List;
 import java.util.Map;
@@ -21,21 +21,21 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class McpToolCallbackProvider implements ToolCallbackProvider {
 
-    private final WebClient webClient;
     private final String toolsResponse;
     private final Map<String, McpTool> toolsCache = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final AgentConfig.ToolCallback toolCallback;
     private final AgentConfig.Connection connection;
-    
-    // MCP协议标准路径
-    private static final String MCP_TOOLS_PATH = "/tools";
+    private final McpToolInvoker toolInvoker;
+    private final long callTimeoutMs;
 
-    public McpToolCallbackProvider(WebClient webClient, AgentConfig.Connection connection, String toolsResponse, AgentConfig.ToolCallback toolCallback) {
-        this.webClient = webClient;
+    public McpToolCallbackProvider(AgentConfig.Connection connection, String toolsResponse, AgentConfig.ToolCallback toolCallback,
+                                   McpToolInvoker toolInvoker, long callTimeoutMs) {
         this.connection = connection;
         this.toolsResponse = toolsResponse;
         this.toolCallback = toolCallback;
+        this.toolInvoker = toolInvoker;
+        this.callTimeoutMs = callTimeoutMs;
         initializeTools();
     }
 
@@ -381,52 +381,83 @@ public class McpToolCallbackProvider implements ToolCallbackProvider {
      * 创建工具回调
      */
     private ToolCallback createToolCallback(McpTool tool) {
-        return new ToolCallback() {
-            @Override
-            public ToolDefinition getToolDefinition() {
-                try {
-                    return ToolDefinition.builder()
-                        .name(tool.getName())
-                        .description(tool.getDescription())
-                        .inputSchema(objectMapper.writeValueAsString(tool.getInputSchema()))
-                        .build();
-                } catch (Exception e) {
-                    log.error("构建工具定义失败: {}", tool.getName(), e);
-                    // 降级到简单格式
-                    return ToolDefinition.builder()
-                        .name(tool.getName())
-                        .description(tool.getDescription())
-                        .inputSchema("{\"type\":\"object\",\"properties\":{}}")
-                        .build();
-                }
+        return new McpToolCallback(tool);
+    }
+
+    /**
+     * MCP工具回调，记录工具所在的连接（预取时按工具选择连接）
+     */
+    public final class McpToolCallback implements ToolCallback {
+
+        private final McpTool tool;
+
+        private McpToolCallback(McpTool tool) {
+            this.tool = tool;
+        }
+
+        /**
+         * 工具名称
+         */
+        public String getToolName() {
+            return tool.getName();
+        }
+
+        /**
+         * 提供该工具的MCP连接
+         */
+        public AgentConfig.Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            try {
+                return ToolDefinition.builder()
+                    .name(tool.getName())
+                    .description(tool.getDescription())
+                    .inputSchema(objectMapper.writeValueAsString(tool.getInputSchema()))
+                    .build();
+            } catch (Exception e) {
+                log.error("构建工具定义失败: {}", tool.getName(), e);
+                // 降级到简单格式
+                return ToolDefinition.builder()
+                    .name(tool.getName())
+                    .description(tool.getDescription())
+                    .inputSchema("{\"type\":\"object\",\"properties\":{}}")
+                    .build();
             }
+        }
 
-            @Override
-            public String call(String arguments) {
-                try {
-                    log.info("调用MCP工具: {}, 参数: {}", tool.getName(), arguments);
-                    
-                    // 调用MCP服务器执行工具
-                    Map<String, Object> argsMap = parseArguments(arguments);
-                    Object result = executeMcpTool(tool.getName(), argsMap);
-                    
-                    if (result instanceof String) {
-                        return (String) result;
-                    } else {
-                        return objectMapper.writeValueAsString(result);
-                    }
-                    
-                } catch (Exception e) {
-                    log.error("执行MCP工具失败: {}", tool.getName(), e);
-                    return "{\"error\":\"" + e.getMessage() + "\"}";
+        @Override
+        public String call(String arguments) {
+            return call(arguments, (ToolContext) null);
+        }
+
+        /**
+         * 本轮的预取结果通过 ToolContext 传入（工具实例按业务类型复用，不能持有单轮状态）
+         */
+        @Override
+        public String call(String arguments, ToolContext toolContext) {
+            try {
+                log.info("调用MCP工具: {}, 参数: {}", tool.getName(), arguments);
+                
+                Map<String, Object> argsMap = parseArguments(arguments);
+
+                // 本轮已预取的同参数调用直接复用
+                McpToolPrefetch prefetch = McpToolPrefetch.from(toolContext);
+                String prefetched = prefetch.take(tool.getName(), argsMap, callTimeoutMs);
+                if (prefetched != null) {
+                    return prefetched;
                 }
-            }
 
-            @Override
-            public String call(String toolArguments, org.springframework.ai.chat.model.ToolContext toolContext) {
-                return this.call(toolArguments);
+                // 调用MCP服务器执行工具
+                return toolInvoker.call(tool.getName(), argsMap);
+                
+            } catch (Exception e) {
+                log.error("执行MCP工具失败: {}", tool.getName(), e);
+                return "{\"error\":\"" + e.getMessage() + "\"}";
             }
-        };
+        }
     }
 
     /**
@@ -470,50 +501,6 @@ public class McpToolCallbackProvider implements ToolCallbackProvider {
         }
     }
 
-    /**
-     * 执行MCP工具
-     * 使用MCP协议标准的callTool方法
-     */
-    private Object executeMcpTool(String toolName, Map<String, Object> arguments) {
-        try {
-            // 构建MCP协议标准的callTool请求
-            Map<String, Object> callToolRequest = Map.of(
-                "jsonrpc", "2.0",
-                "id", "call-tool-" + System.currentTimeMillis(),
-                "method", "tools/call",
-                "params", Map.of(
-                    "name", toolName,
-                    "arguments", arguments
-                )
-            );
-
-            log.debug("发送MCP callTool请求: {}", callToolRequest);
-
-            // 构建正确的MCP协议URL
-            String baseUrl = connection.getUrl();
-            if (baseUrl.endsWith("/")) {
-                baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
-            }
-            String mcpCallToolUrl = baseUrl + MCP_TOOLS_PATH;
-
-            log.debug("调用MCP工具，URL: {}", mcpCallToolUrl);
-
-            Object result = webClient.post()
-                .uri(MCP_TOOLS_PATH)
-                .bodyValue(callToolRequest)
-                .retrieve()
-                .bodyToMono(Object.class)
-                .block();
-
-            log.debug("MCP工具调用成功: {} -> {}", toolName, result);
-            return result;
-
-        } catch (Exception e) {
-            log.error("调用MCP工具失败: {}", toolName, e);
-            return Map.of("error", "MCP工具调用失败: " + e.getMessage());
-        }
-    }
-
     /**
      * 获取工具数量
      */
@@ -0,0 +1,183 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP工具调用器（每个连接一个）
+ * 模型发起的工具调用与预取共用：熔断、超时、只读结果缓存与写操作清理
+ * 请求附带当前线程的链路上下文请求头，工具耗时记为 mcp.{工具名} 阶段
+ */
+@Slf4j
+public class McpToolInvoker {
+
+    // MCP协议标准路径
+    private static final String MCP_TOOLS_PATH = "/tools";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WebClient webClient;
+    private final AgentConfig.Connection connection;
+    private final McpCircuitBreaker circuitBreaker;
+    private final long callTimeoutMs;
+    private final McpToolResultCache resultCache;
+    private final McpToolResultCache.Policy cachePolicy;
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
+
+    public McpToolInvoker(WebClient webClient, AgentConfig.Connection connection, McpCircuitBreaker circuitBreaker,
+                          long callTimeoutMs, McpToolResultCache resultCache, McpToolResultCache.Policy cachePolicy,
+                          MeterRegistry meterRegistry, TraceRecorder traceRecorder) {
+        this.webClient = webClient;
+        this.connection = connection;
+        this.circuitBreaker = circuitBreaker;
+        this.callTimeoutMs = callTimeoutMs;
+        this.resultCache = resultCache;
+        this.cachePolicy = cachePolicy;
+        this.meterRegistry = meterRegistry;
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * 调用结果
+     *
+     * @param output 序列化后的结果
+     * @param error 是否为错误结果
+     */
+    record CallResult(String output, boolean error) {
+    }
+
+    /**
+     * 调用工具并返回序列化后的结果
+     */
+    public String call(String toolName, Map<String, Object> arguments) throws Exception {
+        return invoke(toolName, arguments).output();
+    }
+
+    /**
+     * 调用工具，同时返回结果是否为错误
+     */
+    CallResult invoke(String toolName, Map<String, Object> arguments) throws Exception {
+        // 只读工具先查缓存
+        String cached = resultCache.get(cachePolicy, connection.getUrl(), toolName, arguments);
+        if (cached != null) {
+            return new CallResult(cached, false);
+        }
+
+        Object result = execute(toolName, arguments);
+        String output = result instanceof String ? (String) result : objectMapper.writeValueAsString(result);
+        boolean error = isErrorResult(result);
+
+        // 写操作无论成败都清理相关缓存（失败也可能已部分生效），只读工具只缓存成功结果
+        resultCache.invalidate(cachePolicy, toolName, arguments);
+        if (!error) {
+            resultCache.put(cachePolicy, connection.getUrl(), toolName, arguments, output);
+        }
+        return new CallResult(output, error);
+    }
+
+    /**
+     * 执行MCP工具
+     * 使用MCP协议标准的callTool方法；熔断打开时直接返回错误，结果计入熔断器
+     */
+    private Object execute(String toolName, Map<String, Object> arguments) {
+        if (!circuitBreaker.tryAcquire()) {
+            log.warn("MCP连接熔断中，拒绝工具调用: tool={}, connection={}", toolName, connection.getUrl());
+            recordCall(toolName, "rejected", 0);
+            return Map.of("error", "MCP服务暂时不可用，请稍后重试");
+        }
+        long start = System.nanoTime();
+        try {
+            // 构建MCP协议标准的callTool请求
+            Map<String, Object> callToolRequest = Map.of(
+                "jsonrpc", "2.0",
+                "id", "call-tool-" + System.currentTimeMillis(),
+                "method", "tools/call",
+                "params", Map.of(
+                    "name", toolName,
+                    "arguments", arguments
+                )
+            );
+
+            log.debug("发送MCP callTool请求: {}, connection={}", callToolRequest, connection.getUrl());
+
+            TraceContext trace = TraceContext.current();
+            Object result = webClient.post()
+                .uri(MCP_TOOLS_PATH)
+                .headers(headers -> {
+                    if (trace != null) {
+                        trace.writeHeaders(headers::set);
+                    }
+                })
+                .bodyValue(callToolRequest)
+                .retrieve()
+                .bodyToMono(Object.class)
+                .timeout(Duration.ofMillis(callTimeoutMs))
+                .block();
+
+            long elapsedNanos = System.nanoTime() - start;
+            circuitBreaker.onSuccess(elapsedNanos);
+            recordCall(toolName, isErrorResult(result) ? "error" : "success", elapsedNanos);
+            log.debug("MCP工具调用成功: {} -> {}", toolName, result);
+            return result;
+
+        } catch (Exception e) {
+            circuitBreaker.onFailure();
+            recordCall(toolName, "failure", System.nanoTime() - start);
+            log.error("调用MCP工具失败: {}", toolName, e);
+            return Map.of("error", "MCP工具调用失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 记录工具调用耗时（按工具、结果区分，不含缓存命中）
+     */
+    private void recordCall(String toolName, String outcome, long elapsedNanos) {
+        if (traceRecorder != null) {
+            traceRecorder.record("mcp." + toolName, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+        if (meterRegistry == null) {
+            return;
+        }
+        Timer.builder("supportbot.mcp.tool.call")
+                .description("MCP工具调用耗时")
+                .tag("tool", toolName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 判断工具结果是否为错误：本地错误 {"error": ...}、JSON-RPC 错误或 MCP 的 isError 结果
+     */
+    static boolean isErrorResult(Object result) {
+        if (!(result instanceof Map<?, ?> map)) {
+            return result == null;
+        }
+        if (map.containsKey("error")) {
+            return true;
+        }
+        Object rpcResult = map.get("result");
+        if (rpcResult instanceof Map<?, ?> resultMap) {
+            return Boolean.TRUE.equals(resultMap.get("isError"));
+        }
+        return Boolean.TRUE.equals(map.get("isError"));
+    }
+
+    public AgentConfig.Connection getConnection() {
+        return connection;
+    }
+
+    public McpToolResultCache.Policy getCachePolicy() {
+        return cachePolicy;
+    }
+}
@@ -0,0 +1,132 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 单轮对话的工具预取结果
+ *
+ * 由 McpToolPrefetcher 根据分类阶段抽取的信息提前发起只读工具调用，
+ * 完成的结果注入提示词；本对象通过 ToolContext 随请求传给工具，
+ * 模型仍然请求同一工具时直接复用本轮结果，不再调用MCP服务器。
+ */
+@Slf4j
+public class McpToolPrefetch {
+
+    public static final McpToolPrefetch EMPTY = new McpToolPrefetch(0);
+
+    /**
+     * 本轮预取在 ToolContext 中的键
+     */
+    public static final String TOOL_CONTEXT_KEY = "supportbot.mcp.prefetch";
+
+    private final Map<String, Call> calls = new LinkedHashMap<>();
+    private final long waitMs;
+
+    /**
+     * @param waitMs 注入提示词前最多等待预取的时间
+     */
+    McpToolPrefetch(long waitMs) {
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * 预取调用
+     */
+    private record Call(String toolName, Map<String, Object> arguments, CompletableFuture<String> result) {
+    }
+
+    void add(String toolName, Map<String, Object> arguments, CompletableFuture<String> result) {
+        calls.put(key(toolName, arguments), new Call(toolName, arguments, result));
+    }
+
+    public boolean isEmpty() {
+        return calls.isEmpty();
+    }
+
+    /**
+     * 从 ToolContext 中取本轮预取，没有时返回 EMPTY
+     */
+    public static McpToolPrefetch from(ToolContext toolContext) {
+        if (toolContext == null || toolContext.getContext() == null) {
+            return EMPTY;
+        }
+        return toolContext.getContext().get(TOOL_CONTEXT_KEY) instanceof McpToolPrefetch prefetch ? prefetch : EMPTY;
+    }
+
+    /**
+     * 查找本轮已预取的同参数调用，等待其完成后返回结果
+     *
+     * @return 预取结果，未预取或预取失败时返回 null
+     */
+    public String take(String toolName, Map<String, Object> arguments, long timeoutMs) {
+        if (calls.isEmpty()) {
+            return null;
+        }
+        Call call = calls.get(key(toolName, arguments));
+        if (call == null) {
+            return null;
+        }
+        try {
+            String result = call.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+            log.info("复用预取的工具结果: tool={}, args={}", toolName, arguments);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 在等待时间内等待预取完成，把成功的结果渲染为提示词上下文
+     * 未完成的调用不注入，模型需要时仍可通过 take 复用
+     *
+     * @return 上下文文本，没有可用结果时返回 null
+     */
+    public String renderContext() {
+        if (calls.isEmpty()) {
+            return null;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        StringBuilder context = new StringBuilder();
+        for (Call call : calls.values()) {
+            long remainingNanos = deadline - System.nanoTime();
+            try {
+                String result = call.result().get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+                if (result != null && !result.isBlank()) {
+                    context.append("- 工具 ").append(call.toolName())
+                            .append("，参数 ").append(call.arguments())
+                            .append(" 的返回结果：\n").append(result).append("\n");
+                }
+            } catch (TimeoutException e) {
+                log.info("预取未在 {}ms 内完成，不注入提示词: tool={}", waitMs, call.toolName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.debug("预取失败，不注入提示词: tool={}", call.toolName(), e);
+            }
+        }
+        return context.length() > 0 ? context.toString() : null;
+    }
+
+    /**
+     * 参数值统一按字符串比较：预取参数来自抽取信息（字符串），模型可能传数字
+     */
+    private static String key(String toolName, Map<String, Object> arguments) {
+        Map<String, String> normalized = new TreeMap<>();
+        if (arguments != null) {
+            arguments.forEach((name, value) -> normalized.put(name, String.valueOf(value)));
+        }
+        return toolName + normalized;
+    }
+}
@@ -0,0 +1,221 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.common.trace.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MCP工具预取
+ *
+ * 根据分类阶段抽取的信息（订单号、商品ID等）在组装提示词的同时提前发起只读工具调用，
+ * 省去一次“模型→工具→模型”的往返。规则配置在 toolcallback.options.prefetch 中：
+ * <pre>
+ * prefetch:
+ *   enabled: true
+ *   wait-ms: 1500                   # 注入提示词前最多等待的时间
+ *   tools:
+ *     getOrderDetail:
+ *       connection: default         # 可选，默认使用工具列表中提供该工具的连接
+ *       arguments:
+ *         orderId: order_id         # 工具参数 -> 抽取信息的键，可以是多个候选键
+ * </pre>
+ * 抽取信息缺少任一参数时不预取；未指定连接且没有连接提供该工具时不预取；
+ * cache.invalidations 中声明的写操作工具永不预取。
+ */
+@Slf4j
+@Component
+public class McpToolPrefetcher {
+
+    private static final long DEFAULT_WAIT_MS = 1500;
+
+    private final McpClientFactory mcpClientFactory;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+
+    public McpToolPrefetcher(McpClientFactory mcpClientFactory,
+                             @Value("${mcp.prefetch.threads:8}") int threads,
+                             @Value("${mcp.prefetch.queue-capacity:100}") int queueCapacity,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        this.mcpClientFactory = mcpClientFactory;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "mcp-prefetch-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * 按配置的规则发起预取
+     *
+     * @param mcpConfig 业务类型的MCP配置
+     * @param tools 业务类型已解析的工具，用于确定工具所在的连接
+     * @param extractedInfo 分类阶段抽取的信息
+     * @return 本轮预取，没有匹配的规则时返回 McpToolPrefetch.EMPTY
+     */
+    @SuppressWarnings("unchecked")
+    public McpToolPrefetch start(AgentConfig.McpConfig mcpConfig, ToolCallback[] tools, Map<String, String> extractedInfo) {
+        if (mcpConfig == null || mcpConfig.getClient() == null || extractedInfo == null || extractedInfo.isEmpty()) {
+            return McpToolPrefetch.EMPTY;
+        }
+        AgentConfig.ToolCallback toolCallback = mcpConfig.getClient().getToolcallback();
+        if (toolCallback == null || !toolCallback.isEnabled() || toolCallback.getOptions() == null
+                || !(toolCallback.getOptions().get("prefetch") instanceof Map<?, ?> prefetchOption)) {
+            return McpToolPrefetch.EMPTY;
+        }
+        Map<String, Object> prefetchConfig = (Map<String, Object>) prefetchOption;
+        if (!McpOptions.enabled(prefetchConfig)
+                || !(prefetchConfig.get("tools") instanceof Map<?, ?> rules)) {
+            return McpToolPrefetch.EMPTY;
+        }
+        AgentConfig.Sse sse = mcpConfig.getClient().getSse();
+        if (sse == null || sse.getConnections() == null || sse.getConnections().isEmpty()) {
+            return McpToolPrefetch.EMPTY;
+        }
+
+        long waitMs = McpOptions.longOption(prefetchConfig, DEFAULT_WAIT_MS, "wait-ms", "waitMs");
+        Set<String> mutatingTools = McpToolResultCache.Policy.from(toolCallback.getOptions()).invalidations().keySet();
+
+        Map<String, AgentConfig.Connection> toolConnections = toolConnections(tools);
+
+        McpToolPrefetch prefetch = new McpToolPrefetch(waitMs);
+        rules.forEach((name, ruleOption) -> {
+            String toolName = String.valueOf(name);
+            if (!(ruleOption instanceof Map<?, ?> rule)) {
+                return;
+            }
+            if (mutatingTools.contains(toolName)) {
+                log.warn("写操作工具不允许预取，忽略规则: tool={}", toolName);
+                return;
+            }
+            Map<String, Object> arguments = resolveArguments((Map<String, Object>) rule, extractedInfo);
+            if (arguments == null) {
+                return;
+            }
+            AgentConfig.Connection connection = resolveConnection(toolName, (Map<String, Object>) rule,
+                    sse.getConnections(), toolConnections);
+            if (connection == null) {
+                log.warn("预取规则没有可用的连接: tool={}, connection={}", toolName, rule.get("connection"));
+                return;
+            }
+            CompletableFuture<String> result = submit(mcpClientFactory.getToolInvoker(connection, toolCallback), toolName, arguments);
+            if (result != null) {
+                prefetch.add(toolName, arguments, result);
+                log.info("发起工具预取: tool={}, args={}", toolName, arguments);
+            }
+        });
+        return prefetch;
+    }
+
+    private CompletableFuture<String> submit(McpToolInvoker invoker, String toolName, Map<String, Object> arguments) {
+        // 预取线程沿用调用方的链路上下文
+        TraceContext trace = TraceContext.current();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try (TraceContext.Scope ignored = TraceContext.attach(trace)) {
+                    McpToolInvoker.CallResult result = invoker.invoke(toolName, arguments);
+                    if (result.error()) {
+                        throw new IllegalStateException(result.output());
+                    }
+                    return result.output();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor).whenComplete((output, throwable) -> count(toolName, throwable == null ? "success" : "failure"));
+        } catch (RejectedExecutionException e) {
+            log.warn("预取线程池已满，跳过预取: tool={}", toolName);
+            count(toolName, "rejected");
+            return null;
+        }
+    }
+
+    /**
+     * 按 arguments 映射从抽取信息中取参数，任一参数缺失时返回 null
+     */
+    private static Map<String, Object> resolveArguments(Map<String, Object> rule, Map<String, String> extractedInfo) {
+        if (!(rule.get("arguments") instanceof Map<?, ?> mapping) || mapping.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : mapping.entrySet()) {
+            String value = null;
+            for (String extractedKey : McpOptions.stringList(entry.getValue())) {
+                String candidate = extractedInfo.get(extractedKey);
+                if (candidate != null && !candidate.isBlank()) {
+                    value = candidate.trim();
+                    break;
+                }
+            }
+            if (value == null) {
+                return null;
+            }
+            arguments.put(String.valueOf(entry.getKey()), value);
+        }
+        return arguments;
+    }
+
+    /**
+     * 规则指定连接时使用该连接，否则使用工具列表中提供该工具的连接（没有则返回 null）
+     */
+    private static AgentConfig.Connection resolveConnection(String toolName, Map<String, Object> rule,
+                                                            Map<String, AgentConfig.Connection> connections,
+                                                            Map<String, AgentConfig.Connection> toolConnections) {
+        Object connectionName = rule.get("connection");
+        if (connectionName != null) {
+            return connections.get(String.valueOf(connectionName));
+        }
+        return toolConnections.get(toolName);
+    }
+
+    /**
+     * 工具名称 -> 提供该工具的连接（多个连接提供同名工具时取第一个，与模型调用时一致）
+     */
+    private static Map<String, AgentConfig.Connection> toolConnections(ToolCallback[] tools) {
+        if (tools == null || tools.length == 0) {
+            return Map.of();
+        }
+        Map<String, AgentConfig.Connection> toolConnections = new HashMap<>();
+        for (ToolCallback tool : tools) {
+            if (tool instanceof McpToolCallbackProvider.McpToolCallback mcpTool) {
+                toolConnections.putIfAbsent(mcpTool.getToolName(), mcpTool.getConnection());
+            }
+        }
+        return toolConnections;
+    }
+
+    private void count(String toolName, String outcome) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("supportbot.mcp.tool.prefetch", "tool", toolName, "outcome", outcome).increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,260 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MCP 只读工具结果缓存
+ *
+ * 按 (连接, 工具名, 规范化参数 JSON) 缓存工具结果，跨会话、跨用户共享。
+ * 只有在 toolcallback.options.cache.tools 中声明了 TTL 的工具才会缓存；
+ * 声明在 invalidations 中的写操作工具永不缓存，执行后按参数清理相关工具的缓存。
+ * 缓存键没有用户维度，只应为结果与调用者无关的工具声明 TTL；清理只作用于本实例，
+ * 其他实例上的结果在 TTL 内仍可能陈旧，会被写操作改变的工具应使用较短的 TTL。
+ *
+ * 配置示例（AgentConfig.ToolCallback.options）：
+ * <pre>
+ * cache:
+ *   enabled: true
+ *   tools:
+ *     getProductDetail: { ttl-seconds: 300 }
+ *     getOrderDetail: { ttl-seconds: 10 }
+ *   invalidations:
+ *     applyForReturn:              # 写操作工具
+ *       getOrderDetail: [orderId]  # 清理 orderId 相同的 getOrderDetail 缓存
+ *     updateProduct:
+ *       getProductDetail: "*"      # "*" 或空列表清理该工具全部缓存
+ * </pre>
+ */
+@Slf4j
+@Component
+public class McpToolResultCache {
+
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final MeterRegistry meterRegistry;
+    private final int maxEntries;
+
+    // 按访问顺序淘汰，超过容量时移除最久未访问的条目
+    private final LinkedHashMap<CacheKey, Entry> entries;
+
+    public McpToolResultCache(@Value("${mcp.tool-cache.max-entries:10000}") int maxEntries,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                return size() > McpToolResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @return 缓存的工具结果，未命中或不可缓存时返回 null
+     */
+    public String get(Policy policy, String connection, String toolName, Map<String, Object> arguments) {
+        if (!policy.isCacheable(toolName)) {
+            return null;
+        }
+        CacheKey key = new CacheKey(connection, toolName, canonicalize(arguments));
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAtMs() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        count(toolName, entry != null ? "hit" : "miss");
+        if (entry != null) {
+            log.debug("MCP工具结果缓存命中: tool={}, args={}", toolName, key.arguments());
+            return entry.result();
+        }
+        return null;
+    }
+
+    /**
+     * 写入缓存（只写入可缓存工具的成功结果）
+     */
+    public void put(Policy policy, String connection, String toolName, Map<String, Object> arguments, String result) {
+        long ttlMs = policy.ttlMs(toolName);
+        if (ttlMs <= 0 || result == null) {
+            return;
+        }
+        CacheKey key = new CacheKey(connection, toolName, canonicalize(arguments));
+        Entry entry = new Entry(result, System.currentTimeMillis() + ttlMs, copyArguments(arguments));
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 写操作工具执行后清理相关缓存
+     */
+    public void invalidate(Policy policy, String toolName, Map<String, Object> arguments) {
+        Map<String, List<String>> targets = policy.invalidations().get(toolName);
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Map.Entry<CacheKey, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<CacheKey, Entry> cached = iterator.next();
+                List<String> matchKeys = targets.get(cached.getKey().toolName());
+                if (matchKeys != null && matches(matchKeys, arguments, cached.getValue().arguments())) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("写操作工具清理缓存: tool={}, removed={}", toolName, removed);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 参数规范化：键排序后的紧凑 JSON，字段顺序不同的同一参数命中同一条缓存
+     */
+    String canonicalize(Map<String, Object> arguments) {
+        if (arguments == null || arguments.isEmpty()) {
+            return "{}";
+        }
+        try {
+            return canonicalMapper.writeValueAsString(arguments);
+        } catch (Exception e) {
+            return String.valueOf(new java.util.TreeMap<>(arguments));
+        }
+    }
+
+    private static boolean matches(List<String> matchKeys, Map<String, Object> mutation, Map<String, Object> cached) {
+        for (String matchKey : matchKeys) {
+            Object expected = mutation.get(matchKey);
+            Object actual = cached.get(matchKey);
+            if (expected == null || actual == null || !String.valueOf(expected).equals(String.valueOf(actual))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> copyArguments(Map<String, Object> arguments) {
+        return arguments == null || arguments.isEmpty() ? Collections.emptyMap() : new HashMap<>(arguments);
+    }
+
+    private void count(String toolName, String result) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("supportbot.mcp.tool.cache", "tool", toolName, "result", result).increment();
+        }
+    }
+
+    private record CacheKey(String connection, String toolName, String arguments) {
+    }
+
+    private record Entry(String result, long expiresAtMs, Map<String, Object> arguments) {
+    }
+
+    /**
+     * 缓存策略，由 toolcallback.options.cache 解析
+     *
+     * @param ttlMs 可缓存工具及其 TTL
+     * @param invalidations 写操作工具 -> (被清理的工具 -> 匹配参数名)
+     */
+    public record Policy(Map<String, Long> ttlMs, Map<String, Map<String, List<String>>> invalidations) {
+
+        public static final Policy DISABLED = new Policy(Map.of(), Map.of());
+
+        public boolean isCacheable(String toolName) {
+            return ttlMs(toolName) > 0;
+        }
+
+        public long ttlMs(String toolName) {
+            // 写操作工具即使误配置了 TTL 也不缓存
+            if (invalidations.containsKey(toolName)) {
+                return 0;
+            }
+            return ttlMs.getOrDefault(toolName, 0L);
+        }
+
+        /**
+         * 从 toolcallback.options 解析缓存策略，键名支持 kebab-case 与 camelCase
+         */
+        @SuppressWarnings("unchecked")
+        public static Policy from(Map<String, Object> options) {
+            Object cacheOption = options != null ? options.get("cache") : null;
+            if (!(cacheOption instanceof Map)) {
+                return DISABLED;
+            }
+            Map<String, Object> cache = (Map<String, Object>) cacheOption;
+            if (!McpOptions.enabled(cache)) {
+                return DISABLED;
+            }
+
+            Map<String, Long> ttls = new HashMap<>();
+            if (cache.get("tools") instanceof Map<?, ?> tools) {
+                tools.forEach((name, toolOption) -> {
+                    if (toolOption instanceof Map<?, ?> toolMap) {
+                        long ttlSeconds = McpOptions.longOption((Map<String, Object>) toolMap, 0, "ttl-seconds", "ttlSeconds");
+                        if (ttlSeconds > 0) {
+                            ttls.put(String.valueOf(name), ttlSeconds * 1000);
+                        }
+                    }
+                });
+            }
+
+            Map<String, Map<String, List<String>>> invalidations = new HashMap<>();
+            if (cache.get("invalidations") instanceof Map<?, ?> mutations) {
+                mutations.forEach((mutation, targets) -> {
+                    Map<String, List<String>> targetKeys = new HashMap<>();
+                    if (targets instanceof Map<?, ?> targetMap) {
+                        targetMap.forEach((target, keys) -> targetKeys.put(String.valueOf(target), matchKeys(keys)));
+                    } else {
+                        // 只列出工具名时清理这些工具的全部缓存
+                        McpOptions.stringList(targets).forEach(target -> targetKeys.put(target, List.of()));
+                    }
+                    invalidations.put(String.valueOf(mutation), targetKeys);
+                });
+            }
+            return ttls.isEmpty() && invalidations.isEmpty() ? DISABLED : new Policy(ttls, invalidations);
+        }
+
+        /**
+         * 匹配参数名列表，"*" 或空列表表示清理该工具的全部缓存
+         */
+        private static List<String> matchKeys(Object value) {
+            List<String> keys = McpOptions.stringList(value);
+            keys.remove("*");
+            return keys;
+        }
+    }
+}
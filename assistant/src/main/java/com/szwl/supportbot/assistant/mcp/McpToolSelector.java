@@ -0,0 +1,258 @@
+package com.szwl.supportbot.assistant.mcp;
+
+import com.szwl.supportbot.assistant.config.AgentConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具子集选择
+ *
+ * 每轮只向模型附带与问题相关的工具，减少工具 schema 的 token 数与选错工具的概率。
+ * 工具名与描述建立本地索引，问题（加分类）与之按词项（中文二元组 + 英文单词，IDF 加权）打分，
+ * 可选叠加缓存的向量相似度；附带得分前 K 的工具以及业务配置中固定附带的工具。
+ * 配置在 toolcallback.options.selection 中：
+ * <pre>
+ * selection:
+ *   enabled: true
+ *   top-k: 4
+ *   pinned: [getUserOrders]   # 始终附带
+ *   embedding-weight: 0.5     # 向量相似度权重，0 表示只用词项匹配
+ * </pre>
+ * 工具总数不超过 top-K 或没有任何工具与问题相关时保留全部工具。
+ */
+@Slf4j
+@Component
+public class McpToolSelector {
+
+    private static final int DEFAULT_TOP_K = 6;
+    private static final int MAX_INDEX_ENTRIES = 2048;
+
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+
+    // 工具文本 -> 词项集合 / 向量，工具列表每轮重新拉取，索引按文本缓存
+    private final Map<String, Set<String>> termIndex = new ConcurrentHashMap<>();
+    private final Map<String, float[]> embeddingIndex = new ConcurrentHashMap<>();
+
+    public McpToolSelector(ObjectProvider<EmbeddingModel> embeddingModel, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.embeddingModel = embeddingModel.getIfAvailable();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    /**
+     * 选择本轮附带的工具
+     *
+     * @param tools 全部可用工具
+     * @param mcpConfig 业务类型的MCP配置
+     * @param question 用户问题
+     * @param category 问题分类，可以为空
+     */
+    @SuppressWarnings("unchecked")
+    public ToolCallback[] select(ToolCallback[] tools, AgentConfig.McpConfig mcpConfig, String question, String category) {
+        AgentConfig.ToolCallback toolCallback = mcpConfig != null && mcpConfig.getClient() != null
+                ? mcpConfig.getClient().getToolcallback() : null;
+        if (tools == null || toolCallback == null || toolCallback.getOptions() == null
+                || !(toolCallback.getOptions().get("selection") instanceof Map<?, ?> selectionOption)) {
+            return tools;
+        }
+        Map<String, Object> selection = (Map<String, Object>) selectionOption;
+        if (!McpOptions.enabled(selection)) {
+            return tools;
+        }
+        int topK = (int) McpOptions.longOption(selection, DEFAULT_TOP_K, "top-k", "topK");
+        Set<String> pinned = new HashSet<>(McpOptions.stringList(selection.get("pinned")));
+        if (tools.length <= topK) {
+            return tools;
+        }
+
+        String query = category != null && !category.isBlank() ? category + " " + question : question;
+        double[] scores = lexicalScores(tools, query);
+        double embeddingWeight = McpOptions.doubleOption(selection, 0, "embedding-weight", "embeddingWeight");
+        if (embeddingWeight > 0) {
+            blendEmbeddingScores(tools, query, scores, embeddingWeight);
+        }
+
+        Integer[] order = new Integer[tools.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        if (scores[order[0]] <= 0) {
+            log.info("没有与问题相关的工具，保留全部工具: total={}", tools.length);
+            return tools;
+        }
+
+        Set<Integer> chosen = new LinkedHashSet<>();
+        for (int i = 0; i < tools.length; i++) {
+            if (pinned.contains(tools[i].getToolDefinition().name())) {
+                chosen.add(i);
+            }
+        }
+        for (int i = 0, ranked = 0; i < order.length && ranked < topK; i++) {
+            if (scores[order[i]] <= 0) {
+                break;
+            }
+            chosen.add(order[i]);
+            ranked++;
+        }
+
+        ToolCallback[] selected = chosen.stream().sorted().map(i -> tools[i]).toArray(ToolCallback[]::new);
+        if (meterRegistry != null) {
+            meterRegistry.summary("supportbot.mcp.tool.selected").record(selected.length);
+            meterRegistry.summary("supportbot.mcp.tool.available").record(tools.length);
+        }
+        log.info("工具子集选择: total={}, selected={}, tools={}", tools.length, selected.length,
+                Arrays.stream(selected).map(tool -> tool.getToolDefinition().name()).toList());
+        return selected;
+    }
+
+    /**
+     * 词项匹配得分：问题中出现在工具文本里的词项按 IDF 累加，归一化到 [0, 1]
+     */
+    private double[] lexicalScores(ToolCallback[] tools, String query) {
+        List<Set<String>> toolTerms = new ArrayList<>(tools.length);
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (ToolCallback tool : tools) {
+            Set<String> terms = termIndex.computeIfAbsent(toolText(tool), McpToolSelector::terms);
+            toolTerms.add(terms);
+            terms.forEach(term -> documentFrequency.merge(term, 1, Integer::sum));
+        }
+        trimIndex();
+
+        Set<String> queryTerms = terms(query);
+        double[] scores = new double[tools.length];
+        double max = 0;
+        for (int i = 0; i < tools.length; i++) {
+            double score = 0;
+            for (String term : queryTerms) {
+                if (toolTerms.get(i).contains(term)) {
+                    score += Math.log(1.0 + (double) tools.length / documentFrequency.get(term));
+                }
+            }
+            scores[i] = score;
+            max = Math.max(max, score);
+        }
+        if (max > 0) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= max;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * 叠加向量相似度；向量模型不可用或调用失败时只用词项得分
+     */
+    private void blendEmbeddingScores(ToolCallback[] tools, String query, double[] scores, double weight) {
+        if (embeddingModel == null) {
+            return;
+        }
+        try {
+            List<String> missing = new ArrayList<>();
+            for (ToolCallback tool : tools) {
+                String text = toolText(tool);
+                if (!embeddingIndex.containsKey(text)) {
+                    missing.add(text);
+                }
+            }
+            if (!missing.isEmpty()) {
+                List<float[]> embeddings = embeddingModel.embed(missing);
+                for (int i = 0; i < missing.size(); i++) {
+                    embeddingIndex.put(missing.get(i), embeddings.get(i));
+                }
+            }
+            float[] queryEmbedding = embeddingModel.embed(query);
+            for (int i = 0; i < tools.length; i++) {
+                double similarity = Math.max(0, cosine(queryEmbedding, embeddingIndex.get(toolText(tools[i]))));
+                scores[i] = (1 - weight) * scores[i] + weight * similarity;
+            }
+        } catch (Exception e) {
+            log.warn("工具向量打分失败，只使用词项匹配: {}", e.getMessage());
+        }
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            return 0;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    private static String toolText(ToolCallback tool) {
+        String description = tool.getToolDefinition().description();
+        return tool.getToolDefinition().name() + " " + (description != null ? description : "");
+    }
+
+    /**
+     * 词项：中文按相邻二元组切分，英文与数字按单词切分（驼峰拆开），统一小写
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        char previousHan = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                flushWord(word, terms);
+                if (previousHan != 0) {
+                    terms.add(new String(new char[]{previousHan, c}));
+                }
+                previousHan = c;
+                continue;
+            }
+            previousHan = 0;
+            if (Character.isLetterOrDigit(c)) {
+                if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(text.charAt(i - 1))) {
+                    flushWord(word, terms);
+                }
+                word.append(Character.toLowerCase(c));
+            } else {
+                flushWord(word, terms);
+            }
+        }
+        flushWord(word, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, Set<String> terms) {
+        if (word.length() > 1) {
+            terms.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    private void trimIndex() {
+        if (termIndex.size() > MAX_INDEX_ENTRIES) {
+            termIndex.clear();
+        }
+        if (embeddingIndex.size() > MAX_INDEX_ENTRIES) {
+            embeddingIndex.clear();
+        }
+    }
+}
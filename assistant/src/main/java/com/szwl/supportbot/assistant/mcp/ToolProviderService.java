@@ -2,6 +2,7 @@ package com.szwl.supportbot.assistant.mcp;
 
 import com.szwl.supportbot.assistant.config.AgentConfig;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -45,6 +46,13 @@ public class ToolProviderService {
         }
     }
 
+    /**
+     * 过滤掉熔断中连接的MCP工具（缓存的工具列表每轮使用前调用）
+     */
+    public ToolCallback[] availableTools(ToolCallback[] tools) {
+        return mcpClientFactory.filterAvailableTools(tools);
+    }
+
     /**
      * 获取默认工具
      */
@@ -1,13 +1,21 @@
 package com.szwl.supportbot.assistant.mq;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.common.mq.TaskMessage;
+import com.szwl.supportbot.common.mq.TaskMessageCodec;
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
+import com.szwl.supportbot.common.util.MessageBodyExtractor;
+import com.szwl.supportbot.assistant.chat.AgentProfile;
+import com.szwl.supportbot.assistant.chat.AgentProfileRegistry;
 import com.szwl.supportbot.assistant.chat.AssistantService;
-import com.szwl.supportbot.assistant.config.DynamicConfigService;
+import com.szwl.supportbot.assistant.mcp.McpToolPrefetch;
+import com.szwl.supportbot.assistant.mcp.McpToolPrefetcher;
 
 import com.szwl.supportbot.assistant.session.SessionMemory;
-import com.szwl.supportbot.assistant.util.MessageBodyExtractor;
 import com.szwl.supportbot.assistant.messaging.ImMessageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientServiceProvider;
@@ -24,8 +32,8 @@ import jakarta.annotation.PreDestroy;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 消息消费服务
@@ -41,11 +49,17 @@ import java.time.Duration;
 @Service
 public class MessageConsumerService {
 
-    private final DynamicConfigService dynamicConfigService;
+    private static final String CONSUME_METRIC = "supportbot.mq.consume";
+    private static final String RECEIVE_LAG_METRIC = "supportbot.mq.receive.lag";
+
+    private final AgentProfileRegistry agentProfileRegistry;
     private final AssistantService assistantService;
     private final SessionMemory sessionMemory;
-    private final ObjectMapper objectMapper;
     private final ImMessageService imMessageService;
+    private final McpToolPrefetcher toolPrefetcher;
+    
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
     
     private final String proxyServer;
     @Value("${rocketmq.consumer.topic}")
@@ -62,18 +76,22 @@ public class MessageConsumerService {
     private SimpleConsumer simpleConsumer;
 
     public MessageConsumerService(
-            DynamicConfigService dynamicConfigService,
+            AgentProfileRegistry agentProfileRegistry,
             AssistantService assistantService,
             SessionMemory sessionMemory,
-            ObjectMapper objectMapper,
             ImMessageService imMessageService,
+            McpToolPrefetcher toolPrefetcher,
+            MeterRegistry meterRegistry,
+            TraceRecorder traceRecorder,
             @Value("${rocketmq.proxy-server}") String proxyServer
     ) {
-        this.dynamicConfigService = dynamicConfigService;
+        this.agentProfileRegistry = agentProfileRegistry;
         this.assistantService = assistantService;
         this.sessionMemory = sessionMemory;
-        this.objectMapper = objectMapper;
         this.imMessageService = imMessageService;
+        this.toolPrefetcher = toolPrefetcher;
+        this.meterRegistry = meterRegistry;
+        this.traceRecorder = traceRecorder;
         this.proxyServer = proxyServer;
     }
 
@@ -138,38 +156,47 @@ public class MessageConsumerService {
                     
                     if (messages != null && !messages.isEmpty()) {
                         log.info("拉取到 {} 条消息", messages.size());
+                        long receivedNanos = System.nanoTime();
                         
                         for (MessageView messageView : messages) {
+                            recordReceiveLag(messageView);
                             try {
                                 log.info("开始处理消息: messageId={}", messageView.getMessageId());
                                 
-                                // 安全地获取消息体
-                                String message = MessageBodyExtractor.extractAsString(messageView);
-                                if (message == null) {
+                                // 按 contentType 属性解码任务消息（protobuf / 旧版 JSON）
+                                TaskMessage task = TaskMessageCodec.decode(MessageBodyExtractor.bodyBuffer(messageView),
+                                        messageView.getProperties().get(TaskMessageCodec.CONTENT_TYPE_PROPERTY));
+                                if (task == null) {
                                     log.warn("消息体提取失败，跳过处理");
                                     // 消息体提取失败，确认消息避免重复投递
-                                    ackMessage(messageView, "消息体提取失败");
+                                    ackMessage(messageView, "消息体提取失败", "invalid", receivedNanos);
                                     continue;
                                 }
                                 
-                                log.info("收到业务咨询消息: {}", message);
+                                log.info("收到业务咨询消息: {}", task);
                                 
-                                // 处理消息
-                                boolean success = consumeMessage(message);
+                                // 处理消息（链路上下文设置到当前线程，日志与回复投递沿用）
+                                boolean success;
+                                long consumeStart = System.nanoTime();
+                                try (TraceContext.Scope ignored = TraceContext.attach(traceOf(task, messageView))) {
+                                    traceRecorder.record("mq.received", Math.max(0, System.currentTimeMillis() - messageView.getBornTimestamp()));
+                                    success = consumeMessage(task);
+                                    traceRecorder.recordSince("agent.consume", consumeStart);
+                                }
                                 
                                 if (success) {
                                     // 消息处理成功，确认消费
-                                    ackMessage(messageView, "消息处理成功");
+                                    ackMessage(messageView, "消息处理成功", "success", receivedNanos);
                                 } else {
                                     // 消息处理失败，确认消息避免重复投递
-                                    ackMessage(messageView, "消息处理失败");
+                                    ackMessage(messageView, "消息处理失败", "failure", receivedNanos);
                                 }
                                 
                             } catch (Exception e) {
                                 log.error("消息处理异常: messageId={}, error={}", 
                                         messageView.getMessageId(), e.getMessage(), e);
                                 // 发生异常时，确认消息避免重复投递
-                                ackMessage(messageView, "消息处理异常");
+                                ackMessage(messageView, "消息处理异常", "error", receivedNanos);
                             }
                         }
                     }
@@ -201,29 +228,38 @@ public class MessageConsumerService {
      * 
      * 处理流程：
      * 1. 解析消息内容（问题、业务类型、会话ID）
-     * 2. 获取会话历史上下文
-     * 3. 构建完整的对话历史
-     * 4. 调用AI助手处理（包含历史上下文）
-     * 5. 保存新的对话记录到Redis
+     * 2. 获取业务类型的 Agent 配置（预先编译，不逐条读取Nacos）
+     * 3. 按抽取信息预取只读工具（异步）
+     * 4. 获取会话历史上下文
+     * 5. 调用AI助手处理（包含历史上下文与预取结果）
+     * 6. 保存新的对话记录到Redis
      * 
-     * @param messageJson 消息JSON字符串
+     * @param messageJson 消息JSON字符串（旧版格式）
      * @return true表示处理成功，false表示处理失败
      */
     public boolean consumeMessage(String messageJson) {
+        TaskMessage task = parseMessage(messageJson);
+        if (task == null) {
+            log.error("消息解析失败，跳过处理");
+            return false;
+        }
+        return consumeMessage(task);
+    }
+
+    /**
+     * 消费已解码的任务消息
+     *
+     * @param task 任务消息
+     * @return true表示处理成功，false表示处理失败
+     */
+    public boolean consumeMessage(TaskMessage task) {
         try {
-            log.info("收到队列消息: {}", messageJson);
-            
-            // 解析消息JSON
-            Map<String, Object> message = parseMessage(messageJson);
-            if (message == null) {
-                log.error("消息解析失败，跳过处理");
-                return false;
-            }
+            log.info("收到队列消息: {}", task);
             
             //提取消息内容
-            String messageContent = (String) message.get("question");
-            String businessType = (String) message.get("category");
-            String sessionId = (String) message.get("sessionId"); // 会话ID就是用户ID
+            String messageContent = task.getQuestion();
+            String businessType = task.getCategory();
+            String sessionId = task.getSessionId(); // 会话ID就是用户ID
             String userId = extractUserIdFromSession(sessionId);
             
             if (messageContent == null || messageContent.trim().isEmpty()) {
@@ -240,28 +276,12 @@ public class MessageConsumerService {
                 log.info("未指定业务类型，使用默认值: {}", businessType);
             }
             
-            // 从Nacos获取业务类型对应的配置
-            AgentConfig.BusinessTypeConfig businessConfig = dynamicConfigService.getBusinessTypeConfig(businessType);
-            String systemPrompt = null;
-            AgentConfig.McpConfig mcpConfig = null;
-            
-            if (businessConfig != null) {
-                systemPrompt = businessConfig.getSystemPrompt();
-                // 使用DynamicConfigService的getMcpConfig方法来获取MCP配置
-                try {
-                    mcpConfig = dynamicConfigService.getMcpConfig(businessType);
-                    log.info("成功获取业务类型 {} 的配置，系统提示词长度: {}, MCP配置: {}", 
-                            businessType, 
-                            systemPrompt != null ? systemPrompt.length() : 0,
-                            mcpConfig != null ? "已配置" : "未配置");
-                } catch (Exception e) {
-                    log.warn("获取MCP配置失败，使用默认配置: {}", e.getMessage());
-                    mcpConfig = null;
-                }
-            } else {
-                log.warn("业务类型 {} 的配置获取失败，使用默认配置", businessType);
-            }
+            // 业务类型的 Agent 配置（首次使用时从Nacos加载并编译，之后复用，配置变化时自动替换）
+            AgentProfile profile = agentProfileRegistry.get(businessType);
             
+            // 按分类阶段抽取的信息预取只读工具，与会话历史读取并行
+            McpToolPrefetch prefetch = toolPrefetcher.start(profile.mcpConfig(), profile.tools(), task.getExtractedInfo());
+
             try {
                 // 获取会话历史上下文
                 String conversationHistory = sessionMemory.getConversationContext(sessionId);
@@ -272,7 +292,8 @@ public class MessageConsumerService {
                 }
                 
                 // 调用AssistantService.chat，传入配置参数和会话历史
-                String result = assistantService.chat(sessionId, messageContent, systemPrompt, mcpConfig, conversationHistory);
+                String result = assistantService.chat(sessionId, messageContent, profile, conversationHistory,
+                        businessType, prefetch);
             
                 log.info("消息处理成功: businessType={}, sessionId={}, result={}", 
                         businessType, sessionId, result);
@@ -335,12 +356,12 @@ public class MessageConsumerService {
     }
 
     /**
-     * 解析消息JSON
+     * 解析消息JSON（旧版格式）
      */
-    private Map<String, Object> parseMessage(String messageJson) {
+    private TaskMessage parseMessage(String messageJson) {
         try {
             log.info("开始解析消息JSON，长度: {}", messageJson != null ? messageJson.length() : 0);
-            Map<String, Object> result = objectMapper.readValue(messageJson, Map.class);
+            TaskMessage result = TaskMessageCodec.decodeJson(messageJson);
             log.info("消息JSON解析成功，解析结果: {}", result);
             return result;
         } catch (Exception e) {
@@ -368,11 +389,16 @@ public class MessageConsumerService {
      * @param messageView 消息视图
      * @param reason 确认原因
      */
-    private void ackMessage(MessageView messageView, String reason) {
+    private void ackMessage(MessageView messageView, String reason, String outcome, long receivedNanos) {
         try {
             simpleConsumer.ack(messageView);
             log.info("消息确认成功: messageId={}, reason={}", messageView.getMessageId(), reason);
         } catch (Exception e) {
+            Counter.builder("supportbot.mq.ack.failures")
+                    .description("RocketMQ 消息确认失败次数")
+                    .tag("topic", topic)
+                    .register(meterRegistry)
+                    .increment();
             if (e.getMessage() != null && e.getMessage().contains("INVALID_RECEIPT_HANDLE")) {
                 log.warn("消息确认失败，receipt handle已过期: messageId={}, reason={}, error={}", 
                         messageView.getMessageId(), reason, e.getMessage());
@@ -380,9 +406,43 @@ public class MessageConsumerService {
                 log.error("消息确认失败: messageId={}, reason={}, error={}", 
                         messageView.getMessageId(), reason, e.getMessage(), e);
             }
+        } finally {
+            recordConsume(outcome, receivedNanos);
         }
     }
 
+    /**
+     * 记录消息从拉取到确认的耗时（按 topic、处理结果区分）
+     */
+    private void recordConsume(String outcome, long receivedNanos) {
+        Timer.builder(CONSUME_METRIC)
+                .description("RocketMQ 消息拉取到确认的耗时")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录消息从生产者发出到被拉取的延迟（按 topic 区分）
+     */
+    private void recordReceiveLag(MessageView messageView) {
+        long lagMs = System.currentTimeMillis() - messageView.getBornTimestamp();
+        Timer.builder(RECEIVE_LAG_METRIC)
+                .description("RocketMQ 消息发出到被拉取的延迟")
+                .tag("topic", topic)
+                .register(meterRegistry)
+                .record(Math.max(lagMs, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 任务消息中的链路上下文，消息体没有时从消息属性读取
+     */
+    private static TraceContext traceOf(TaskMessage task, MessageView messageView) {
+        TraceContext trace = TraceContext.of(task.getTraceId(), task.getOriginTsMs(), task.getMessageId());
+        return trace != null ? trace : TraceContext.fromProperties(messageView.getProperties());
+    }
+
 
 
     /**
@@ -392,7 +452,7 @@ public class MessageConsumerService {
         try {
             // 检查其他依赖服务
             boolean servicesHealthy = assistantService != null && 
-                                   dynamicConfigService != null && 
+                                   agentProfileRegistry != null && 
                                    sessionMemory != null &&
                                    simpleConsumer != null;
             
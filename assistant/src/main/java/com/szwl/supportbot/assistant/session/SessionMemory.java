@@ -1,6 +1,8 @@
 package com.szwl.supportbot.assistant.session;
 
 import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -20,11 +22,14 @@ public class SessionMemory {
 
     private static final Duration SESSION_TTL = Duration.ofMinutes(30); // 延长到30分钟
     private static final String SESSION_PREFIX = "chat:";
+    private static final String REDIS_METRIC = "supportbot.session.redis";
     
     private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
 
-    public SessionMemory(RedisTemplate<String, Object> redisTemplate) {
+    public SessionMemory(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -36,7 +41,7 @@ public class SessionMemory {
     @SuppressWarnings("unchecked")
     public List<Map<String, Object>> getChatHistory(String uid) {
         String key = SESSION_PREFIX + uid;
-        Object value = redisTemplate.opsForValue().get(key);
+        Object value = redisTimer("read").record(() -> redisTemplate.opsForValue().get(key));
         
         if (value instanceof List) {
             return (List<Map<String, Object>>) value;
@@ -68,7 +73,7 @@ public class SessionMemory {
         chatHistory.add(record);
         
         // 保存到Redis，设置TTL
-        redisTemplate.opsForValue().set(key, chatHistory, SESSION_TTL);
+        redisTimer("write").record(() -> redisTemplate.opsForValue().set(key, chatHistory, SESSION_TTL));
         
         log.info("添加聊天记录: uid={}, sender={}, contentLength={}", uid, sender, content.length());
     }
@@ -157,7 +162,7 @@ public class SessionMemory {
      */
     public void clearChatHistory(String uid) {
         String key = SESSION_PREFIX + uid;
-        redisTemplate.delete(key);
+        redisTimer("delete").record(() -> redisTemplate.delete(key));
         log.info("清除聊天记录: uid={}", uid);
     }
 
@@ -247,4 +252,14 @@ public class SessionMemory {
     public Long getSessionTTL(String uid) {
         return getChatHistoryTTL(uid);
     }
+
+    /**
+     * 会话记录 Redis 读写耗时（按操作区分）
+     */
+    private Timer redisTimer(String operation) {
+        return Timer.builder(REDIS_METRIC)
+                .description("会话记录 Redis 读写耗时")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
 }
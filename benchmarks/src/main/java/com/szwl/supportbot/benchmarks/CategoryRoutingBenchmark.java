@@ -0,0 +1,85 @@
+package com.szwl.supportbot.benchmarks;
+
+import com.szwl.supportbot.questionclassifier.config.CategoryKeywordRouter;
+import com.szwl.supportbot.questionclassifier.config.QuestionCategoryConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分类到 Topic 路由基准测试（10 ~ 1000 条映射）
+ * exact：分类与关键词完全相同
+ * contains：分类中包含关键词（取最长关键词）
+ * miss：没有匹配的关键词，回退默认 Topic
+ * compile：映射变更后重建关键词路由器
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryRoutingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int mappingCount;
+
+    private Map<String, String> mappings;
+    private QuestionCategoryConfig config;
+    private String exactCategory;
+    private String containedCategory;
+    private String missedCategory;
+
+    @Setup
+    public void setup() {
+        mappings = new LinkedHashMap<>();
+        mappings.put("业务咨询", "supportbot-business-consultation");
+        mappings.put("活动咨询", "supportbot-activity-consultation");
+        mappings.put("闲聊", "supportbot-general-chat");
+        for (int i = mappings.size(); i < mappingCount; i++) {
+            mappings.put("业务线" + i + "咨询", "supportbot-business-line-" + i);
+        }
+
+        config = new QuestionCategoryConfig();
+        config.setCategoryMappings(mappings);
+        // 首次调用时编译路由器，不计入测量
+        config.getTopicForCategory("业务咨询");
+
+        exactCategory = "业务线" + (mappingCount - 1) + "咨询";
+        containedCategory = "关于退货退款的业务咨询问题";
+        missedCategory = "天气怎么样今天适合出门吗";
+    }
+
+    @Benchmark
+    public String exact() {
+        return config.getTopicForCategory(exactCategory);
+    }
+
+    @Benchmark
+    public String contains() {
+        return config.getTopicForCategory(containedCategory);
+    }
+
+    @Benchmark
+    public String miss() {
+        return config.getTopicForCategory(missedCategory);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CategoryKeywordRouter compile() {
+        return CategoryKeywordRouter.compile(mappings);
+    }
+}
@@ -0,0 +1,84 @@
+package com.szwl.supportbot.benchmarks;
+
+import com.szwl.supportbot.assistant.config.AgentConfig;
+import com.szwl.supportbot.assistant.mcp.McpToolCallbackProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP 工具列表基准测试（5 ~ 100 个工具）
+ * parse：解析 tools/list 的 JSON-RPC 响应（每次刷新工具列表时执行）
+ * toolCallbacks：getToolCallbacks 生成工具回调
+ * toolDefinitions：生成工具回调并读取每个工具的定义（每轮模型请求附带工具 schema 时的开销）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class McpToolCallbackProviderBenchmark {
+
+    @Param({"5", "20", "100"})
+    private int toolCount;
+
+    private AgentConfig.Connection connection;
+    private AgentConfig.ToolCallback toolCallback;
+    private String toolsResponse;
+    private McpToolCallbackProvider provider;
+
+    @Setup
+    public void setup() {
+        connection = new AgentConfig.Connection();
+        connection.setUrl("http://127.0.0.1:18080");
+        toolCallback = new AgentConfig.ToolCallback();
+
+        StringBuilder tools = new StringBuilder();
+        for (int i = 0; i < toolCount; i++) {
+            if (i > 0) {
+                tools.append(',');
+            }
+            tools.append("{\"name\":\"getOrderDetail").append(i).append("\",")
+                    .append("\"description\":\"根据订单号查询订单详情，包括商品、金额、收货地址与物流状态（").append(i).append("）\",")
+                    .append("\"inputSchema\":{\"type\":\"object\",\"properties\":{")
+                    .append("\"orderId\":{\"type\":\"string\",\"description\":\"订单号\"},")
+                    .append("\"userId\":{\"type\":\"string\",\"description\":\"用户ID\"},")
+                    .append("\"includeItems\":{\"type\":\"boolean\",\"description\":\"是否返回商品明细\"}},")
+                    .append("\"required\":[\"orderId\"]}}");
+        }
+        toolsResponse = "{\"jsonrpc\":\"2.0\",\"id\":\"list-tools\",\"result\":{\"tools\":[" + tools + "]}}";
+
+        // 解析与生成回调不会调用工具，不需要工具调用器
+        provider = new McpToolCallbackProvider(connection, toolsResponse, toolCallback, null, 15000);
+    }
+
+    @Benchmark
+    public McpToolCallbackProvider parse() {
+        return new McpToolCallbackProvider(connection, toolsResponse, toolCallback, null, 15000);
+    }
+
+    @Benchmark
+    public ToolCallback[] toolCallbacks() {
+        return provider.getToolCallbacks();
+    }
+
+    @Benchmark
+    public void toolDefinitions(Blackhole blackhole) {
+        for (ToolCallback callback : provider.getToolCallbacks()) {
+            blackhole.consume(callback.getToolDefinition());
+        }
+    }
+}
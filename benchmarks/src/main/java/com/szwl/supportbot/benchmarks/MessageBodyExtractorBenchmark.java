@@ -0,0 +1,102 @@
+package com.szwl.supportbot.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.szwl.supportbot.common.mq.TaskMessage;
+import com.szwl.supportbot.common.mq.TaskMessageCodec;
+import com.szwl.supportbot.common.util.MessageBodyExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息体解码基准测试（1KB ~ 64KB）
+ * legacy：复制 ByteBuffer -> String -> Map（改造前的实现）
+ * zeroCopyJson：ByteBuffer 直接交给 Jackson
+ * protobuf：同样内容的 protobuf 消息直接从 ByteBuffer 解码
+ *
+ * RocketMQ 返回的消息体是只读 ByteBuffer，readOnly=true 对应线上场景
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBodyExtractorBenchmark {
+
+    @Param({"1024", "4096", "16384", "65536"})
+    private int payloadSize;
+
+    @Param({"true", "false"})
+    private boolean readOnly;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ByteBuffer jsonBody;
+    private ByteBuffer protobufBody;
+
+    @Setup
+    public void setup() throws Exception {
+        TaskMessage message = new TaskMessage();
+        message.setSessionId("123456789");
+        message.setCategory("业务咨询");
+        message.setCreatedAtMs(System.currentTimeMillis());
+        message.getExtractedInfo().put("order_id", "100086");
+
+        // 以问题文本填充到目标大小
+        StringBuilder question = new StringBuilder(payloadSize);
+        while (TaskMessageCodec.encodeJson(withQuestion(message, question.toString())).length < payloadSize) {
+            question.append("我的订单什么时候发货，可以帮我查一下物流吗？");
+        }
+        withQuestion(message, question.toString());
+
+        jsonBody = wrap(TaskMessageCodec.encodeJson(message));
+        protobufBody = wrap(TaskMessageCodec.encodeProtobuf(message));
+    }
+
+    @Benchmark
+    public Object legacy() throws Exception {
+        ByteBuffer buffer = jsonBody.duplicate();
+        byte[] bodyBytes = new byte[buffer.remaining()];
+        buffer.get(bodyBytes);
+        String message = new String(bodyBytes, StandardCharsets.UTF_8);
+        return objectMapper.readValue(message, Map.class);
+    }
+
+    @Benchmark
+    public Object zeroCopyJson() throws Exception {
+        return MessageBodyExtractor.readJson(objectMapper, jsonBody, Map.class);
+    }
+
+    @Benchmark
+    public Object protobuf() throws Exception {
+        return TaskMessageCodec.decodeProtobuf(protobufBody);
+    }
+
+    @Benchmark
+    public int size() {
+        return MessageBodyExtractor.asBuffer(jsonBody).remaining();
+    }
+
+    private ByteBuffer wrap(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return readOnly ? buffer.asReadOnlyBuffer() : buffer;
+    }
+
+    private static TaskMessage withQuestion(TaskMessage message, String question) {
+        message.setQuestion(question);
+        return message;
+    }
+}
@@ -0,0 +1,100 @@
+package com.szwl.supportbot.benchmarks;
+
+import com.szwl.supportbot.questionclassifier.config.PromptTemplateConfig;
+import com.szwl.supportbot.questionclassifier.service.PromptBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分类提示词构建基准测试
+ * legacy：每次请求重新格式化示例并链式 replace（改造前的实现）
+ * compiled：PromptBuilder 预编译模板后单缓冲区渲染
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBuilderBenchmark {
+
+    @Param({"0", "10", "50", "200"})
+    private int exampleCount;
+
+    private PromptTemplateConfig config;
+    private PromptBuilder promptBuilder;
+    private String question;
+    private String context;
+
+    @Setup
+    public void setup() {
+        List<PromptTemplateConfig.Example> examples = new ArrayList<>();
+        for (int i = 0; i < exampleCount; i++) {
+            PromptTemplateConfig.Example example = new PromptTemplateConfig.Example();
+            example.setUserInput("我的订单" + (100000 + i) + "什么时候发货？另外想问一下退货流程");
+            example.setExpectedOutput("{\"questions\":[{\"id\":1,\"original_text\":\"订单什么时候发货\","
+                + "\"category\":\"业务咨询\",\"extracted_info\":{\"order_id\":\"" + (100000 + i) + "\"},"
+                + "\"confidence\":0.95}],\"total_questions\":1}");
+            examples.add(example);
+        }
+
+        PromptTemplateConfig.QuestionClassification questionClassification = new PromptTemplateConfig.QuestionClassification();
+        questionClassification.setSystemPrompt("你是一个专业的客服问题分类助手，请将用户问题拆分并分类为：业务咨询、活动咨询、闲聊。");
+        questionClassification.setUserPromptTemplate("对话历史：\n{conversation_context}\n\n当前用户输入：\n{user_input}\n\n请输出分类结果。");
+        questionClassification.setExamples(examples);
+
+        config = new PromptTemplateConfig();
+        config.setQuestionClassification(questionClassification);
+        promptBuilder = new PromptBuilder(config);
+
+        question = "我买的手机屏幕有划痕，可以退货吗？顺便问下最近有什么优惠活动";
+        context = "对话历史：\n用户：你好\n助手：您好，请问有什么可以帮您？\n用户：我想咨询订单问题\n助手：请提供订单号\n";
+    }
+
+    @Benchmark
+    public String legacy() {
+        var questionConfig = config.getQuestionClassification();
+        String systemPrompt = questionConfig.getSystemPrompt();
+        if (questionConfig.getExamples() != null && !questionConfig.getExamples().isEmpty()) {
+            systemPrompt += "\n\n示例：\n" + legacyFormatExamples(questionConfig.getExamples());
+        }
+        String userPrompt = questionConfig.getUserPromptTemplate()
+            .replace("{user_input}", question)
+            .replace("{conversation_context}", context != null && !context.trim().isEmpty() ? context : "无历史对话记录");
+        String formatRequirement = """
+
+            请按照以下JSON格式输出结果，不要包含任何多余的文字：
+            {format}
+            """;
+        return systemPrompt + "\n\n" + userPrompt + formatRequirement;
+    }
+
+    @Benchmark
+    public String compiled() {
+        return promptBuilder.buildClassificationPrompt(question, context);
+    }
+
+    private static String legacyFormatExamples(List<PromptTemplateConfig.Example> examples) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < examples.size(); i++) {
+            PromptTemplateConfig.Example example = examples.get(i);
+            sb.append("示例").append(i + 1).append(":\n");
+            sb.append("用户输入: ").append(example.getUserInput()).append("\n");
+            sb.append("期望输出: ").append(example.getExpectedOutput()).append("\n\n");
+        }
+        return sb.toString();
+    }
+}
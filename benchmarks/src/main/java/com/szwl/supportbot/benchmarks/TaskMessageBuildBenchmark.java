@@ -0,0 +1,90 @@
+package com.szwl.supportbot.benchmarks;
+
+import com.szwl.supportbot.common.mq.TaskMessage;
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
+import com.szwl.supportbot.questionclassifier.config.QuestionCategoryConfig;
+import com.szwl.supportbot.questionclassifier.entity.QuestionClassificationResult.QuestionItem;
+import com.szwl.supportbot.questionclassifier.mq.TaskProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务消息构建基准测试
+ * build：TaskProducer.buildTaskMessage（拼接问题、复制抽取信息、附带链路上下文）
+ * buildAndEncode：构建后按默认的 protobuf 编码，即每条任务消息发送前的全部 CPU 开销
+ *
+ * traced=true 时当前线程带链路上下文，与线上经 im-demo 进入的请求一致；
+ * 链路上下文是线程变量，状态按线程隔离（Scope.Thread），在测量线程上设置
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskMessageBuildBenchmark {
+
+    @Param({"0", "4", "16"})
+    private int extractedFields;
+
+    @Param({"true", "false"})
+    private boolean traced;
+
+    private TaskProducer taskProducer;
+    private QuestionItem questionItem;
+    private TraceContext.Scope traceScope;
+
+    @Setup
+    public void setup() {
+        // 构造 TaskProducer 不会连接 RocketMQ（Producer 在 @PostConstruct 中创建）
+        taskProducer = new TaskProducer(new QuestionCategoryConfig(), "127.0.0.1:8081",
+                new SimpleMeterRegistry(), new TraceRecorder("benchmarks", null));
+
+        Map<String, String> extractedInfo = new LinkedHashMap<>();
+        for (int i = 0; i < extractedFields; i++) {
+            extractedInfo.put("field_" + i, "value-" + (100000 + i));
+        }
+        questionItem = new QuestionItem();
+        questionItem.setId("1");
+        questionItem.setOriginalText("我的订单100086什么时候发货？能帮我查一下物流吗");
+        questionItem.setCategory("业务咨询");
+        questionItem.setExtractedInfo(extractedInfo);
+        questionItem.setConfidence(0.95);
+
+        traceScope = traced ? TraceContext.start("msg-100086").attach() : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (traceScope != null) {
+            traceScope.close();
+        }
+    }
+
+    @Benchmark
+    public TaskMessage build() {
+        return taskProducer.buildTaskMessage(questionItem, questionItem.getOriginalText(), "123456789");
+    }
+
+    @Benchmark
+    public byte[] buildAndEncode() throws Exception {
+        return taskProducer.encodeTaskMessage(
+                taskProducer.buildTaskMessage(questionItem, questionItem.getOriginalText(), "123456789"));
+    }
+}
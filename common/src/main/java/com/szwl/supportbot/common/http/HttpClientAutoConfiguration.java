@@ -0,0 +1,66 @@
+package com.szwl.supportbot.common.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * 出站 HTTP 连接池自动配置（http.client.*）
+ *
+ * - RestTemplate 连接池工厂；配置 http.client.rest-template-name 时创建公共 RestTemplate
+ * - 类路径中有 WebFlux + Reactor Netty 时提供 WebClient 连接池工厂
+ */
+@AutoConfiguration(after = RestTemplateAutoConfiguration.class)
+@ConditionalOnClass({RestTemplate.class, MeterRegistry.class})
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientAutoConfiguration {
+
+    /**
+     * 出站 HTTP 连接池：按目标主机限制连接数，保活复用，连接 / 获取连接 / 响应三段超时
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public PooledHttpClientFactory pooledHttpClientFactory(HttpClientProperties httpClientProperties,
+                                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        return new PooledHttpClientFactory(httpClientProperties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * 公共 RestTemplate（连接池 + 请求耗时指标 + 链路追踪请求头）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "http.client", name = "rest-template-name")
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder,
+                                     PooledHttpClientFactory pooledHttpClientFactory,
+                                     HttpClientProperties httpClientProperties) {
+        return pooledHttpClientFactory.restTemplate(restTemplateBuilder, httpClientProperties.getRestTemplateName());
+    }
+
+    /**
+     * WebClient 连接池（MCP 等基于 WebFlux 的客户端使用）
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = {
+            "org.springframework.web.reactive.function.client.WebClient",
+            "reactor.netty.http.client.HttpClient"
+    })
+    static class WebClientConnectorConfiguration {
+
+        @Bean(destroyMethod = "close")
+        @ConditionalOnMissingBean
+        public PooledWebClientConnectorFactory pooledWebClientConnectorFactory(HttpClientProperties httpClientProperties,
+                                                                               ObjectProvider<MeterRegistry> meterRegistry) {
+            return new PooledWebClientConnectorFactory(httpClientProperties, meterRegistry.getIfAvailable() != null);
+        }
+    }
+}
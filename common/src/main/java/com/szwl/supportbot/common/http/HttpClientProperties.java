@@ -0,0 +1,64 @@
+package com.szwl.supportbot.common.http;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 出站 HTTP 客户端配置（http.client.*）
+ * 同时作用于 RestTemplate（HttpClient 5 连接池）与 WebClient（Reactor Netty 连接池）
+ */
+@Data
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientProperties {
+
+    /**
+     * 公共 RestTemplate 的连接池名称（连接池指标标签），一般为主要调用的下游服务；
+     * 配置后自动创建 RestTemplate Bean，未配置则不创建
+     */
+    private String restTemplateName;
+
+    /**
+     * 连接池最大连接数（所有目标主机合计，仅 RestTemplate）
+     */
+    private int maxConnTotal = 200;
+
+    /**
+     * 每个目标主机的最大连接数
+     */
+    private int maxConnPerRoute = 50;
+
+    /**
+     * 建立连接超时（毫秒）
+     */
+    private long connectTimeoutMs = 2000;
+
+    /**
+     * 响应超时（毫秒）：发出请求后等待响应的最长时间
+     */
+    private long responseTimeoutMs = 10000;
+
+    /**
+     * 从连接池获取连接的最长等待时间（毫秒），超时直接失败
+     */
+    private long pendingAcquireTimeoutMs = 1000;
+
+    /**
+     * 等待获取连接的最大请求数（仅 WebClient），超过直接失败
+     */
+    private int maxPendingAcquires = 500;
+
+    /**
+     * 空闲连接保活时间上限（毫秒），服务端返回更短的 Keep-Alive 时以服务端为准
+     */
+    private long keepAliveMs = 30000;
+
+    /**
+     * 空闲超过该时间的连接被回收（毫秒）
+     */
+    private long maxIdleMs = 60000;
+
+    /**
+     * 是否启用 HTTP/2（仅 WebClient，https 地址通过 ALPN 协商，失败时回退 HTTP/1.1）
+     */
+    private boolean http2 = false;
+}
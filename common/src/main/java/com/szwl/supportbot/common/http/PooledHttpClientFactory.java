@@ -0,0 +1,121 @@
+package com.szwl.supportbot.common.http;
+
+import com.szwl.supportbot.common.trace.TraceHttpRequestInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * RestTemplate 连接池工厂（HttpClient 5）
+ *
+ * - 按目标主机（route）限制连接数，连接保活复用，定期回收空闲与过期连接
+ * - 连接、获取连接、响应三段超时
+ * - 连接池指标：httpcomponents.httpclient.pool.*{httpclient=名称}
+ * - 请求耗时由 RestTemplateBuilder 的观测产生 http.client.requests{uri=模板}，调用方应使用 URI 模板传参
+ * - 出站请求附带当前线程的链路上下文请求头
+ */
+@Slf4j
+public class PooledHttpClientFactory implements AutoCloseable {
+
+    private final HttpClientProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final List<CloseableHttpClient> clients = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param properties 客户端配置
+     * @param meterRegistry 指标注册表，可以为空
+     */
+    public PooledHttpClientFactory(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 基于 Spring Boot 的 RestTemplateBuilder（已接入请求观测）创建使用独立连接池的 RestTemplate
+     * URI 模板变量按严格模式编码，查询参数中的 &、= 等字符也会被转义
+     *
+     * @param builder RestTemplateBuilder
+     * @param name 客户端名称，用于连接池指标
+     */
+    public RestTemplate restTemplate(RestTemplateBuilder builder, String name) {
+        DefaultUriBuilderFactory uriBuilderFactory = new DefaultUriBuilderFactory();
+        uriBuilderFactory.setEncodingMode(DefaultUriBuilderFactory.EncodingMode.TEMPLATE_AND_VALUES);
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient(name));
+        return builder
+                .requestFactory(() -> requestFactory)
+                .uriTemplateHandler(uriBuilderFactory)
+                .additionalInterceptors(new TraceHttpRequestInterceptor())
+                .build();
+    }
+
+    /**
+     * 创建使用独立连接池的 HttpClient
+     *
+     * @param name 客户端名称，用于连接池指标
+     */
+    public CloseableHttpClient httpClient(String name) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnTotal())
+                .setMaxConnPerRoute(properties.getMaxConnPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(properties.getResponseTimeoutMs()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(properties.getPendingAcquireTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(properties.getResponseTimeoutMs()))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    // 服务端 Keep-Alive 与本地上限取较小值
+                    TimeValue serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    long keepAliveMs = Math.min(serverKeepAlive.toMilliseconds(), properties.getKeepAliveMs());
+                    return TimeValue.ofMilliseconds(keepAliveMs);
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getMaxIdleMs()))
+                .build();
+
+        if (meterRegistry != null) {
+            new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+        }
+        clients.add(httpClient);
+        log.info("出站HTTP连接池已创建: name={}, maxTotal={}, maxPerRoute={}, connectTimeout={}ms, responseTimeout={}ms",
+                name, properties.getMaxConnTotal(), properties.getMaxConnPerRoute(),
+                properties.getConnectTimeoutMs(), properties.getResponseTimeoutMs());
+        return httpClient;
+    }
+
+    @Override
+    public void close() {
+        for (CloseableHttpClient client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                log.warn("关闭出站HTTP连接池失败", e);
+            }
+        }
+        clients.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.szwl.supportbot.common.http;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebClient 连接池工厂（Reactor Netty）
+ *
+ * - 每个目标主机一个连接池，限制连接数与等待获取连接的请求数
+ * - 连接、获取连接、响应三段超时，可选 HTTP/2
+ * - 启用指标时连接池状态发布为 reactor.netty.connection.provider.*{name=名称}
+ * - 请求耗时由 Spring Boot 的 WebClient.Builder 观测产生 http.client.requests
+ */
+@Slf4j
+public class PooledWebClientConnectorFactory implements AutoCloseable {
+
+    private final HttpClientProperties properties;
+    private final boolean metricsEnabled;
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+    private final Map<String, ClientHttpConnector> connectors = new ConcurrentHashMap<>();
+
+    /**
+     * @param properties 客户端配置
+     * @param metricsEnabled 是否发布连接池指标（需要 Micrometer）
+     */
+    public PooledWebClientConnectorFactory(HttpClientProperties properties, boolean metricsEnabled) {
+        this.properties = properties;
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * 获取指定名称的 ClientHttpConnector，同名复用同一个连接池
+     *
+     * @param name 连接池名称，用于指标
+     */
+    public ClientHttpConnector connector(String name) {
+        return connectors.computeIfAbsent(name, this::createConnector);
+    }
+
+    private ClientHttpConnector createConnector(String name) {
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(properties.getMaxConnPerRoute())
+                .pendingAcquireMaxCount(properties.getMaxPendingAcquires())
+                .pendingAcquireTimeout(Duration.ofMillis(properties.getPendingAcquireTimeoutMs()))
+                .maxIdleTime(Duration.ofMillis(Math.min(properties.getKeepAliveMs(), properties.getMaxIdleMs())))
+                .evictInBackground(Duration.ofMillis(properties.getMaxIdleMs()))
+                .metrics(metricsEnabled)
+                .build();
+        providers.put(name, provider);
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeoutMs())
+                .responseTimeout(Duration.ofMillis(properties.getResponseTimeoutMs()))
+                .keepAlive(true);
+        if (properties.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        log.info("出站WebClient连接池已创建: name={}, maxConnections={}, maxPending={}, http2={}",
+                name, properties.getMaxConnPerRoute(), properties.getMaxPendingAcquires(), properties.isHttp2());
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    @Override
+    public void close() {
+        providers.values().forEach(ConnectionProvider::dispose);
+        providers.clear();
+        connectors.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package com.szwl.supportbot.common.im;
+
+import com.szwl.supportbot.common.trace.TraceContext;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Agent 与 im-demo 之间投递通道的帧
+ * deliver 帧由 Agent 发出，一帧可携带多条回复；ack 帧由 im-demo 按条目返回投递结果
+ */
+@Data
+@NoArgsConstructor
+public class DeliveryFrame {
+
+    public static final String TYPE_DELIVER = "deliver";
+    public static final String TYPE_ACK = "ack";
+
+    /**
+     * 帧类型：deliver / ack
+     */
+    private String type;
+
+    /**
+     * 待投递的回复（deliver 帧）
+     */
+    private List<Item> items = new ArrayList<>();
+
+    /**
+     * 投递结果（ack 帧）
+     */
+    private List<Result> results = new ArrayList<>();
+
+    public static DeliveryFrame deliver(List<Item> items) {
+        DeliveryFrame frame = new DeliveryFrame();
+        frame.setType(TYPE_DELIVER);
+        frame.setItems(items);
+        return frame;
+    }
+
+    public static DeliveryFrame ack(List<Result> results) {
+        DeliveryFrame frame = new DeliveryFrame();
+        frame.setType(TYPE_ACK);
+        frame.setResults(results);
+        return frame;
+    }
+
+    /**
+     * 单条回复，附带链路追踪字段（旧版 Agent 不发送时为空）
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private long id;
+        private String userId;
+        private String content;
+        private String source;
+        private String traceId;
+        private long originTsMs;
+        private String messageId;
+
+        public Item(long id, String userId, String content, String source) {
+            this(id, userId, content, source, null, 0, null);
+        }
+
+        /**
+         * 附带链路上下文，context 为空时不做任何事
+         */
+        public Item withTrace(TraceContext context) {
+            if (context != null) {
+                this.traceId = context.traceId();
+                this.originTsMs = context.originTsMs();
+                this.messageId = context.messageId();
+            }
+            return this;
+        }
+
+        /**
+         * 回复所属的链路上下文，没有时返回 null
+         */
+        public TraceContext trace() {
+            return TraceContext.of(traceId, originTsMs, messageId);
+        }
+    }
+
+    /**
+     * 单条投递结果
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private long id;
+        private boolean success;
+    }
+}
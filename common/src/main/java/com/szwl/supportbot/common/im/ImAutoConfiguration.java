@@ -0,0 +1,76 @@
+package com.szwl.supportbot.common.im;
+
+import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
+import com.alibaba.cloud.nacos.NacosServiceManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Agent 回复投递自动配置（im.service.* / im.delivery.*）
+ *
+ * 配置了 im.service.name 的服务（各 Agent）才会创建 IM 实例路由与投递长连接，im-demo 自身不创建
+ */
+@AutoConfiguration
+@ConditionalOnClass({DiscoveryClient.class, StringRedisTemplate.class})
+@ConditionalOnProperty(prefix = "im.service", name = "name")
+public class ImAutoConfiguration {
+
+    /**
+     * IM 服务实例路由：加载初始快照并定时全量刷新，按用户亲和 + 轮询选择实例
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public ImInstanceRouter imInstanceRouter(DiscoveryClient discoveryClient,
+                                             ObjectProvider<StringRedisTemplate> stringRedisTemplate,
+                                             @Value("${im.service.name}") String imServiceName,
+                                             @Value("${im.service.refresh-interval-ms:30000}") long refreshIntervalMs) {
+        ImInstanceRouter router = new ImInstanceRouter(imServiceName, discoveryClient,
+                stringRedisTemplate.getIfAvailable(), refreshIntervalMs);
+        router.start();
+        return router;
+    }
+
+    /**
+     * IM 回复投递长连接：每个 IM 实例一条 WebSocket，回复批量发送并等待 ack；实例下线时关闭其连接
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "im.delivery.enabled", havingValue = "true", matchIfMissing = true)
+    public ImDeliveryChannel imDeliveryChannel(ObjectMapper objectMapper,
+                                               ImInstanceRouter imInstanceRouter,
+                                               @Value("${im.delivery.path:/ws/ai-delivery}") String path,
+                                               @Value("${im.delivery.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                               @Value("${im.delivery.ack-timeout-ms:5000}") long ackTimeoutMs,
+                                               @Value("${im.delivery.max-batch-size:32}") int maxBatchSize,
+                                               @Value("${im.delivery.reconnect-backoff-ms:5000}") long reconnectBackoffMs) {
+        ImDeliveryChannel channel = new ImDeliveryChannel(objectMapper, path, connectTimeoutMs, ackTimeoutMs, maxBatchSize, reconnectBackoffMs);
+        imInstanceRouter.addInstanceListener(channel::retainInstances);
+        return channel;
+    }
+
+    /**
+     * 使用 Nacos 服务发现时订阅实例变更，事件到达时直接替换路由快照
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(NacosServiceManager.class)
+    static class NacosSubscriptionConfiguration {
+
+        @Bean
+        public SmartInitializingSingleton imInstanceSubscriber(ImInstanceRouter imInstanceRouter,
+                                                               NacosServiceManager nacosServiceManager,
+                                                               NacosDiscoveryProperties nacosDiscoveryProperties) {
+            return () -> imInstanceRouter.subscribe(nacosServiceManager.getNamingService(),
+                    nacosDiscoveryProperties.getGroup());
+        }
+    }
+}
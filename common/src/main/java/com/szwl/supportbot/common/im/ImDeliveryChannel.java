@@ -0,0 +1,318 @@
+package com.szwl.supportbot.common.im;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.szwl.supportbot.common.im.ImInstanceRouter.ImInstance;
+import com.szwl.supportbot.common.trace.TraceContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agent 到 im-demo 的长连接投递通道
+ *
+ * - 每个 IM 实例维持一条 WebSocket 长连接，回复以 JSON 帧发送，im-demo 按条目回 ack
+ * - 同一连接上同时只有一个发送在途，在途期间到达的回复合并到下一帧（负载越高批越大，空闲时不额外等待）
+ * - 连接不可用（未建立、建立中、已断开）时回复不进入通道，由调用方回退到 HTTP
+ * - 实例从路由快照中下线后关闭并移除其连接（见 {@link #retainInstances}）
+ */
+@Slf4j
+public class ImDeliveryChannel implements AutoCloseable {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String path;
+    private final long ackTimeoutMs;
+    private final int maxBatchSize;
+    private final long reconnectBackoffMs;
+
+    private final AtomicLong idGenerator = new AtomicLong();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+    public ImDeliveryChannel(ObjectMapper objectMapper, String path, long connectTimeoutMs,
+                             long ackTimeoutMs, int maxBatchSize, long reconnectBackoffMs) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.objectMapper = objectMapper;
+        this.path = path;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.reconnectBackoffMs = reconnectBackoffMs;
+    }
+
+    /**
+     * 通过长连接投递回复并等待 ack，当前线程的链路上下文随回复一起投递
+     *
+     * @return 投递结果；回复未进入通道时返回null，调用方应回退到 HTTP
+     */
+    public Boolean deliver(ImInstance instance, String userId, String content, String source) {
+        Connection connection = connections.computeIfAbsent(instance.address(), address -> new Connection(instance));
+        CompletableFuture<Boolean> future = connection.enqueue(
+                new DeliveryFrame.Item(idGenerator.incrementAndGet(), userId, content, source)
+                        .withTrace(TraceContext.current()));
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NotSentException) {
+                return null;
+            }
+            log.warn("长连接投递失败: userId={}, instance={}, error={}", userId, instance.address(), e.getCause().getMessage());
+            return false;
+        } catch (TimeoutException e) {
+            // 取消后由 whenComplete 从在途表中移除，迟到的 ack 直接忽略
+            future.cancel(false);
+            log.warn("长连接投递等待ack超时: userId={}, instance={}", userId, instance.address());
+            return false;
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 只保留仍在路由快照中的实例连接，其余连接关闭并移除
+     *
+     * @param addresses 当前在线的实例地址
+     */
+    public void retainInstances(Set<String> addresses) {
+        for (String address : connections.keySet()) {
+            if (!addresses.contains(address)) {
+                Connection connection = connections.remove(address);
+                if (connection != null) {
+                    log.info("IM实例已下线，关闭投递长连接: instance={}", address);
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 各实例连接状态（用于监控和调试）
+     */
+    public Map<String, Boolean> getConnectionStates() {
+        Map<String, Boolean> states = new ConcurrentHashMap<>();
+        connections.forEach((address, connection) -> states.put(address, connection.isOpen()));
+        return states;
+    }
+
+    @Override
+    public void close() {
+        connections.values().forEach(Connection::close);
+        connections.clear();
+    }
+
+    /**
+     * 回复未写入通道
+     */
+    private static final class NotSentException extends RuntimeException {
+        NotSentException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * 单个 IM 实例上的长连接
+     */
+    private final class Connection implements WebSocket.Listener {
+
+        private final ImInstance instance;
+        private final Queue<DeliveryFrame.Item> outbound = new ConcurrentLinkedQueue<>();
+        private final Map<Long, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean connecting = new AtomicBoolean();
+        private final StringBuilder inbound = new StringBuilder();
+
+        private volatile WebSocket webSocket;
+        private volatile long nextConnectAt;
+
+        Connection(ImInstance instance) {
+            this.instance = instance;
+        }
+
+        boolean isOpen() {
+            WebSocket ws = webSocket;
+            return ws != null && !ws.isOutputClosed() && !ws.isInputClosed();
+        }
+
+        /**
+         * 回复入队；连接不可用时触发异步重连并返回null
+         */
+        CompletableFuture<Boolean> enqueue(DeliveryFrame.Item item) {
+            if (!isOpen()) {
+                connectAsync();
+                return null;
+            }
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            future.whenComplete((result, error) -> pending.remove(item.getId()));
+            pending.put(item.getId(), future);
+            outbound.add(item);
+            drain();
+            return future;
+        }
+
+        private void connectAsync() {
+            long now = System.currentTimeMillis();
+            if (now < nextConnectAt || !connecting.compareAndSet(false, true)) {
+                return;
+            }
+            URI uri = URI.create("ws://" + instance.address() + path);
+            httpClient.newWebSocketBuilder()
+                    .buildAsync(uri, this)
+                    .whenComplete((ws, error) -> {
+                        if (error != null) {
+                            nextConnectAt = System.currentTimeMillis() + reconnectBackoffMs;
+                            log.warn("IM投递长连接建立失败: {}, {}ms后重试, error={}", uri, reconnectBackoffMs, error.getMessage());
+                        } else {
+                            webSocket = ws;
+                            log.info("IM投递长连接已建立: {}", uri);
+                        }
+                        connecting.set(false);
+                    });
+        }
+
+        /**
+         * 发送队列中的回复；同一时刻只有一个发送在途，完成后继续发送期间积累的回复
+         */
+        private void drain() {
+            while (!outbound.isEmpty() && sending.compareAndSet(false, true)) {
+                WebSocket ws = webSocket;
+                List<DeliveryFrame.Item> batch = new ArrayList<>();
+                DeliveryFrame.Item item;
+                while (batch.size() < maxBatchSize && (item = outbound.poll()) != null) {
+                    batch.add(item);
+                }
+                if (batch.isEmpty()) {
+                    sending.set(false);
+                    continue;
+                }
+                if (ws == null) {
+                    failAll(batch, new NotSentException("连接不可用"));
+                    sending.set(false);
+                    continue;
+                }
+                String text;
+                try {
+                    text = objectMapper.writeValueAsString(DeliveryFrame.deliver(batch));
+                } catch (Exception e) {
+                    failAll(batch, e);
+                    sending.set(false);
+                    continue;
+                }
+                ws.sendText(text, true).whenComplete((sent, error) -> {
+                    if (error != null) {
+                        log.warn("IM投递帧发送失败: instance={}, size={}, error={}", instance.address(), batch.size(), error.getMessage());
+                        failAll(batch, new NotSentException(error.getMessage()));
+                        abort(ws);
+                    }
+                    sending.set(false);
+                    drain();
+                });
+                return;
+            }
+        }
+
+        private void failAll(List<DeliveryFrame.Item> batch, Throwable error) {
+            for (DeliveryFrame.Item item : batch) {
+                CompletableFuture<Boolean> future = pending.get(item.getId());
+                if (future != null) {
+                    future.completeExceptionally(error);
+                }
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+            inbound.append(data);
+            if (last) {
+                String text = inbound.toString();
+                inbound.setLength(0);
+                handleAck(text);
+            }
+            ws.request(1);
+            return null;
+        }
+
+        private void handleAck(String text) {
+            try {
+                DeliveryFrame frame = objectMapper.readValue(text, DeliveryFrame.class);
+                if (!DeliveryFrame.TYPE_ACK.equals(frame.getType())) {
+                    return;
+                }
+                for (DeliveryFrame.Result result : frame.getResults()) {
+                    CompletableFuture<Boolean> future = pending.get(result.getId());
+                    if (future != null) {
+                        future.complete(result.isSuccess());
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("IM投递ack解析失败: instance={}, error={}", instance.address(), e.getMessage());
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+            log.info("IM投递长连接已关闭: instance={}, code={}, reason={}", instance.address(), statusCode, reason);
+            disconnected(ws, new IllegalStateException("连接已关闭: " + statusCode));
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket ws, Throwable error) {
+            log.warn("IM投递长连接异常: instance={}, error={}", instance.address(), error.getMessage());
+            disconnected(ws, error);
+        }
+
+        /**
+         * 连接断开：队列中未发送的回复交由 HTTP 回退，已发送未 ack 的回复按失败处理（避免重复投递）
+         */
+        private void disconnected(WebSocket ws, Throwable error) {
+            if (webSocket == ws) {
+                webSocket = null;
+            }
+            List<DeliveryFrame.Item> unsent = new ArrayList<>();
+            DeliveryFrame.Item item;
+            while ((item = outbound.poll()) != null) {
+                unsent.add(item);
+            }
+            failAll(unsent, new NotSentException("连接已断开"));
+            pending.values().forEach(future -> future.completeExceptionally(error));
+        }
+
+        private void abort(WebSocket ws) {
+            ws.abort();
+            disconnected(ws, new IllegalStateException("连接已中止"));
+        }
+
+        /**
+         * 关闭连接，未完成的回复按连接断开处理
+         */
+        void close() {
+            WebSocket ws = webSocket;
+            if (ws != null) {
+                ws.sendClose(WebSocket.NORMAL_CLOSURE, "shutdown");
+            }
+            disconnected(ws, new IllegalStateException("连接已关闭"));
+        }
+    }
+}
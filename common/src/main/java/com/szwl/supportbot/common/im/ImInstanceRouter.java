@@ -0,0 +1,253 @@
+package com.szwl.supportbot.common.im;
+
+import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.Event;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * IM 服务实例路由
+ *
+ * - 实例列表：订阅 Nacos 实例变更维护本地快照，发送时不再逐次查询注册中心；
+ *   同时按固定间隔通过 DiscoveryClient 全量刷新，防止订阅事件丢失
+ * - 用户亲和：优先投递到 im-demo 在 Redis 中登记的用户所在实例（见 {@link ImRouteKeys}），
+ *   登记缺失或实例已下线时按轮询选择实例
+ */
+@Slf4j
+public class ImInstanceRouter implements AutoCloseable {
+
+    /**
+     * IM 服务实例
+     */
+    public record ImInstance(String host, int port) {
+
+        public String address() {
+            return ImRouteKeys.address(host, port);
+        }
+    }
+
+    /**
+     * 实例快照，整体替换保证读取时列表与索引一致
+     */
+    private record Snapshot(List<ImInstance> instances, Map<String, ImInstance> byAddress) {
+
+        static final Snapshot EMPTY = new Snapshot(List.of(), Map.of());
+
+        static Snapshot of(List<ImInstance> instances) {
+            Map<String, ImInstance> byAddress = new LinkedHashMap<>();
+            for (ImInstance instance : instances) {
+                byAddress.putIfAbsent(instance.address(), instance);
+            }
+            return new Snapshot(List.copyOf(byAddress.values()), Collections.unmodifiableMap(byAddress));
+        }
+    }
+
+    private final String serviceName;
+    private final DiscoveryClient discoveryClient;
+    private final StringRedisTemplate redisTemplate;
+    private final long refreshIntervalMs;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final List<Consumer<Set<String>>> instanceListeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private ScheduledExecutorService refresher;
+    private NamingService namingService;
+    private String groupName;
+    private EventListener namingListener;
+
+    public ImInstanceRouter(String serviceName, DiscoveryClient discoveryClient,
+                            StringRedisTemplate redisTemplate, long refreshIntervalMs) {
+        this.serviceName = serviceName;
+        this.discoveryClient = discoveryClient;
+        this.redisTemplate = redisTemplate;
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    /**
+     * 加载初始快照并启动定时全量刷新
+     */
+    public synchronized void start() {
+        refresh();
+        if (refresher == null && refreshIntervalMs > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "im-route-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 订阅 Nacos 实例变更，事件到达时直接替换本地快照
+     *
+     * @param namingService Nacos 命名服务
+     * @param groupName 服务分组
+     */
+    public synchronized void subscribe(NamingService namingService, String groupName) {
+        if (this.namingListener != null) {
+            return;
+        }
+        EventListener listener = this::onNamingEvent;
+        try {
+            namingService.subscribe(serviceName, groupName, listener);
+            this.namingService = namingService;
+            this.groupName = groupName;
+            this.namingListener = listener;
+            log.info("已订阅IM服务实例变更: service={}, group={}", serviceName, groupName);
+        } catch (NacosException e) {
+            log.warn("订阅IM服务实例变更失败，仅使用定时刷新: service={}, error={}", serviceName, e.getMessage());
+        }
+    }
+
+    /**
+     * 注册实例变更监听，实例集合变化时以当前在线实例地址回调
+     */
+    public void addInstanceListener(Consumer<Set<String>> listener) {
+        instanceListeners.add(listener);
+    }
+
+    /**
+     * 通过 DiscoveryClient 全量刷新快照
+     * 查询失败时保留原快照
+     */
+    public void refresh() {
+        try {
+            List<ServiceInstance> instances = discoveryClient.getInstances(serviceName);
+            List<ImInstance> updated = new ArrayList<>(instances.size());
+            for (ServiceInstance instance : instances) {
+                updated.add(new ImInstance(instance.getHost(), instance.getPort()));
+            }
+            update(updated, "refresh");
+        } catch (Exception e) {
+            log.warn("刷新IM服务实例失败，保留原快照: service={}, error={}", serviceName, e.getMessage());
+        }
+    }
+
+    /**
+     * 为用户选择投递实例
+     *
+     * @param userId 用户ID
+     * @return 目标实例，没有可用实例时返回null
+     */
+    public ImInstance route(String userId) {
+        Snapshot current = snapshot;
+        if (current.instances().isEmpty()) {
+            return null;
+        }
+        String affinity = lookupAffinity(userId);
+        if (affinity != null) {
+            ImInstance instance = current.byAddress().get(affinity);
+            if (instance != null) {
+                return instance;
+            }
+            log.debug("用户 {} 的亲和实例 {} 不在可用实例中，改为轮询", userId, affinity);
+        }
+        return next(current);
+    }
+
+    /**
+     * 按轮询选择实例
+     */
+    public ImInstance next() {
+        Snapshot current = snapshot;
+        return current.instances().isEmpty() ? null : next(current);
+    }
+
+    /**
+     * 当前可用实例
+     */
+    public List<ImInstance> getInstances() {
+        return snapshot.instances();
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (namingListener != null) {
+            try {
+                namingService.unsubscribe(serviceName, groupName, namingListener);
+            } catch (NacosException e) {
+                log.debug("取消订阅IM服务实例变更失败: {}", e.getMessage());
+            }
+            namingListener = null;
+        }
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private void onNamingEvent(Event event) {
+        if (!(event instanceof NamingEvent namingEvent)) {
+            return;
+        }
+        List<Instance> instances = namingEvent.getInstances();
+        List<ImInstance> updated = new ArrayList<>(instances != null ? instances.size() : 0);
+        if (instances != null) {
+            for (Instance instance : instances) {
+                if (instance.isHealthy() && instance.isEnabled()) {
+                    updated.add(new ImInstance(instance.getIp(), instance.getPort()));
+                }
+            }
+        }
+        update(updated, "subscribe");
+    }
+
+    private void update(List<ImInstance> instances, String source) {
+        Snapshot updated = Snapshot.of(instances);
+        Snapshot previous = snapshot;
+        snapshot = updated;
+        if (!previous.byAddress().keySet().equals(updated.byAddress().keySet())) {
+            log.info("IM服务实例变更({}): service={}, instances={}", source, serviceName, updated.byAddress().keySet());
+            for (Consumer<Set<String>> listener : instanceListeners) {
+                try {
+                    listener.accept(updated.byAddress().keySet());
+                } catch (Exception e) {
+                    log.warn("IM服务实例变更回调失败: service={}, error={}", serviceName, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private ImInstance next(Snapshot current) {
+        List<ImInstance> instances = current.instances();
+        int index = Math.floorMod(cursor.getAndIncrement(), instances.size());
+        return instances.get(index);
+    }
+
+    private String lookupAffinity(String userId) {
+        if (redisTemplate == null || userId == null) {
+            return null;
+        }
+        try {
+            return redisTemplate.opsForValue().get(ImRouteKeys.userRouteKey(userId));
+        } catch (Exception e) {
+            log.warn("查询用户亲和路由失败: userId={}, error={}", userId, e.getMessage());
+            return null;
+        }
+    }
+}
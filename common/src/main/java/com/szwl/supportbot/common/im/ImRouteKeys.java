@@ -0,0 +1,50 @@
+package com.szwl.supportbot.common.im;
+
+import java.time.Duration;
+
+/**
+ * IM 路由相关的 Redis 键约定
+ * im-demo 在用户注册会话时写入，各 Agent 回复时读取，用于把回复投递到用户所在的 IM 实例；
+ * im-demo 集群模式下同一键也作为会话归属登记，跨实例消息通过各实例的转发频道投递
+ */
+public final class ImRouteKeys {
+
+    /**
+     * 用户亲和路由键前缀：im:route:user:{userId} -> host:port
+     */
+    public static final String USER_ROUTE_PREFIX = "im:route:user:";
+
+    /**
+     * 亲和路由的过期时间，用户心跳时续期
+     */
+    public static final Duration USER_ROUTE_TTL = Duration.ofMinutes(5);
+
+    /**
+     * 实例转发频道前缀：im:relay:{host:port}
+     */
+    public static final String RELAY_CHANNEL_PREFIX = "im:relay:";
+
+    private ImRouteKeys() {
+    }
+
+    /**
+     * 用户亲和路由键
+     */
+    public static String userRouteKey(Object userId) {
+        return USER_ROUTE_PREFIX + userId;
+    }
+
+    /**
+     * 实例转发频道
+     */
+    public static String relayChannel(String address) {
+        return RELAY_CHANNEL_PREFIX + address;
+    }
+
+    /**
+     * 实例地址，格式为 host:port
+     */
+    public static String address(String host, int port) {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,171 @@
+package com.szwl.supportbot.common.llm;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.Locale;
+
+/**
+ * 受限流器管控的 ChatModel
+ * 每次模型请求前按 提供方 / 模型 获取许可，请求结束后按实际 token 用量释放
+ *
+ * 带工具的同步调用由这里驱动工具循环（关闭模型内部的工具执行），每一轮模型请求单独获取许可，
+ * 每分钟请求数按实际发给提供方的请求计；工具执行期间不占用许可。
+ * 流式调用仍由模型内部执行工具，整个流只占一个许可，请求数会少计，需按工具轮次预留 requests-per-minute。
+ */
+public class GovernedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final LlmRateGovernor governor;
+    private final String provider;
+    private final ToolCallingManager toolCallingManager;
+
+    public GovernedChatModel(ChatModel delegate, LlmRateGovernor governor, ToolCallingManager toolCallingManager) {
+        this(delegate, governor, providerOf(delegate), toolCallingManager);
+    }
+
+    /**
+     * @param toolCallingManager 执行工具调用，为空时工具循环仍在模型内部进行（整个循环只占一个许可）
+     */
+    public GovernedChatModel(ChatModel delegate, LlmRateGovernor governor, String provider,
+                             ToolCallingManager toolCallingManager) {
+        this.delegate = delegate;
+        this.governor = governor;
+        this.provider = provider;
+        this.toolCallingManager = toolCallingManager;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        ToolCallingChatOptions toolOptions = externalToolLoopOptions(prompt);
+        if (toolOptions == null) {
+            return governedCall(prompt);
+        }
+        Prompt current = new Prompt(prompt.getInstructions(), toolOptions);
+        while (true) {
+            ChatResponse response = governedCall(current);
+            if (response == null || !response.hasToolCalls()) {
+                return response;
+            }
+            ToolExecutionResult result = toolCallingManager.executeToolCalls(current, response);
+            if (result.returnDirect()) {
+                return ChatResponse.builder()
+                        .from(response)
+                        .generations(ToolExecutionResult.buildGenerations(result))
+                        .build();
+            }
+            current = new Prompt(result.conversationHistory(), toolOptions);
+        }
+    }
+
+    /**
+     * 需要由这里驱动工具循环时，返回关闭了内部工具执行的选项副本；不带工具或调用方已自行执行工具时返回 null
+     */
+    private ToolCallingChatOptions externalToolLoopOptions(Prompt prompt) {
+        if (toolCallingManager == null) {
+            return null;
+        }
+        ChatOptions options = prompt.getOptions() != null ? prompt.getOptions() : delegate.getDefaultOptions();
+        if (!(options instanceof ToolCallingChatOptions toolOptions)
+                || !ToolCallingChatOptions.isInternalToolExecutionEnabled(toolOptions)
+                || (CollectionUtils.isEmpty(toolOptions.getToolCallbacks())
+                && CollectionUtils.isEmpty(toolOptions.getToolNames()))) {
+            return null;
+        }
+        ToolCallingChatOptions copy = (ToolCallingChatOptions) toolOptions.copy();
+        copy.setInternalToolExecutionEnabled(false);
+        return copy;
+    }
+
+    /**
+     * 单次模型请求：获取许可、调用、按实际用量释放
+     */
+    private ChatResponse governedCall(Prompt prompt) {
+        LlmRateGovernor.Permit permit = governor.acquire(provider, modelOf(prompt), estimateTokens(prompt));
+        ChatResponse response = null;
+        try {
+            response = delegate.call(prompt);
+            return response;
+        } finally {
+            permit.release(usedTokens(response));
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // 许可在订阅时获取，流结束（完成、出错或取消）时释放
+        return Flux.defer(() -> {
+            LlmRateGovernor.Permit permit = governor.acquire(provider, modelOf(prompt), estimateTokens(prompt));
+            return delegate.stream(prompt).doFinally(signal -> permit.release(0));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    public ChatModel getDelegate() {
+        return delegate;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * 由实现类名推断提供方：DashScopeChatModel -> dashscope
+     * 内层已包装为 MeteredChatModel 时取其记录的提供方
+     */
+    static String providerOf(ChatModel chatModel) {
+        if (chatModel instanceof MeteredChatModel metered) {
+            return metered.getProvider();
+        }
+        String name = chatModel.getClass().getSimpleName();
+        int suffix = name.indexOf("ChatModel");
+        return (suffix > 0 ? name.substring(0, suffix) : name).toLowerCase(Locale.ROOT);
+    }
+
+    private String modelOf(Prompt prompt) {
+        ChatOptions options = prompt.getOptions();
+        if (options != null && options.getModel() != null) {
+            return options.getModel();
+        }
+        ChatOptions defaults = delegate.getDefaultOptions();
+        return defaults != null ? defaults.getModel() : null;
+    }
+
+    /**
+     * 预估 token：输入按字符数折算，输出按 max-tokens 计
+     */
+    private int estimateTokens(Prompt prompt) {
+        LlmGovernorProperties properties = governor.getProperties();
+        String contents = prompt.getContents();
+        int inputTokens = contents != null ? (int) Math.ceil(contents.length() / properties.getCharsPerToken()) : 0;
+        Integer maxTokens = null;
+        if (prompt.getOptions() != null) {
+            maxTokens = prompt.getOptions().getMaxTokens();
+        }
+        if (maxTokens == null && delegate.getDefaultOptions() != null) {
+            maxTokens = delegate.getDefaultOptions().getMaxTokens();
+        }
+        return inputTokens + (maxTokens != null ? maxTokens : properties.getDefaultMaxTokens());
+    }
+
+    private static int usedTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return 0;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        Integer total = usage != null ? usage.getTotalTokens() : null;
+        return total != null ? total : 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.szwl.supportbot.common.llm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+/**
+ * 将容器中的 ChatModel 包装为 {@link GovernedChatModel}
+ * 各模块通过 ChatModel / ChatClient.Builder 注入的模型都会经过限流器；llm.governor.enabled=false 时不包装
+ * 先于 {@link HedgedChatModelPostProcessor} 执行，对冲请求同样经过限流器
+ */
+@Slf4j
+public class GovernedChatModelPostProcessor implements BeanPostProcessor, Ordered {
+
+    public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 10;
+
+    private final ObjectProvider<LlmRateGovernor> governor;
+    private final ObjectProvider<ToolCallingManager> toolCallingManager;
+
+    public GovernedChatModelPostProcessor(ObjectProvider<LlmRateGovernor> governor,
+                                          ObjectProvider<ToolCallingManager> toolCallingManager) {
+        this.governor = governor;
+        this.toolCallingManager = toolCallingManager;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ChatModel chatModel) || bean instanceof GovernedChatModel) {
+            return bean;
+        }
+        LlmRateGovernor rateGovernor = governor.getIfAvailable();
+        if (rateGovernor == null || !rateGovernor.getProperties().isEnabled()) {
+            return bean;
+        }
+        // 工具循环由 GovernedChatModel 驱动，每轮模型请求单独限流；优先使用 Spring AI 自动配置的 ToolCallingManager
+        GovernedChatModel governed = new GovernedChatModel(chatModel, rateGovernor,
+                toolCallingManager.getIfAvailable(() -> ToolCallingManager.builder().build()));
+        log.info("ChatModel 已接入限流: bean={}, provider={}", beanName, governed.getProvider());
+        return governed;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
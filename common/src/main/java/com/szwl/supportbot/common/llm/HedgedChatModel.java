@@ -0,0 +1,298 @@
+package com.szwl.supportbot.common.llm;
+
+import com.szwl.supportbot.common.trace.TraceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求的 ChatModel
+ *
+ * 主请求超过最近调用耗时的分位数仍未返回时，在预算内发起对冲请求（同一模型或 fallback-model），
+ * 取先成功的结果，中断另一个调用；两者都失败时抛出后失败的异常。
+ * 对冲请求以较低优先级经过限流器，拥塞时让位于主请求。
+ *
+ * 以下调用不对冲，直接透传：流式调用；带工具的调用（除非 hedge-tool-calls=true）；对冲线程池已满时的调用。
+ */
+@Slf4j
+public class HedgedChatModel implements ChatModel {
+
+    private static final String PRIMARY = "primary";
+    private static final String HEDGE = "hedge";
+
+    private final ChatModel delegate;
+    private final LlmHedger hedger;
+    private final String name;
+    private final LatencyWindow latencies;
+
+    public HedgedChatModel(ChatModel delegate, LlmHedger hedger, String name) {
+        this.delegate = delegate;
+        this.hedger = hedger;
+        this.name = name;
+        LlmHedgingProperties properties = hedger.getProperties();
+        this.latencies = new LatencyWindow(Math.max(properties.getSampleWindow(), 1));
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        LlmHedgingProperties properties = hedger.getProperties();
+        if (!properties.isHedgeToolCalls() && hasTools(prompt)) {
+            hedger.recordCall(name, "skipped");
+            return delegate.call(prompt);
+        }
+        hedger.onRequest();
+
+        Integer priority = LlmCallContext.priority();
+        long deadlineMs = LlmCallContext.deadlineMs();
+        long start = System.nanoTime();
+        long delayMs = hedgeDelayMs();
+
+        Attempt primary;
+        try {
+            primary = start(PRIMARY, prompt, priority, deadlineMs);
+        } catch (RejectedExecutionException e) {
+            // 对冲线程池已满：不对冲，直接在调用线程上调用
+            hedger.recordCall(name, "rejected");
+            return delegate.call(prompt);
+        }
+        try {
+            ChatResponse response = primary.result().get(delayMs, TimeUnit.MILLISECONDS);
+            latencies.record(elapsedMs(start));
+            hedger.recordCall(name, "fast");
+            return response;
+        } catch (TimeoutException e) {
+            // 超过对冲延迟，继续往下
+        } catch (ExecutionException e) {
+            latencies.record(elapsedMs(start));
+            hedger.recordCall(name, "fast");
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            primary.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("大模型调用被中断", e);
+        }
+
+        if (!hedger.tryAcquireHedge()) {
+            hedger.recordCall(name, "budget_exhausted");
+            try {
+                return await(primary.result());
+            } finally {
+                latencies.record(elapsedMs(start));
+            }
+        }
+
+        int hedgePriority = priority != null ? priority - 1 : properties.getHedgePriority();
+        Attempt hedge;
+        try {
+            hedge = start(HEDGE, hedgePrompt(prompt), hedgePriority, deadlineMs);
+        } catch (RejectedExecutionException e) {
+            hedger.recordCall(name, "rejected");
+            try {
+                return await(primary.result());
+            } finally {
+                latencies.record(elapsedMs(start));
+            }
+        }
+        hedger.recordCall(name, "hedged");
+        log.debug("大模型调用触发对冲: model={}, delay={}ms", name, delayMs);
+
+        CompletableFuture<Attempt> winner = firstSuccess(primary, hedge);
+        try {
+            Attempt won = await(winner);
+            Attempt lost = won == primary ? hedge : primary;
+            lost.cancel();
+            hedger.recordWin(name, won.label());
+            return won.result().join();
+        } finally {
+            // 对冲获胜时主请求被取消，记录的耗时是其下限，分位数不会被拉低
+            latencies.record(elapsedMs(start));
+            if (Thread.currentThread().isInterrupted()) {
+                primary.cancel();
+                hedge.cancel();
+            }
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return delegate.stream(prompt);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    public ChatModel getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 当前对冲延迟：最近调用耗时的分位数，限制在 [min-delay-ms, max-delay-ms]
+     */
+    long hedgeDelayMs() {
+        LlmHedgingProperties properties = hedger.getProperties();
+        long delay = latencies.percentile(properties.getPercentile(), properties.getMinSamples());
+        if (delay < 0) {
+            delay = properties.getInitialDelayMs();
+        }
+        return Math.min(Math.max(delay, properties.getMinDelayMs()), properties.getMaxDelayMs());
+    }
+
+    private Attempt start(String label, Prompt prompt, Integer priority, long deadlineMs) {
+        CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        Future<?> task = hedger.getExecutor().submit(TraceContext.wrap(() -> {
+            try {
+                result.complete(LlmCallContext.callWith(priority, deadlineMs, () -> delegate.call(prompt)));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }));
+        return new Attempt(label, result, task);
+    }
+
+    /**
+     * 先成功者胜出；都失败时以后失败的异常结束
+     */
+    private static CompletableFuture<Attempt> firstSuccess(Attempt primary, Attempt hedge) {
+        CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (Attempt attempt : Arrays.asList(primary, hedge)) {
+            attempt.result().whenComplete((response, error) -> {
+                if (error == null) {
+                    winner.complete(attempt);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        return winner;
+    }
+
+    private Prompt hedgePrompt(Prompt prompt) {
+        String fallbackModel = hedger.getProperties().getFallbackModel();
+        if (!StringUtils.hasText(fallbackModel)) {
+            return prompt;
+        }
+        ChatOptions options = prompt.getOptions() != null ? prompt.getOptions().copy() : null;
+        if (options == null) {
+            return new Prompt(prompt.getInstructions(), ChatOptions.builder().model(fallbackModel).build());
+        }
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(options);
+        if (!wrapper.isWritableProperty("model")) {
+            return prompt;
+        }
+        wrapper.setPropertyValue("model", fallbackModel);
+        return new Prompt(prompt.getInstructions(), options);
+    }
+
+    private boolean hasTools(Prompt prompt) {
+        return hasTools(prompt.getOptions()) || hasTools(delegate.getDefaultOptions());
+    }
+
+    private static boolean hasTools(ChatOptions options) {
+        if (!(options instanceof ToolCallingChatOptions toolOptions)) {
+            return false;
+        }
+        return !CollectionUtils.isEmpty(toolOptions.getToolCallbacks())
+                || !CollectionUtils.isEmpty(toolOptions.getToolNames());
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("大模型调用被中断", e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable error) {
+        if (error instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (error instanceof Error fatal) {
+            throw fatal;
+        }
+        return new IllegalStateException(error);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 一次调用：结果与执行任务，取消时中断执行线程，限流许可随之释放
+     */
+    private record Attempt(String label, CompletableFuture<ChatResponse> result, Future<?> task) {
+
+        void cancel() {
+            task.cancel(true);
+            result.cancel(false);
+        }
+    }
+
+    /**
+     * 最近调用耗时的环形窗口，分位数每积累若干新样本重新计算一次
+     */
+    static final class LatencyWindow {
+
+        private static final int RECOMPUTE_EVERY = 16;
+
+        private final long[] samples;
+        private int next;
+        private int size;
+        private int sinceRecompute;
+        private double cachedPercentile = -1;
+        private long cachedValue = -1;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) {
+                size++;
+            }
+            sinceRecompute++;
+        }
+
+        /**
+         * @return 分位数（毫秒），样本不足时返回 -1
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size < Math.max(minSamples, 1)) {
+                return -1;
+            }
+            if (cachedValue < 0 || sinceRecompute >= RECOMPUTE_EVERY || cachedPercentile != percentile) {
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100 * size) - 1;
+                cachedValue = sorted[Math.min(Math.max(index, 0), size - 1)];
+                cachedPercentile = percentile;
+                sinceRecompute = 0;
+            }
+            return cachedValue;
+        }
+    }
+}
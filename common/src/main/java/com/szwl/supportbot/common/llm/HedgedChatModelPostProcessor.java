@@ -0,0 +1,40 @@
+package com.szwl.supportbot.common.llm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+/**
+ * 将容器中的 ChatModel 包装为 {@link HedgedChatModel}；llm.hedging.enabled=false 时不包装
+ * 在 {@link GovernedChatModelPostProcessor} 之后执行，包在限流外层
+ */
+@Slf4j
+public class HedgedChatModelPostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<LlmHedger> hedger;
+
+    public HedgedChatModelPostProcessor(ObjectProvider<LlmHedger> hedger) {
+        this.hedger = hedger;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ChatModel chatModel) || bean instanceof HedgedChatModel) {
+            return bean;
+        }
+        LlmHedger llmHedger = hedger.getIfAvailable();
+        if (llmHedger == null || !llmHedger.getProperties().isEnabled()) {
+            return bean;
+        }
+        log.info("ChatModel 已启用对冲请求: bean={}, percentile={}, budget={}%", beanName,
+                llmHedger.getProperties().getPercentile(), llmHedger.getProperties().getBudgetPercent());
+        return new HedgedChatModel(chatModel, llmHedger, beanName);
+    }
+
+    @Override
+    public int getOrder() {
+        return GovernedChatModelPostProcessor.ORDER + 1;
+    }
+}
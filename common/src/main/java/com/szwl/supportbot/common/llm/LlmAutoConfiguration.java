@@ -0,0 +1,77 @@
+package com.szwl.supportbot.common.llm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 大模型调用自动配置：调用指标、限流（llm.governor.*）、对冲请求（llm.hedging.*）
+ *
+ * 容器中的 ChatModel 由内到外依次包装为 Metered -> Governed -> Hedged；
+ * 限流默认开启，对冲默认关闭，关闭时不创建对应的 Bean
+ */
+@AutoConfiguration
+@ConditionalOnClass({ChatModel.class, MeterRegistry.class})
+@EnableConfigurationProperties({LlmGovernorProperties.class, LlmHedgingProperties.class})
+public class LlmAutoConfiguration {
+
+    /**
+     * 将容器中的 ChatModel 包装为记录调用耗时与 token 用量的模型（最内层）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public static MeteredChatModelPostProcessor meteredChatModelPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new MeteredChatModelPostProcessor(meterRegistry);
+    }
+
+    /**
+     * 大模型调用限流器：按提供方 / 模型限制并发、每分钟请求数与 token 数
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "llm.governor", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public LlmRateGovernor llmRateGovernor(LlmGovernorProperties llmGovernorProperties,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        return new LlmRateGovernor(llmGovernorProperties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * 将容器中的 ChatModel 包装为受限流器管控的模型，带工具的调用按每轮模型请求获取许可
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "llm.governor", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public static GovernedChatModelPostProcessor governedChatModelPostProcessor(ObjectProvider<LlmRateGovernor> llmRateGovernor,
+                                                                                ObjectProvider<ToolCallingManager> toolCallingManager) {
+        return new GovernedChatModelPostProcessor(llmRateGovernor, toolCallingManager);
+    }
+
+    /**
+     * 大模型对冲请求：主请求慢于分位数时在预算内发起第二个请求，执行线程数按限流并发推算
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "llm.hedging", name = "enabled", havingValue = "true")
+    public LlmHedger llmHedger(LlmHedgingProperties llmHedgingProperties,
+                               LlmGovernorProperties llmGovernorProperties,
+                               ObjectProvider<MeterRegistry> meterRegistry) {
+        return new LlmHedger(llmHedgingProperties, llmGovernorProperties, meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * 将容器中的 ChatModel 包装为对冲请求模型（在限流包装之外）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "llm.hedging", name = "enabled", havingValue = "true")
+    public static HedgedChatModelPostProcessor hedgedChatModelPostProcessor(ObjectProvider<LlmHedger> llmHedger) {
+        return new HedgedChatModelPostProcessor(llmHedger);
+    }
+}
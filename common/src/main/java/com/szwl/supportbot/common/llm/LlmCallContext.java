@@ -0,0 +1,55 @@
+package com.szwl.supportbot.common.llm;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程上大模型调用的优先级与截止时间
+ * ChatModel 接口无法携带这些参数，由调用方在调用前设置，限流器读取
+ */
+public final class LlmCallContext {
+
+    private record Settings(Integer priority, long deadlineMs) {
+    }
+
+    private static final ThreadLocal<Settings> CURRENT = new ThreadLocal<>();
+
+    private LlmCallContext() {
+    }
+
+    /**
+     * 以指定优先级与截止时间执行调用
+     *
+     * @param priority 优先级，数值越大越先获得许可
+     * @param deadlineMs 截止时间（epoch 毫秒），0 表示使用默认排队上限
+     */
+    public static <T> T call(int priority, long deadlineMs, Supplier<T> action) {
+        return callWith(priority, deadlineMs, action);
+    }
+
+    /**
+     * 在其它线程上沿用调用方的设置，priority 为空表示使用默认优先级
+     */
+    static <T> T callWith(Integer priority, long deadlineMs, Supplier<T> action) {
+        Settings previous = CURRENT.get();
+        CURRENT.set(new Settings(priority, deadlineMs));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    static Integer priority() {
+        Settings settings = CURRENT.get();
+        return settings != null ? settings.priority() : null;
+    }
+
+    static long deadlineMs() {
+        Settings settings = CURRENT.get();
+        return settings != null ? settings.deadlineMs() : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.szwl.supportbot.common.llm;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 大模型调用限流配置（llm.governor.*）
+ *
+ * 限额按 提供方 -> 模型 两级配置，调用需同时满足模型级（如有配置）与提供方级限额；
+ * 未配置的提供方使用 defaults。各项限额为 0 表示不限制。
+ * 模型名包含 "." 时在 YAML 中需使用方括号键，例如 "[qwen2.5-72b-instruct]"。
+ */
+@Data
+@ConfigurationProperties(prefix = "llm.governor")
+public class LlmGovernorProperties {
+
+    /**
+     * 是否启用限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本服务调用的默认优先级，数值越大越先获得许可
+     */
+    private int defaultPriority = 0;
+
+    /**
+     * 排队等待许可的最长时间（毫秒），超时直接失败
+     */
+    private long maxWaitMs = 30000;
+
+    /**
+     * 估算输入 token 数时每个 token 对应的字符数（中文约 1~2 个字符一个 token）
+     */
+    private double charsPerToken = 1.5;
+
+    /**
+     * 请求未指定 max-tokens 时按该值预估输出 token
+     */
+    private int defaultMaxTokens = 1024;
+
+    /**
+     * 未单独配置的提供方使用的限额
+     */
+    private Limit defaults = new Limit();
+
+    /**
+     * 提供方限额，键为提供方名称（dashscope、deepseek 等）
+     */
+    private Map<String, ProviderLimit> providers = new LinkedHashMap<>();
+
+    /**
+     * 限额
+     */
+    @Data
+    public static class Limit {
+
+        /**
+         * 最大并发调用数
+         */
+        private int maxConcurrency = 0;
+
+        /**
+         * 每分钟请求数
+         */
+        private int requestsPerMinute = 0;
+
+        /**
+         * 每分钟 token 数（输入 + 输出）
+         */
+        private int tokensPerMinute = 0;
+    }
+
+    /**
+     * 提供方限额，可按模型细分
+     */
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class ProviderLimit extends Limit {
+
+        /**
+         * 模型级限额，键为模型名称
+         */
+        private Map<String, Limit> models = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,140 @@
+package com.szwl.supportbot.common.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大模型对冲请求的共享部分：执行线程、对冲预算与指标
+ *
+ * 预算按“每个主请求积累 budget-percent% 次对冲”计算，最多累积 max-burst 次，
+ * 流量下降时对冲随之减少，避免在提供方变慢时成倍放大请求量。
+ * 执行线程池有界（线程数按限流并发推算 + 有界队列），满时由调用方直接在当前线程调用、不对冲。
+ *
+ * 指标：
+ * - supportbot.llm.hedge.calls{outcome=fast|hedged|budget_exhausted|skipped|rejected}
+ * - supportbot.llm.hedge.queue.depth 线程池排队数
+ * - supportbot.llm.hedge.wins{winner=primary|hedge}，对冲胜率 = wins{winner=hedge} / calls{outcome=hedged}
+ */
+@Slf4j
+public class LlmHedger implements AutoCloseable {
+
+    /**
+     * 一次对冲消耗的预算单位
+     */
+    private static final long HEDGE_COST = 1000;
+
+    /**
+     * 无法从限流配置推算时的默认线程数
+     */
+    private static final int DEFAULT_MAX_THREADS = 64;
+
+    private final LlmHedgingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong credits = new AtomicLong();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param properties 对冲配置
+     * @param governorProperties 限流配置，用于推算线程数；为空或未启用时按默认值
+     * @param meterRegistry 指标注册表，可以为空
+     */
+    public LlmHedger(LlmHedgingProperties properties, LlmGovernorProperties governorProperties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        int threads = properties.getMaxThreads() > 0 ? properties.getMaxThreads() : deriveThreads(governorProperties);
+        int queueCapacity = properties.getQueueCapacity();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "llm-hedge-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        if (meterRegistry != null) {
+            Gauge.builder("supportbot.llm.hedge.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        }
+        log.info("大模型对冲线程池: threads={}, queueCapacity={}", threads, queueCapacity);
+    }
+
+    /**
+     * 每个调用最多同时占用两个线程（主请求 + 对冲请求），线程数按限流并发上限的两倍推算
+     */
+    private static int deriveThreads(LlmGovernorProperties governorProperties) {
+        if (governorProperties == null || !governorProperties.isEnabled()) {
+            return DEFAULT_MAX_THREADS;
+        }
+        int concurrency = governorProperties.getDefaults().getMaxConcurrency();
+        if (concurrency <= 0) {
+            return DEFAULT_MAX_THREADS;
+        }
+        for (LlmGovernorProperties.ProviderLimit limit : governorProperties.getProviders().values()) {
+            if (limit.getMaxConcurrency() <= 0) {
+                return DEFAULT_MAX_THREADS;
+            }
+            concurrency += limit.getMaxConcurrency();
+        }
+        return concurrency * 2;
+    }
+
+    public LlmHedgingProperties getProperties() {
+        return properties;
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 每个主请求积累一部分对冲预算
+     */
+    void onRequest() {
+        long earned = Math.round(properties.getBudgetPercent() * HEDGE_COST / 100);
+        long cap = properties.getMaxBurst() * HEDGE_COST;
+        credits.accumulateAndGet(earned, (current, delta) -> Math.min(cap, current + delta));
+    }
+
+    /**
+     * 尝试消耗一次对冲预算
+     */
+    boolean tryAcquireHedge() {
+        long current;
+        do {
+            current = credits.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+        } while (!credits.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+
+    void recordCall(String model, String outcome) {
+        counter("supportbot.llm.hedge.calls", model, "outcome", outcome);
+    }
+
+    void recordWin(String model, String winner) {
+        counter("supportbot.llm.hedge.wins", model, "winner", winner);
+    }
+
+    private void counter(String name, String model, String key, String value) {
+        if (meterRegistry != null) {
+            Counter.builder(name).tag("model", model).tag(key, value).register(meterRegistry).increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
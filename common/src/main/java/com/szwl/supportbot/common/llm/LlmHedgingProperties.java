@@ -0,0 +1,86 @@
+package com.szwl.supportbot.common.llm;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 大模型对冲请求配置（llm.hedging.*）
+ *
+ * 主请求在 延迟分位数 内未返回时，再发起一次对冲请求，取先成功的结果并取消另一个。
+ * 对冲请求数受预算限制，不超过主请求数的 budget-percent。
+ */
+@Data
+@ConfigurationProperties(prefix = "llm.hedging")
+public class LlmHedgingProperties {
+
+    /**
+     * 是否启用对冲
+     */
+    private boolean enabled = false;
+
+    /**
+     * 触发对冲的延迟分位数（0~100），按最近的调用耗时统计
+     */
+    private double percentile = 95;
+
+    /**
+     * 统计样本不足时使用的对冲延迟（毫秒）
+     */
+    private long initialDelayMs = 5000;
+
+    /**
+     * 对冲延迟下限（毫秒）
+     */
+    private long minDelayMs = 1000;
+
+    /**
+     * 对冲延迟上限（毫秒）
+     */
+    private long maxDelayMs = 20000;
+
+    /**
+     * 统计分位数所用的最近调用数
+     */
+    private int sampleWindow = 256;
+
+    /**
+     * 样本数达到该值后才按分位数计算延迟
+     */
+    private int minSamples = 20;
+
+    /**
+     * 对冲预算：对冲请求数占主请求数的百分比
+     */
+    private double budgetPercent = 5;
+
+    /**
+     * 预算允许累积的最大对冲次数，限制突发
+     */
+    private int maxBurst = 10;
+
+    /**
+     * 对冲请求使用的模型，为空时与主请求相同
+     */
+    private String fallbackModel;
+
+    /**
+     * 主请求未指定优先级时对冲请求使用的优先级；指定时对冲请求比主请求低 1
+     */
+    private int hedgePriority = -1;
+
+    /**
+     * 对冲执行线程数上限（主请求与对冲请求都在该线程池中执行），
+     * 0 表示按限流并发推算：2 × 各提供方 max-concurrency 之和，限流未限制并发时为 64
+     */
+    private int maxThreads = 0;
+
+    /**
+     * 线程全忙时允许排队的调用数，队列也满时不对冲，直接在调用线程上执行
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 是否对带工具的调用对冲。工具在模型调用内部执行，对冲会导致工具被执行两次，默认不对冲
+     */
+    private boolean hedgeToolCalls = false;
+}
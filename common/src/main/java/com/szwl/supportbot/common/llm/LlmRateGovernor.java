@@ -0,0 +1,403 @@
+package com.szwl.supportbot.common.llm;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 大模型调用限流器
+ *
+ * 每个 提供方 / 模型 对应一条通道（lane），通道内同时限制：
+ * - 并发调用数
+ * - 每分钟请求数（令牌桶）
+ * - 每分钟 token 数（令牌桶，按预估值扣减，调用结束后按实际用量补差）
+ *
+ * 许可不足时按 优先级 -> 到达顺序 排队，超过截止时间抛出 {@link LlmRateLimitException}。
+ * 提供 supportbot.llm.queue.depth / supportbot.llm.in.flight / supportbot.llm.queue.wait 指标。
+ */
+@Slf4j
+public class LlmRateGovernor implements AutoCloseable {
+
+    private static final String PROVIDER_LANE_PREFIX = "provider:";
+    private static final String MODEL_LANE_PREFIX = "model:";
+
+    private final LlmGovernorProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ScheduledExecutorService wakeups = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "llm-governor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param properties 限流配置
+     * @param meterRegistry 指标注册表，可以为空
+     */
+    public LlmRateGovernor(LlmGovernorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public LlmGovernorProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * 获取调用许可，许可不足时按优先级排队
+     *
+     * @param provider 提供方
+     * @param model 模型，可以为空
+     * @param estimatedTokens 预估 token 数（输入 + 输出）
+     * @return 调用许可，调用结束后必须释放
+     * @throws LlmRateLimitException 超过截止时间仍未获得许可
+     */
+    public Permit acquire(String provider, String model, int estimatedTokens) {
+        Integer contextPriority = LlmCallContext.priority();
+        int priority = contextPriority != null ? contextPriority : properties.getDefaultPriority();
+        long deadlineMs = LlmCallContext.deadlineMs();
+        if (deadlineMs <= 0) {
+            deadlineMs = System.currentTimeMillis() + properties.getMaxWaitMs();
+        }
+
+        List<Lane> acquired = new ArrayList<>(2);
+        try {
+            // 固定按 模型 -> 提供方 的顺序获取，避免交叉等待
+            Lane modelLane = modelLane(provider, model);
+            if (modelLane != null) {
+                modelLane.acquire(priority, estimatedTokens, deadlineMs);
+                acquired.add(modelLane);
+            }
+            Lane providerLane = providerLane(provider);
+            providerLane.acquire(priority, estimatedTokens, deadlineMs);
+            acquired.add(providerLane);
+            return new Permit(acquired, estimatedTokens);
+        } catch (RuntimeException e) {
+            // 提供方通道拒绝时，退还模型通道已扣减的请求数与预估 token
+            acquired.forEach(lane -> lane.cancel(estimatedTokens));
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        wakeups.shutdownNow();
+    }
+
+    private Lane providerLane(String provider) {
+        LlmGovernorProperties.Limit limit = properties.getProviders().get(provider);
+        LlmGovernorProperties.Limit effective = limit != null ? limit : properties.getDefaults();
+        return lanes.computeIfAbsent(PROVIDER_LANE_PREFIX + provider, name -> new Lane(name, effective));
+    }
+
+    private Lane modelLane(String provider, String model) {
+        if (model == null) {
+            return null;
+        }
+        LlmGovernorProperties.ProviderLimit providerLimit = properties.getProviders().get(provider);
+        if (providerLimit == null || !providerLimit.getModels().containsKey(model)) {
+            return null;
+        }
+        LlmGovernorProperties.Limit limit = providerLimit.getModels().get(model);
+        return lanes.computeIfAbsent(MODEL_LANE_PREFIX + provider + "/" + model, name -> new Lane(name, limit));
+    }
+
+    /**
+     * 调用许可
+     */
+    public static final class Permit {
+
+        private final List<Lane> lanes;
+        private final int estimatedTokens;
+        private boolean released;
+
+        private Permit(List<Lane> lanes, int estimatedTokens) {
+            this.lanes = lanes;
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * 释放许可，并按实际 token 用量修正令牌桶
+         *
+         * @param actualTokens 实际 token 用量，未知时传 0（按预估值计）
+         */
+        public synchronized void release(int actualTokens) {
+            if (released) {
+                return;
+            }
+            released = true;
+            int delta = actualTokens > 0 ? actualTokens - estimatedTokens : 0;
+            lanes.forEach(lane -> lane.release(delta));
+        }
+    }
+
+    /**
+     * 排队中的调用
+     */
+    private record Waiter(int priority, long sequence, int tokens, CompletableFuture<Void> granted) {
+    }
+
+    /**
+     * 限流通道
+     */
+    private final class Lane {
+
+        private final String name;
+        private final int maxConcurrency;
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+                Comparator.comparingInt(Waiter::priority).reversed().thenComparingLong(Waiter::sequence));
+        private final Timer acquiredTimer;
+        private final Timer timeoutTimer;
+
+        private int inFlight;
+        private boolean wakeupScheduled;
+
+        Lane(String name, LlmGovernorProperties.Limit limit) {
+            this.name = name;
+            this.maxConcurrency = limit.getMaxConcurrency();
+            this.requests = TokenBucket.perMinute(limit.getRequestsPerMinute());
+            this.tokens = TokenBucket.perMinute(limit.getTokensPerMinute());
+            if (meterRegistry != null) {
+                Gauge.builder("supportbot.llm.queue.depth", this, Lane::queueDepth)
+                        .tag("lane", name).register(meterRegistry);
+                Gauge.builder("supportbot.llm.in.flight", this, Lane::inFlight)
+                        .tag("lane", name).register(meterRegistry);
+                this.acquiredTimer = Timer.builder("supportbot.llm.queue.wait")
+                        .tag("lane", name).tag("outcome", "acquired").register(meterRegistry);
+                this.timeoutTimer = Timer.builder("supportbot.llm.queue.wait")
+                        .tag("lane", name).tag("outcome", "timeout").register(meterRegistry);
+            } else {
+                this.acquiredTimer = null;
+                this.timeoutTimer = null;
+            }
+            log.info("大模型限流通道: lane={}, maxConcurrency={}, rpm={}, tpm={}", name,
+                    maxConcurrency, limit.getRequestsPerMinute(), limit.getTokensPerMinute());
+        }
+
+        void acquire(int priority, int estimatedTokens, long deadlineMs) {
+            long start = System.nanoTime();
+            Waiter waiter = new Waiter(priority, sequence.incrementAndGet(), estimatedTokens, new CompletableFuture<>());
+            lock.lock();
+            try {
+                if (waiters.isEmpty() && tryGrant(waiter)) {
+                    record(acquiredTimer, start);
+                    return;
+                }
+                waiters.add(waiter);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                long remaining = deadlineMs - System.currentTimeMillis();
+                waiter.granted().get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+                record(acquiredTimer, start);
+            } catch (TimeoutException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                lock.lock();
+                try {
+                    if (!waiters.remove(waiter)) {
+                        // 超时的同时已获得许可
+                        record(acquiredTimer, start);
+                        return;
+                    }
+                    // 队首出队后后续调用可能已满足条件
+                    dispatch();
+                } finally {
+                    lock.unlock();
+                }
+                record(timeoutTimer, start);
+                long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                log.warn("大模型调用排队超时: lane={}, priority={}, waited={}ms, queue={}", name, priority, waitedMs, queueDepth());
+                throw new LlmRateLimitException(name, waitedMs);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        void release(int tokenDelta) {
+            lock.lock();
+            try {
+                inFlight--;
+                tokens.adjust(tokenDelta);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 撤销未使用的许可：释放并发，退还请求数与预估 token
+         */
+        void cancel(int estimatedTokens) {
+            lock.lock();
+            try {
+                inFlight--;
+                requests.adjust(-1);
+                tokens.adjust(-estimatedTokens);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 按队列顺序发放许可，队首受令牌桶限制时安排定时唤醒；调用方需持有锁
+         */
+        private void dispatch() {
+            Waiter head;
+            while ((head = waiters.peek()) != null) {
+                if (!tryGrant(head)) {
+                    scheduleWakeup(head);
+                    return;
+                }
+                waiters.poll();
+                head.granted().complete(null);
+            }
+        }
+
+        private boolean tryGrant(Waiter waiter) {
+            if (maxConcurrency > 0 && inFlight >= maxConcurrency) {
+                return false;
+            }
+            long now = System.nanoTime();
+            if (!requests.available(1, now) || !tokens.available(waiter.tokens(), now)) {
+                return false;
+            }
+            requests.take(1);
+            tokens.take(waiter.tokens());
+            inFlight++;
+            return true;
+        }
+
+        /**
+         * 仅在令牌不足时需要定时唤醒，并发已满时由 release 唤醒
+         */
+        private void scheduleWakeup(Waiter head) {
+            if (wakeupScheduled || (maxConcurrency > 0 && inFlight >= maxConcurrency)) {
+                return;
+            }
+            long now = System.nanoTime();
+            long delayNanos = Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(head.tokens(), now));
+            wakeupScheduled = true;
+            wakeups.schedule(() -> {
+                lock.lock();
+                try {
+                    wakeupScheduled = false;
+                    dispatch();
+                } finally {
+                    lock.unlock();
+                }
+            }, Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+        }
+
+        private int queueDepth() {
+            return waiters.size();
+        }
+
+        private int inFlight() {
+            return inFlight;
+        }
+
+        private void record(Timer timer, long startNanos) {
+            if (timer != null) {
+                timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 令牌桶，容量为一分钟的配额；非线程安全，由 Lane 的锁保护
+     */
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefillNanos;
+
+        private TokenBucket(double capacity) {
+            this.capacity = capacity;
+            this.refillPerNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        static TokenBucket perMinute(int limit) {
+            return new TokenBucket(Math.max(limit, 0));
+        }
+
+        private boolean unlimited() {
+            return capacity <= 0;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefillNanos) {
+                available = Math.min(capacity, available + (now - lastRefillNanos) * refillPerNano);
+                lastRefillNanos = now;
+            }
+        }
+
+        /**
+         * 单次需求超过容量时按容量计，避免永远无法满足
+         */
+        private double need(int amount) {
+            return Math.min(amount, capacity);
+        }
+
+        boolean available(int amount, long now) {
+            if (unlimited()) {
+                return true;
+            }
+            refill(now);
+            return available >= need(amount);
+        }
+
+        void take(int amount) {
+            if (!unlimited()) {
+                available -= amount;
+            }
+        }
+
+        /**
+         * 按实际用量补差，可为负（返还）
+         */
+        void adjust(int delta) {
+            if (!unlimited() && delta != 0) {
+                available = Math.min(capacity, available - delta);
+            }
+        }
+
+        long nanosUntil(int amount, long now) {
+            if (unlimited()) {
+                return 0;
+            }
+            refill(now);
+            double deficit = need(amount) - available;
+            return deficit <= 0 ? 0 : (long) Math.ceil(deficit / refillPerNano);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.szwl.supportbot.common.llm;
+
+/**
+ * 大模型调用排队超时
+ * 属于本地限流拒绝，不应按调用失败重试
+ */
+public class LlmRateLimitException extends RuntimeException {
+
+    private final String lane;
+
+    public LlmRateLimitException(String lane, long waitedMs) {
+        super("大模型调用排队超时: lane=" + lane + ", waited=" + waitedMs + "ms");
+        this.lane = lane;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    /**
+     * 判断异常链中是否包含限流拒绝
+     */
+    public static boolean isCause(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof LlmRateLimitException) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+}
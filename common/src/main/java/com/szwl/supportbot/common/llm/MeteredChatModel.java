@@ -0,0 +1,116 @@
+package com.szwl.supportbot.common.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录调用耗时与 token 用量的 ChatModel
+ * 包在限流与对冲的最内层，耗时只包含提供方的实际调用，不含排队等待（见 supportbot.llm.queue.wait）
+ */
+public class MeteredChatModel implements ChatModel {
+
+    static final String CALL_METRIC = "supportbot.llm.call";
+    static final String TOKENS_METRIC = "supportbot.llm.tokens";
+
+    private final ChatModel delegate;
+    private final MeterRegistry meterRegistry;
+    private final String provider;
+
+    public MeteredChatModel(ChatModel delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.provider = GovernedChatModel.providerOf(delegate);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        long start = System.nanoTime();
+        String model = modelOf(prompt);
+        boolean success = false;
+        try {
+            ChatResponse response = delegate.call(prompt);
+            success = true;
+            recordTokens(model, response);
+            return response;
+        } finally {
+            recordCall(model, "call", success, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // 耗时从订阅开始到流结束；取消视为成功（调用方主动结束）
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            String model = modelOf(prompt);
+            return delegate.stream(prompt)
+                    .doOnError(e -> recordCall(model, "stream", false, System.nanoTime() - start))
+                    .doOnComplete(() -> recordCall(model, "stream", true, System.nanoTime() - start))
+                    .doOnCancel(() -> recordCall(model, "stream", true, System.nanoTime() - start));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    public ChatModel getDelegate() {
+        return delegate;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    private void recordCall(String model, String mode, boolean success, long elapsedNanos) {
+        Timer.builder(CALL_METRIC)
+                .description("大模型调用耗时（不含限流排队）")
+                .tag("provider", provider)
+                .tag("model", model)
+                .tag("mode", mode)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordTokens(String model, ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        countTokens(model, "prompt", usage.getPromptTokens());
+        countTokens(model, "completion", usage.getCompletionTokens());
+    }
+
+    private void countTokens(String model, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        Counter.builder(TOKENS_METRIC)
+                .description("大模型 token 用量")
+                .tag("provider", provider)
+                .tag("model", model)
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(tokens);
+    }
+
+    private String modelOf(Prompt prompt) {
+        ChatOptions options = prompt.getOptions();
+        if (options != null && options.getModel() != null) {
+            return options.getModel();
+        }
+        ChatOptions defaults = delegate.getDefaultOptions();
+        return defaults != null && defaults.getModel() != null ? defaults.getModel() : "default";
+    }
+}
@@ -0,0 +1,42 @@
+package com.szwl.supportbot.common.llm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+/**
+ * 将容器中的 ChatModel 包装为 {@link MeteredChatModel}；容器中没有 MeterRegistry 时不包装
+ * 先于 {@link GovernedChatModelPostProcessor} 执行，处在最内层，按 提供方 / 模型 记录实际调用耗时
+ */
+@Slf4j
+public class MeteredChatModelPostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public MeteredChatModelPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ChatModel chatModel) || bean instanceof MeteredChatModel
+                || bean instanceof GovernedChatModel || bean instanceof HedgedChatModel) {
+            return bean;
+        }
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return bean;
+        }
+        MeteredChatModel metered = new MeteredChatModel(chatModel, registry);
+        log.info("ChatModel 已接入调用指标: bean={}, provider={}", beanName, metered.getProvider());
+        return metered;
+    }
+
+    @Override
+    public int getOrder() {
+        return GovernedChatModelPostProcessor.ORDER - 1;
+    }
+}
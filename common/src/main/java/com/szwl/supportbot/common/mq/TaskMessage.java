@@ -0,0 +1,71 @@
+package com.szwl.supportbot.common.mq;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 任务消息
+ * 问题分类模块投递给各 Agent 的任务，字段与 task_message.proto 一一对应
+ */
+@Data
+@NoArgsConstructor
+public class TaskMessage {
+
+    /**
+     * 当前协议版本
+     */
+    public static final int CURRENT_VERSION = 1;
+
+    /**
+     * 协议版本
+     */
+    private int version = CURRENT_VERSION;
+
+    /**
+     * 会话ID（即用户ID）
+     */
+    private String sessionId;
+
+    /**
+     * 用户问题
+     */
+    private String question;
+
+    /**
+     * 分类结果
+     */
+    private String category;
+
+    /**
+     * 分类阶段抽取出的结构化信息
+     */
+    private Map<String, String> extractedInfo = new LinkedHashMap<>();
+
+    /**
+     * 分类置信度，可能为空
+     */
+    private Double confidence;
+
+    /**
+     * 任务消息创建时间（epoch 毫秒）
+     */
+    private long createdAtMs;
+
+    /**
+     * 链路追踪ID
+     */
+    private String traceId;
+
+    /**
+     * 用户消息进入系统的时间（epoch 毫秒）
+     */
+    private long originTsMs;
+
+    /**
+     * 原始 IM 消息ID
+     */
+    private String messageId;
+}
@@ -0,0 +1,299 @@
+package com.szwl.supportbot.common.mq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.szwl.supportbot.common.util.MessageBodyExtractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 任务消息编解码
+ * - protobuf：按 task_message.proto 手工编码，直接从消息 ByteBuffer 解码，不经过 String/Map
+ * - JSON：兼容旧格式（sessionId/question/category/timestamp），未携带 contentType 属性的消息按 JSON 处理
+ */
+public final class TaskMessageCodec {
+
+    /**
+     * 消息属性：内容类型
+     */
+    public static final String CONTENT_TYPE_PROPERTY = "contentType";
+
+    public static final String CONTENT_TYPE_PROTOBUF = "application/x-protobuf";
+    public static final String CONTENT_TYPE_JSON = "application/json";
+
+    // 字段编号，与 task_message.proto 保持一致
+    private static final int FIELD_VERSION = 1;
+    private static final int FIELD_SESSION_ID = 2;
+    private static final int FIELD_QUESTION = 3;
+    private static final int FIELD_CATEGORY = 4;
+    private static final int FIELD_EXTRACTED_INFO = 5;
+    private static final int FIELD_CONFIDENCE = 6;
+    private static final int FIELD_CREATED_AT_MS = 7;
+    private static final int FIELD_TRACE_ID = 8;
+    private static final int FIELD_ORIGIN_TS_MS = 9;
+    private static final int FIELD_MESSAGE_ID = 10;
+
+    private static final int MAP_KEY = 1;
+    private static final int MAP_VALUE = 2;
+
+    private static final DateTimeFormatter LEGACY_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private TaskMessageCodec() {
+    }
+
+    /**
+     * 按内容类型编码
+     */
+    public static byte[] encode(TaskMessage message, String contentType) throws IOException {
+        return CONTENT_TYPE_JSON.equals(contentType) ? encodeJson(message) : encodeProtobuf(message);
+    }
+
+    /**
+     * 按内容类型解码，contentType 为空时视为旧版 JSON 消息
+     *
+     * @return 消息体为空时返回 null
+     */
+    public static TaskMessage decode(ByteBuffer body, String contentType) throws IOException {
+        if (body == null || !body.hasRemaining()) {
+            return null;
+        }
+        return CONTENT_TYPE_PROTOBUF.equals(contentType) ? decodeProtobuf(body) : decodeJson(body);
+    }
+
+    // ==================== protobuf ====================
+
+    public static byte[] encodeProtobuf(TaskMessage message) throws IOException {
+        byte[] out = new byte[computeSize(message)];
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+
+        if (message.getVersion() != 0) {
+            output.writeUInt32(FIELD_VERSION, message.getVersion());
+        }
+        writeString(output, FIELD_SESSION_ID, message.getSessionId());
+        writeString(output, FIELD_QUESTION, message.getQuestion());
+        writeString(output, FIELD_CATEGORY, message.getCategory());
+        if (message.getExtractedInfo() != null) {
+            for (Map.Entry<String, String> entry : message.getExtractedInfo().entrySet()) {
+                output.writeTag(FIELD_EXTRACTED_INFO, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(computeEntrySize(entry));
+                writeString(output, MAP_KEY, entry.getKey());
+                writeString(output, MAP_VALUE, entry.getValue());
+            }
+        }
+        if (message.getConfidence() != null) {
+            output.writeDouble(FIELD_CONFIDENCE, message.getConfidence());
+        }
+        if (message.getCreatedAtMs() != 0) {
+            output.writeInt64(FIELD_CREATED_AT_MS, message.getCreatedAtMs());
+        }
+        writeString(output, FIELD_TRACE_ID, message.getTraceId());
+        if (message.getOriginTsMs() != 0) {
+            output.writeInt64(FIELD_ORIGIN_TS_MS, message.getOriginTsMs());
+        }
+        writeString(output, FIELD_MESSAGE_ID, message.getMessageId());
+
+        output.checkNoSpaceLeft();
+        return out;
+    }
+
+    /**
+     * 直接从 ByteBuffer 解码，不修改传入 buffer 的 position
+     */
+    public static TaskMessage decodeProtobuf(ByteBuffer body) throws IOException {
+        return decodeProtobuf(MessageBodyExtractor.codedInputStream(body));
+    }
+
+    public static TaskMessage decodeProtobuf(CodedInputStream input) throws IOException {
+        TaskMessage message = new TaskMessage();
+        message.setVersion(0);
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                break;
+            }
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case FIELD_VERSION -> message.setVersion(input.readUInt32());
+                case FIELD_SESSION_ID -> message.setSessionId(input.readStringRequireUtf8());
+                case FIELD_QUESTION -> message.setQuestion(input.readStringRequireUtf8());
+                case FIELD_CATEGORY -> message.setCategory(input.readStringRequireUtf8());
+                case FIELD_EXTRACTED_INFO -> readEntry(input, message.getExtractedInfo());
+                case FIELD_CONFIDENCE -> message.setConfidence(input.readDouble());
+                case FIELD_CREATED_AT_MS -> message.setCreatedAtMs(input.readInt64());
+                case FIELD_TRACE_ID -> message.setTraceId(input.readStringRequireUtf8());
+                case FIELD_ORIGIN_TS_MS -> message.setOriginTsMs(input.readInt64());
+                case FIELD_MESSAGE_ID -> message.setMessageId(input.readStringRequireUtf8());
+                default -> input.skipField(tag); // 新版本追加的字段，旧消费者直接跳过
+            }
+        }
+        return message;
+    }
+
+    private static void readEntry(CodedInputStream input, Map<String, String> target) throws IOException {
+        int length = input.readRawVarint32();
+        int oldLimit = input.pushLimit(length);
+        String key = "";
+        String value = "";
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                break;
+            }
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case MAP_KEY -> key = input.readStringRequireUtf8();
+                case MAP_VALUE -> value = input.readStringRequireUtf8();
+                default -> input.skipField(tag);
+            }
+        }
+        input.popLimit(oldLimit);
+        target.put(key, value);
+    }
+
+    private static int computeSize(TaskMessage message) {
+        int size = 0;
+        if (message.getVersion() != 0) {
+            size += CodedOutputStream.computeUInt32Size(FIELD_VERSION, message.getVersion());
+        }
+        size += stringSize(FIELD_SESSION_ID, message.getSessionId());
+        size += stringSize(FIELD_QUESTION, message.getQuestion());
+        size += stringSize(FIELD_CATEGORY, message.getCategory());
+        if (message.getExtractedInfo() != null) {
+            for (Map.Entry<String, String> entry : message.getExtractedInfo().entrySet()) {
+                int entrySize = computeEntrySize(entry);
+                size += CodedOutputStream.computeTagSize(FIELD_EXTRACTED_INFO)
+                        + CodedOutputStream.computeUInt32SizeNoTag(entrySize)
+                        + entrySize;
+            }
+        }
+        if (message.getConfidence() != null) {
+            size += CodedOutputStream.computeDoubleSize(FIELD_CONFIDENCE, message.getConfidence());
+        }
+        if (message.getCreatedAtMs() != 0) {
+            size += CodedOutputStream.computeInt64Size(FIELD_CREATED_AT_MS, message.getCreatedAtMs());
+        }
+        size += stringSize(FIELD_TRACE_ID, message.getTraceId());
+        if (message.getOriginTsMs() != 0) {
+            size += CodedOutputStream.computeInt64Size(FIELD_ORIGIN_TS_MS, message.getOriginTsMs());
+        }
+        size += stringSize(FIELD_MESSAGE_ID, message.getMessageId());
+        return size;
+    }
+
+    private static int computeEntrySize(Map.Entry<String, String> entry) {
+        return stringSize(MAP_KEY, entry.getKey()) + stringSize(MAP_VALUE, entry.getValue());
+    }
+
+    private static int stringSize(int field, String value) {
+        return value == null || value.isEmpty() ? 0 : CodedOutputStream.computeStringSize(field, value);
+    }
+
+    private static void writeString(CodedOutputStream output, int field, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            output.writeString(field, value);
+        }
+    }
+
+    // ==================== JSON（兼容格式） ====================
+
+    public static byte[] encodeJson(TaskMessage message) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("sessionId", message.getSessionId());
+        node.put("question", message.getQuestion());
+        node.put("category", message.getCategory());
+        // 旧消费者读取的时间字段
+        long createdAt = message.getCreatedAtMs() != 0 ? message.getCreatedAtMs() : System.currentTimeMillis();
+        node.put("timestamp", LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAt), ZoneId.systemDefault())
+                .format(LEGACY_TIMESTAMP));
+        node.put("version", message.getVersion());
+        if (message.getExtractedInfo() != null && !message.getExtractedInfo().isEmpty()) {
+            ObjectNode extracted = node.putObject("extractedInfo");
+            message.getExtractedInfo().forEach(extracted::put);
+        }
+        if (message.getConfidence() != null) {
+            node.put("confidence", message.getConfidence());
+        }
+        node.put("createdAtMs", createdAt);
+        if (message.getTraceId() != null) {
+            node.put("traceId", message.getTraceId());
+        }
+        if (message.getOriginTsMs() != 0) {
+            node.put("originTsMs", message.getOriginTsMs());
+        }
+        if (message.getMessageId() != null) {
+            node.put("messageId", message.getMessageId());
+        }
+        return objectMapper.writeValueAsBytes(node);
+    }
+
+    public static TaskMessage decodeJson(ByteBuffer body) throws IOException {
+        return fromJson(MessageBodyExtractor.readJson(objectMapper, body, JsonNode.class));
+    }
+
+    public static TaskMessage decodeJson(String json) throws IOException {
+        return fromJson(objectMapper.readTree(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static TaskMessage fromJson(JsonNode node) {
+        TaskMessage message = new TaskMessage();
+        message.setVersion(node.path("version").asInt(TaskMessage.CURRENT_VERSION));
+        message.setSessionId(text(node, "sessionId"));
+        message.setQuestion(text(node, "question"));
+        message.setCategory(text(node, "category"));
+
+        JsonNode extracted = node.get("extractedInfo");
+        if (extracted == null) {
+            extracted = node.get("extracted_info");
+        }
+        if (extracted != null && extracted.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = extracted.fields();
+            Map<String, String> info = new LinkedHashMap<>();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                info.put(field.getKey(), field.getValue().isNull() ? "" : field.getValue().asText());
+            }
+            message.setExtractedInfo(info);
+        }
+
+        JsonNode confidence = node.get("confidence");
+        if (confidence != null && confidence.isNumber()) {
+            message.setConfidence(confidence.asDouble());
+        }
+
+        if (node.hasNonNull("createdAtMs")) {
+            message.setCreatedAtMs(node.get("createdAtMs").asLong());
+        } else if (node.hasNonNull("timestamp")) {
+            message.setCreatedAtMs(parseLegacyTimestamp(node.get("timestamp").asText()));
+        }
+        message.setTraceId(text(node, "traceId"));
+        message.setOriginTsMs(node.path("originTsMs").asLong(0));
+        message.setMessageId(text(node, "messageId"));
+        return message;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static long parseLegacyTimestamp(String timestamp) {
+        try {
+            return LocalDateTime.parse(timestamp, LEGACY_TIMESTAMP)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
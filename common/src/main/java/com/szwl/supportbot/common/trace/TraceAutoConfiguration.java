@@ -0,0 +1,27 @@
+package com.szwl.supportbot.common.trace;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 链路追踪自动配置
+ */
+@AutoConfiguration
+@ConditionalOnClass(MeterRegistry.class)
+public class TraceAutoConfiguration {
+
+    /**
+     * 链路阶段耗时记录（结构化日志 + 端到端耗时直方图）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public TraceRecorder traceRecorder(@Value("${spring.application.name}") String applicationName,
+                                       ObjectProvider<MeterRegistry> meterRegistry) {
+        return new TraceRecorder(applicationName, meterRegistry.getIfAvailable());
+    }
+}
@@ -0,0 +1,178 @@
+package com.szwl.supportbot.common.trace;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 链路追踪上下文
+ *
+ * 用户消息进入 im-demo 时生成，沿 im-demo → 问题分类（HTTP 请求头）→ RocketMQ（消息属性 + 任务消息字段）
+ * → Agent → MCP 服务 / IM 投递（HTTP 请求头、投递帧字段）逐跳传递。
+ * 当前线程上的上下文通过 attach 设置，同时写入日志 MDC（traceId），便于按请求串联各模块日志。
+ *
+ * @param traceId 链路追踪ID
+ * @param originTsMs 用户消息进入系统的时间（epoch 毫秒）
+ * @param messageId 原始 IM 消息ID，可能为空
+ */
+public record TraceContext(String traceId, long originTsMs, String messageId) {
+
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    public static final String ORIGIN_TS_HEADER = "X-Origin-Ts";
+    public static final String MESSAGE_ID_HEADER = "X-Message-Id";
+
+    public static final String TRACE_ID_PROPERTY = "traceId";
+    public static final String ORIGIN_TS_PROPERTY = "originTsMs";
+    public static final String MESSAGE_ID_PROPERTY = "messageId";
+
+    public static final String MDC_KEY = "traceId";
+
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 作用域，关闭时恢复进入前的上下文
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Scope NOOP = () -> {
+    };
+
+    /**
+     * 用户消息进入系统时开始一条新链路
+     *
+     * @param messageId 原始 IM 消息ID，可以为空
+     */
+    public static TraceContext start(String messageId) {
+        return new TraceContext(UUID.randomUUID().toString().replace("-", ""), System.currentTimeMillis(), messageId);
+    }
+
+    /**
+     * 由已传递的字段恢复上下文，traceId 为空时返回 null
+     */
+    public static TraceContext of(String traceId, long originTsMs, String messageId) {
+        if (traceId == null || traceId.isBlank()) {
+            return null;
+        }
+        return new TraceContext(traceId, originTsMs, messageId);
+    }
+
+    /**
+     * 从 HTTP 请求头恢复上下文，没有 traceId 时返回 null
+     */
+    public static TraceContext fromHeaders(Function<String, String> header) {
+        return parse(header.apply(TRACE_ID_HEADER), header.apply(ORIGIN_TS_HEADER), header.apply(MESSAGE_ID_HEADER));
+    }
+
+    /**
+     * 从 RocketMQ 消息属性恢复上下文，没有 traceId 时返回 null
+     */
+    public static TraceContext fromProperties(Map<String, String> properties) {
+        if (properties == null) {
+            return null;
+        }
+        return parse(properties.get(TRACE_ID_PROPERTY), properties.get(ORIGIN_TS_PROPERTY),
+                properties.get(MESSAGE_ID_PROPERTY));
+    }
+
+    private static TraceContext parse(String traceId, String originTs, String messageId) {
+        long originTsMs = 0;
+        if (originTs != null && !originTs.isBlank()) {
+            try {
+                originTsMs = Long.parseLong(originTs.trim());
+            } catch (NumberFormatException e) {
+                originTsMs = 0;
+            }
+        }
+        return of(traceId, originTsMs, messageId);
+    }
+
+    /**
+     * 当前线程上的上下文，没有时返回 null
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将上下文设置到当前线程（含日志 MDC），context 为空时不做任何事
+     */
+    public static Scope attach(TraceContext context) {
+        return context != null ? context.attach() : NOOP;
+    }
+
+    /**
+     * 将本上下文设置到当前线程（含日志 MDC）
+     */
+    public Scope attach() {
+        TraceContext previous = CURRENT.get();
+        CURRENT.set(this);
+        MDC.put(MDC_KEY, traceId);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+                MDC.remove(MDC_KEY);
+            } else {
+                CURRENT.set(previous);
+                MDC.put(MDC_KEY, previous.traceId());
+            }
+        };
+    }
+
+    /**
+     * 在其它线程上执行时沿用调用方线程的上下文
+     */
+    public static Runnable wrap(Runnable task) {
+        TraceContext context = current();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope ignored = context.attach()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * 距用户消息进入系统的时间（毫秒），起点未知时返回 -1
+     * 跨主机计算时受时钟偏差影响
+     */
+    public long sinceOriginMs() {
+        if (originTsMs <= 0) {
+            return -1;
+        }
+        return Math.max(0, System.currentTimeMillis() - originTsMs);
+    }
+
+    /**
+     * 写入 HTTP 请求头
+     */
+    public void writeHeaders(BiConsumer<String, String> header) {
+        header.accept(TRACE_ID_HEADER, traceId);
+        if (originTsMs > 0) {
+            header.accept(ORIGIN_TS_HEADER, String.valueOf(originTsMs));
+        }
+        if (messageId != null) {
+            header.accept(MESSAGE_ID_HEADER, messageId);
+        }
+    }
+
+    /**
+     * 写入 RocketMQ 消息属性
+     */
+    public void writeProperties(BiConsumer<String, String> property) {
+        property.accept(TRACE_ID_PROPERTY, traceId);
+        if (originTsMs > 0) {
+            property.accept(ORIGIN_TS_PROPERTY, String.valueOf(originTsMs));
+        }
+        if (messageId != null) {
+            property.accept(MESSAGE_ID_PROPERTY, messageId);
+        }
+    }
+}
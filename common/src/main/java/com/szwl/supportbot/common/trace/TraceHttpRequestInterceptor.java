@@ -0,0 +1,24 @@
+package com.szwl.supportbot.common.trace;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * RestTemplate 出站请求附带当前线程的链路上下文（X-Trace-Id / X-Origin-Ts / X-Message-Id）
+ */
+public class TraceHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        TraceContext context = TraceContext.current();
+        if (context != null) {
+            context.writeHeaders(request.getHeaders()::set);
+        }
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,68 @@
+package com.szwl.supportbot.common.trace;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 链路阶段耗时记录
+ *
+ * 每个阶段输出一条结构化日志（logger: supportbot.trace），按 traceId 汇总即可还原单个请求的关键路径；
+ * 同时记录距用户消息进入系统的时间到 supportbot.e2e.latency{stage}，其中 im.delivered 阶段即端到端耗时
+ * （与起点同在 im-demo 计时，不受跨主机时钟偏差影响）。
+ * 当前线程没有链路上下文时不记录。
+ */
+public class TraceRecorder {
+
+    public static final String E2E_METRIC = "supportbot.e2e.latency";
+
+    private static final Logger TRACE_LOG = LoggerFactory.getLogger("supportbot.trace");
+
+    private final String service;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param service 服务名（一般为 spring.application.name）
+     * @param meterRegistry 指标注册表，为空时只输出日志
+     */
+    public TraceRecorder(String service, MeterRegistry meterRegistry) {
+        this.service = service;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录从 startNanos（System.nanoTime）到现在的阶段耗时
+     */
+    public void recordSince(String stage, long startNanos) {
+        record(TraceContext.current(), stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * 记录当前链路的阶段耗时
+     */
+    public void record(String stage, long durationMs) {
+        record(TraceContext.current(), stage, durationMs);
+    }
+
+    /**
+     * 记录指定链路的阶段耗时
+     */
+    public void record(TraceContext context, String stage, long durationMs) {
+        if (context == null) {
+            return;
+        }
+        long sinceOriginMs = context.sinceOriginMs();
+        TRACE_LOG.info("trace traceId={} messageId={} service={} stage={} durationMs={} sinceOriginMs={}",
+                context.traceId(), context.messageId(), service, stage, durationMs, sinceOriginMs);
+        if (meterRegistry != null && sinceOriginMs >= 0) {
+            Timer.builder(E2E_METRIC)
+                    .description("用户消息进入系统到各链路阶段完成的耗时")
+                    .tag("stage", stage)
+                    .register(meterRegistry)
+                    .record(sinceOriginMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
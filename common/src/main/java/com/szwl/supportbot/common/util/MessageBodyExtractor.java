@@ -0,0 +1,209 @@
+package com.szwl.supportbot.common.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.google.protobuf.CodedInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.MessageView;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 消息体提取工具类
+ * 安全地处理各种类型的消息体（ByteBuffer、byte[]等）
+ *
+ * 解码接口直接基于消息的 ByteBuffer 视图工作，不复制消息体：
+ * - 有可访问底层数组的 buffer 直接按 (array, offset, length) 交给 Jackson / protobuf
+ * - 只读或堆外 buffer 通过流式读取（Jackson 分块读取，protobuf 直接访问堆外内存）
+ * - 非 ByteBuffer/byte[] 的消息体通过反射调用 array()，方法句柄按类型缓存
+ *
+ * @author miku
+ */
+@Slf4j
+public final class MessageBodyExtractor {
+
+    /**
+     * 流式解码时 protobuf 的读缓冲大小
+     */
+    private static final int STREAM_BUFFER_SIZE = 4096;
+
+    /**
+     * 按消息体类型缓存 array() 方法句柄，类型不支持时缓存 null
+     */
+    private static final ClassValue<MethodHandle> ARRAY_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                Method method = type.getMethod("array");
+                if (method.getReturnType() != byte[].class) {
+                    return null;
+                }
+                method.trySetAccessible();
+                return MethodHandles.lookup().unreflect(method)
+                        .asType(MethodType.methodType(byte[].class, Object.class));
+            } catch (Exception e) {
+                log.warn("消息体类型 {} 不支持 array() 方法: {}", type.getName(), e.getMessage());
+                return null;
+            }
+        }
+    };
+
+    private MessageBodyExtractor() {
+    }
+
+    /**
+     * 获取消息体的 ByteBuffer 视图（不复制数据，不影响原 buffer 的 position）
+     *
+     * @param messageView 消息视图
+     * @return 消息体视图，消息体为空时返回 null
+     */
+    public static ByteBuffer bodyBuffer(MessageView messageView) {
+        return asBuffer(messageView.getBody());
+    }
+
+    /**
+     * 将任意类型的消息体包装为 ByteBuffer 视图
+     */
+    public static ByteBuffer asBuffer(Object body) {
+        if (body == null) {
+            return null;
+        }
+        if (body instanceof ByteBuffer buffer) {
+            return buffer.duplicate();
+        }
+        if (body instanceof byte[] bytes) {
+            return ByteBuffer.wrap(bytes);
+        }
+        byte[] bytes = invokeArray(body);
+        return bytes != null ? ByteBuffer.wrap(bytes) : null;
+    }
+
+    /**
+     * 基于消息体创建 Jackson 解析器
+     */
+    public static JsonParser jsonParser(ObjectMapper objectMapper, ByteBuffer body) throws IOException {
+        ByteBuffer buffer = body.duplicate();
+        if (buffer.hasArray()) {
+            return objectMapper.createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return objectMapper.createParser(new ByteBufferBackedInputStream(buffer));
+    }
+
+    /**
+     * 直接从消息体反序列化 JSON
+     */
+    public static <T> T readJson(ObjectMapper objectMapper, ByteBuffer body, Class<T> type) throws IOException {
+        try (JsonParser parser = jsonParser(objectMapper, body)) {
+            return objectMapper.readValue(parser, type);
+        }
+    }
+
+    /**
+     * 基于消息体创建 protobuf 输入流
+     */
+    public static CodedInputStream codedInputStream(ByteBuffer body) {
+        ByteBuffer buffer = body.duplicate();
+        if (buffer.hasArray()) {
+            return CodedInputStream.newInstance(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        if (buffer.isDirect()) {
+            return CodedInputStream.newInstance(buffer);
+        }
+        // 只读堆内 buffer 无法访问底层数组，流式读取避免整体复制
+        return CodedInputStream.newInstance(new ByteBufferBackedInputStream(buffer), STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * 提取消息体内容为字符串
+     * 仅用于日志与兼容旧接口，解码请使用 jsonParser / codedInputStream
+     *
+     * @param messageView 消息视图
+     * @return 消息体字符串，如果提取失败返回null
+     */
+    public static String extractAsString(MessageView messageView) {
+        try {
+            ByteBuffer buffer = bodyBuffer(messageView);
+            if (buffer == null || !buffer.hasRemaining()) {
+                log.warn("消息体为空");
+                return null;
+            }
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        } catch (Exception e) {
+            log.error("消息体提取失败: messageId={}, error={}",
+                    messageView.getMessageId(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 提取消息体内容为字节数组
+     * 有可访问底层数组且无偏移时直接返回底层数组，否则复制
+     *
+     * @param body 消息体对象
+     * @return 字节数组，如果提取失败返回null
+     */
+    public static byte[] extractAsBytes(Object body) {
+        try {
+            ByteBuffer buffer = asBuffer(body);
+            if (buffer == null) {
+                return null;
+            }
+            if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                    && buffer.remaining() == buffer.array().length) {
+                return buffer.array();
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        } catch (Exception e) {
+            log.error("消息体字节数组提取失败: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 检查消息体是否为空
+     *
+     * @param messageView 消息视图
+     * @return true表示消息体为空，false表示有内容
+     */
+    public static boolean isEmpty(MessageView messageView) {
+        return getSize(messageView) <= 0;
+    }
+
+    /**
+     * 获取消息体大小
+     *
+     * @param messageView 消息视图
+     * @return 消息体大小（字节数），如果获取失败返回-1
+     */
+    public static int getSize(MessageView messageView) {
+        try {
+            ByteBuffer buffer = bodyBuffer(messageView);
+            return buffer != null ? buffer.remaining() : 0;
+        } catch (Exception e) {
+            log.warn("获取消息体大小时发生异常: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private static byte[] invokeArray(Object body) {
+        MethodHandle accessor = ARRAY_ACCESSORS.get(body.getClass());
+        if (accessor == null) {
+            return null;
+        }
+        try {
+            return (byte[]) accessor.invokeExact(body);
+        } catch (Throwable e) {
+            log.warn("无法获取消息体数组: {}", e.getMessage());
+            return null;
+        }
+    }
+}
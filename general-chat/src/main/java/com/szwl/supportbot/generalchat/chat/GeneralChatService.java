@@ -6,28 +6,39 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
  * 通用聊天服务
  * 直接使用AI模型问答，维护上下文记忆
+ * 由 {@link ModelRouter} 为每条消息选择大 / 小模型，小模型回答不合格时升级到大模型
  */
 @Slf4j
 @Service
 public class GeneralChatService {
 
     private final ChatModel chatModel;
+    // 无状态，启动时构建一次；系统提示词与模型按请求传入
+    private final ChatClient chatClient;
     private final SessionMemory sessionMemory;
     private final DynamicConfigService dynamicConfigService;
+    private final ModelRouter modelRouter;
 
     @Autowired
     public GeneralChatService(ChatModel chatModel, 
                              SessionMemory sessionMemory,
-                             DynamicConfigService dynamicConfigService) {
+                             DynamicConfigService dynamicConfigService,
+                             ModelRouter modelRouter) {
         this.chatModel = chatModel;
+        this.chatClient = ChatClient.builder(chatModel)
+                .defaultAdvisors(new SimpleLoggerAdvisor())
+                .build();
         this.sessionMemory = sessionMemory;
         this.dynamicConfigService = dynamicConfigService;
+        this.modelRouter = modelRouter;
     }
 
     /**
@@ -38,6 +49,18 @@ public class GeneralChatService {
      * @return AI回答
      */
     public String chat(String chatId, String message, String conversationHistory) {
+        return chat(chatId, message, conversationHistory, null);
+    }
+
+    /**
+     * 聊天，按分类置信度等信号选择模型档位
+     * @param chatId 聊天ID（用户ID）
+     * @param message 用户消息
+     * @param conversationHistory 会话历史
+     * @param confidence 分类置信度，可以为空
+     * @return AI回答
+     */
+    public String chat(String chatId, String message, String conversationHistory, Double confidence) {
         try {
             log.info("开始通用聊天: chatId={}, message={}, hasHistory={}", 
                      chatId, message, conversationHistory != null);
@@ -61,17 +84,22 @@ public class GeneralChatService {
                 log.info("无历史会话上下文，使用默认值: chatId={}", chatId);
             }
 
-            // 创建ChatClient
-            ChatClient client = ChatClient.builder(chatModel)
-                    .defaultSystem(fullSystemPrompt)
-                    .defaultAdvisors(new SimpleLoggerAdvisor())
-                    .build();
-
-            // 生成回答
-            String answer = client.prompt()
-                    .user(message)
-                    .call()
-                    .content();
+            // 选择模型档位：小模型回答不合格时升级到大模型重新生成
+            ModelRouter.Route route = modelRouter.route(message, conversationHistory, confidence);
+            String answer;
+            if (route.tier() == ModelRouter.Tier.SMALL) {
+                ChatResponse response = generate(modelRouter.smallTierSystemPrompt(fullSystemPrompt), message, route.model());
+                answer = contentOf(response);
+                String escalation = modelRouter.escalationReason(answer, finishReasonOf(response));
+                if (escalation != null) {
+                    log.info("小模型回答未通过检查，升级大模型: chatId={}, reason={}", chatId, escalation);
+                    route = modelRouter.escalate(escalation);
+                    answer = contentOf(generate(fullSystemPrompt, message, route.model()));
+                }
+            } else {
+                answer = contentOf(generate(fullSystemPrompt, message, route.model()));
+            }
+            log.info("模型路由: chatId={}, tier={}, model={}, reason={}", chatId, route.tier(), route.model(), route.reason());
 
             log.info("通用聊天完成: chatId={}, answerLength={}", chatId, answer.length());
 
@@ -85,6 +113,35 @@ public class GeneralChatService {
 
 
 
+    /**
+     * 调用模型生成回答
+     * @param model 模型名称，为空时使用默认模型
+     */
+    private ChatResponse generate(String systemPrompt, String message, String model) {
+        ChatClient.ChatClientRequestSpec request = chatClient.prompt()
+                .system(systemPrompt)
+                .user(message);
+        if (model != null && !model.isBlank()) {
+            request = request.options(ChatOptions.builder().model(model).build());
+        }
+        return request.call().chatResponse();
+    }
+
+    private static String contentOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = response.getResult().getOutput().getText();
+        return text != null ? text : "";
+    }
+
+    private static String finishReasonOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getMetadata() == null) {
+            return null;
+        }
+        return response.getResult().getMetadata().getFinishReason();
+    }
+
     /**
      * 健康检查
      * @return 是否健康
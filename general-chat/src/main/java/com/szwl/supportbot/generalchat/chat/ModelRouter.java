@@ -0,0 +1,153 @@
+package com.szwl.supportbot.generalchat.chat;
+
+import com.szwl.supportbot.generalchat.config.ChatConfig;
+import com.szwl.supportbot.generalchat.config.DynamicConfigService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 模型分级路由
+ * 按消息长度、历史长度、分类置信度、关键词等本地信号为每条消息选择模型档位，
+ * 并对小模型的回答做自检，不合格时升级到大模型。
+ * 配置来自 Nacos chat-config.yaml 的顶层 routing 段（与 systemPrompt 同级），热更新后下一条消息生效。
+ */
+@Slf4j
+@Component
+public class ModelRouter {
+
+    /**
+     * 模型档位
+     */
+    public enum Tier {
+        SMALL,
+        LARGE
+    }
+
+    /**
+     * 路由结果
+     *
+     * @param tier 档位
+     * @param model 模型名称，为空表示使用默认模型
+     * @param reason 选择原因，用于日志与指标
+     */
+    public record Route(Tier tier, String model, String reason) {
+    }
+
+    private final DynamicConfigService dynamicConfigService;
+    private final MeterRegistry meterRegistry;
+
+    public ModelRouter(DynamicConfigService dynamicConfigService, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.dynamicConfigService = dynamicConfigService;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    /**
+     * 为消息选择模型档位
+     *
+     * @param message 用户消息
+     * @param conversationHistory 会话历史，可以为空
+     * @param confidence 分类置信度，可以为空
+     */
+    public Route route(String message, String conversationHistory, Double confidence) {
+        ChatConfig.Routing routing = dynamicConfigService.getRoutingConfig();
+        if (routing == null || !routing.isEnabled()) {
+            return new Route(Tier.LARGE, null, "disabled");
+        }
+        String text = message != null ? message.trim() : "";
+        if (containsAny(text, routing.getLargeKeywords())) {
+            return large(routing, "keyword");
+        }
+        if (text.length() > routing.getMaxSmallMessageLength()) {
+            return large(routing, "message_length");
+        }
+        if (conversationHistory != null && conversationHistory.length() > routing.getMaxSmallHistoryLength()) {
+            return large(routing, "history_length");
+        }
+        if (confidence != null && confidence < routing.getMinSmallConfidence()) {
+            return large(routing, "low_confidence");
+        }
+        // 小模型关键词只在长度、历史、置信度都满足后生效，不能让长消息因包含"你好"而落到小模型
+        if (containsAny(text, routing.getSmallKeywords())) {
+            return small(routing, "keyword");
+        }
+        return small(routing, "default");
+    }
+
+    /**
+     * 小模型的系统提示词：追加自检指令
+     * 未配置自检指令或升级标记时不追加（没有标记无法识别自检结果）
+     */
+    public String smallTierSystemPrompt(String systemPrompt) {
+        ChatConfig.Routing routing = dynamicConfigService.getRoutingConfig();
+        String instruction = routing.getSelfCheckInstruction();
+        String escalationToken = routing.getEscalationToken();
+        if (instruction == null || instruction.isBlank() || escalationToken == null || escalationToken.isEmpty()) {
+            return systemPrompt;
+        }
+        return systemPrompt + "\n\n" + instruction.replace("{escalation_token}", escalationToken);
+    }
+
+    /**
+     * 检查小模型的回答，返回升级原因；回答合格时返回 null
+     *
+     * @param answer 回答
+     * @param finishReason 结束原因，length 表示被截断
+     */
+    public String escalationReason(String answer, String finishReason) {
+        ChatConfig.Routing routing = dynamicConfigService.getRoutingConfig();
+        String text = answer != null ? answer.trim() : "";
+        if (routing.getEscalationToken() != null && !routing.getEscalationToken().isEmpty()
+                && text.contains(routing.getEscalationToken())) {
+            return "self_check";
+        }
+        if (text.length() < routing.getMinAnswerLength()) {
+            return "answer_length";
+        }
+        if ("length".equalsIgnoreCase(finishReason)) {
+            return "truncated";
+        }
+        if (containsAny(text, routing.getEscalationPhrases())) {
+            return "escalation_phrase";
+        }
+        return null;
+    }
+
+    /**
+     * 升级到大模型
+     */
+    public Route escalate(String reason) {
+        return large(dynamicConfigService.getRoutingConfig(), "escalated_" + reason);
+    }
+
+    private Route small(ChatConfig.Routing routing, String reason) {
+        return record(new Route(Tier.SMALL, routing.getSmallModel(), reason));
+    }
+
+    private Route large(ChatConfig.Routing routing, String reason) {
+        return record(new Route(Tier.LARGE, routing.getLargeModel(), reason));
+    }
+
+    private Route record(Route route) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("supportbot.chat.model.route",
+                    "tier", route.tier().name().toLowerCase(), "reason", route.reason()).increment();
+        }
+        return route;
+    }
+
+    private static boolean containsAny(String text, List<String> keywords) {
+        if (keywords == null || text.isEmpty()) {
+            return false;
+        }
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.isEmpty() && text.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
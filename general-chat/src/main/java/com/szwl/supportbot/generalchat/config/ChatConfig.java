@@ -5,6 +5,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Chat 配置类
  * 包含 Chat 相关的配置，支持从 Nacos 动态加载和热更新
@@ -21,10 +24,83 @@ public class ChatConfig {
      */
     private String systemPrompt;
 
+    /**
+     * 模型分级路由配置
+     */
+    private Routing routing = new Routing();
+
     /**
      * 获取系统提示词模板
      */
     public String getSystemPrompt() {
         return systemPrompt;
     }
+
+    /**
+     * 模型分级路由
+     * 闲聊等低价值消息使用小模型，复杂消息或小模型回答不合格时使用大模型
+     */
+    @Data
+    public static class Routing {
+
+        /**
+         * 是否启用分级路由，关闭时全部使用默认模型
+         */
+        private boolean enabled = false;
+
+        /**
+         * 小模型名称
+         */
+        private String smallModel = "qwen-turbo";
+
+        /**
+         * 大模型名称，为空时使用 spring.ai.dashscope 配置的默认模型
+         */
+        private String largeModel;
+
+        /**
+         * 消息长度不超过该值才考虑小模型（字符数）
+         */
+        private int maxSmallMessageLength = 50;
+
+        /**
+         * 会话历史长度不超过该值才考虑小模型（字符数）
+         */
+        private int maxSmallHistoryLength = 2000;
+
+        /**
+         * 分类置信度低于该值时使用大模型；未携带置信度时不参与判断
+         */
+        private double minSmallConfidence = 0.7;
+
+        /**
+         * 命中任一关键词直接使用小模型（寒暄类）
+         */
+        private List<String> smallKeywords = new ArrayList<>();
+
+        /**
+         * 命中任一关键词直接使用大模型（需要推理或解释的消息）
+         */
+        private List<String> largeKeywords = new ArrayList<>();
+
+        /**
+         * 小模型回答短于该值时升级到大模型（字符数）
+         */
+        private int minAnswerLength = 2;
+
+        /**
+         * 小模型回答包含任一短语时升级到大模型
+         */
+        private List<String> escalationPhrases = new ArrayList<>();
+
+        /**
+         * 追加到小模型系统提示词中的自检指令，要求其无法可靠回答时只输出 escalation-token
+         */
+        private String selfCheckInstruction = "如果你无法确定答案或问题超出闲聊范围，请只回复 {escalation_token}，不要输出其它内容。";
+
+        /**
+         * 小模型自检不通过时输出的标记
+         */
+        private String escalationToken = "[ESCALATE]";
+    }
 }
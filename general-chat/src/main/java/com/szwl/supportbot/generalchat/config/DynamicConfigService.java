@@ -50,6 +50,13 @@ public class DynamicConfigService {
         return chatConfig.getSystemPrompt();
     }
 
+    /**
+     * 获取模型分级路由配置
+     */
+    public ChatConfig.Routing getRoutingConfig() {
+        return chatConfig.getRouting();
+    }
+
     /**
      * 加载配置并添加监听器
      */
@@ -142,6 +149,11 @@ public class DynamicConfigService {
             ChatConfig newConfig = parseChatConfig(configContent);
             if (newConfig != null) {
                 chatConfig.setSystemPrompt(newConfig.getSystemPrompt());
+                // 顶层 routing 段（与 systemPrompt 同级）；未配置时保留当前路由配置
+                if (yamlObjectMapper.readTree(configContent).has("routing")) {
+                    chatConfig.setRouting(newConfig.getRouting());
+                    log.info("模型分级路由配置已更新: enabled={}", newConfig.getRouting().isEnabled());
+                }
                 log.info("ChatConfig已更新: systemPromptLength={}", 
                         chatConfig.getSystemPrompt().length());
             }
@@ -1,10 +1,16 @@
 package com.szwl.supportbot.generalchat.mq;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.szwl.supportbot.common.mq.TaskMessage;
+import com.szwl.supportbot.common.mq.TaskMessageCodec;
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
+import com.szwl.supportbot.common.util.MessageBodyExtractor;
 import com.szwl.supportbot.generalchat.chat.GeneralChatService;
 import com.szwl.supportbot.generalchat.session.SessionMemory;
 import com.szwl.supportbot.generalchat.messaging.ImMessageService;
-import com.szwl.supportbot.generalchat.util.MessageBodyExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientServiceProvider;
@@ -19,8 +25,8 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 消息消费服务
@@ -31,11 +37,16 @@ import java.time.Duration;
 @Service
 public class MessageConsumerService {
 
+    private static final String CONSUME_METRIC = "supportbot.mq.consume";
+    private static final String RECEIVE_LAG_METRIC = "supportbot.mq.receive.lag";
+
     private final GeneralChatService generalChatService;
     private final SessionMemory sessionMemory;
-    private final ObjectMapper objectMapper;
     private final ImMessageService imMessageService;
     
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
+    
     private final String proxyServer;
     @Value("${rocketmq.consumer.topic}")
     private String topic;
@@ -53,14 +64,16 @@ public class MessageConsumerService {
     public MessageConsumerService(
             GeneralChatService generalChatService,
             SessionMemory sessionMemory,
-            ObjectMapper objectMapper,
             ImMessageService imMessageService,
+            MeterRegistry meterRegistry,
+            TraceRecorder traceRecorder,
             @Value("${rocketmq.proxy-server}") String proxyServer
     ) {
         this.generalChatService = generalChatService;
         this.sessionMemory = sessionMemory;
-        this.objectMapper = objectMapper;
         this.imMessageService = imMessageService;
+        this.meterRegistry = meterRegistry;
+        this.traceRecorder = traceRecorder;
         this.proxyServer = proxyServer;
     }
 
@@ -124,38 +137,47 @@ public class MessageConsumerService {
                     
                     if (messages != null && !messages.isEmpty()) {
                         log.info("拉取到 {} 条消息", messages.size());
+                        long receivedNanos = System.nanoTime();
                         
                         for (MessageView messageView : messages) {
+                            recordReceiveLag(messageView);
                             try {
                                 log.info("开始处理消息: messageId={}", messageView.getMessageId());
                                 
-                                // 安全地获取消息体
-                                String message = MessageBodyExtractor.extractAsString(messageView);
-                                if (message == null) {
+                                // 按 contentType 属性解码任务消息（protobuf / 旧版 JSON）
+                                TaskMessage task = TaskMessageCodec.decode(MessageBodyExtractor.bodyBuffer(messageView),
+                                        messageView.getProperties().get(TaskMessageCodec.CONTENT_TYPE_PROPERTY));
+                                if (task == null) {
                                     log.warn("消息体提取失败，跳过处理");
                                     // 消息体提取失败，确认消息避免重复投递
-                                    ackMessage(messageView, "消息体提取失败");
+                                    ackMessage(messageView, "消息体提取失败", "invalid", receivedNanos);
                                     continue;
                                 }
                                 
-                                log.info("收到通用聊天消息: {}", message);
+                                log.info("收到通用聊天消息: {}", task);
                                 
-                                // 处理消息
-                                boolean success = consumeMessage(message);
+                                // 处理消息（链路上下文设置到当前线程，日志与回复投递沿用）
+                                boolean success;
+                                long consumeStart = System.nanoTime();
+                                try (TraceContext.Scope ignored = TraceContext.attach(traceOf(task, messageView))) {
+                                    traceRecorder.record("mq.received", Math.max(0, System.currentTimeMillis() - messageView.getBornTimestamp()));
+                                    success = consumeMessage(task);
+                                    traceRecorder.recordSince("agent.consume", consumeStart);
+                                }
                                 
                                 if (success) {
                                     // 消息处理成功，确认消费
-                                    ackMessage(messageView, "消息处理成功");
+                                    ackMessage(messageView, "消息处理成功", "success", receivedNanos);
                                 } else {
                                     // 消息处理失败，确认消息避免重复投递
-                                    ackMessage(messageView, "消息处理失败");
+                                    ackMessage(messageView, "消息处理失败", "failure", receivedNanos);
                                 }
                                 
                             } catch (Exception e) {
                                 log.error("消息处理异常: messageId={}, error={}", 
                                         messageView.getMessageId(), e.getMessage(), e);
                                 // 发生异常时，确认消息避免重复投递
-                                ackMessage(messageView, "消息处理异常");
+                                ackMessage(messageView, "消息处理异常", "error", receivedNanos);
                             }
                         }
                     }
@@ -184,24 +206,32 @@ public class MessageConsumerService {
      * 消费消息（从消息队列）
      * 处理通用聊天相关的消息
      * 
-     * @param messageJson 消息JSON字符串
+     * @param messageJson 消息JSON字符串（旧版格式）
      * @return true表示处理成功，false表示处理失败
      */
     public boolean consumeMessage(String messageJson) {
+        TaskMessage task = parseMessage(messageJson);
+        if (task == null) {
+            log.error("消息解析失败，跳过处理");
+            return false;
+        }
+        return consumeMessage(task);
+    }
+
+    /**
+     * 消费已解码的任务消息
+     *
+     * @param task 任务消息
+     * @return true表示处理成功，false表示处理失败
+     */
+    public boolean consumeMessage(TaskMessage task) {
         try {
-            log.info("收到队列消息: {}", messageJson);
-            
-            // 解析消息JSON
-            Map<String, Object> message = parseMessage(messageJson);
-            if (message == null) {
-                log.error("消息解析失败，跳过处理");
-                return false;
-            }
+            log.info("收到队列消息: {}", task);
             
             // 提取消息内容
-            String messageContent = (String) message.get("question");
-            String category = (String) message.get("category"); // 提取category字段，保持与其他项目一致
-            String sessionId = (String) message.get("sessionId");
+            String messageContent = task.getQuestion();
+            String category = task.getCategory(); // 提取category字段，保持与其他项目一致
+            String sessionId = task.getSessionId();
             String userId = extractUserIdFromSession(sessionId);
             
             if (messageContent == null || messageContent.trim().isEmpty()) {
@@ -220,8 +250,8 @@ public class MessageConsumerService {
                     log.info("会话历史上下文为空: sessionId={}", sessionId);
                 }
                 
-                // 调用通用聊天服务，传入会话历史
-                String result = generalChatService.chat(sessionId, messageContent, conversationHistory);
+                // 调用通用聊天服务，传入会话历史与分类置信度（用于选择模型档位）
+                String result = generalChatService.chat(sessionId, messageContent, conversationHistory, task.getConfidence());
             
                 log.info("通用聊天处理成功: sessionId={}, result={}", sessionId, result);
                 
@@ -267,12 +297,12 @@ public class MessageConsumerService {
     }
 
     /**
-     * 解析消息JSON
+     * 解析消息JSON（旧版格式）
      */
-    private Map<String, Object> parseMessage(String messageJson) {
+    private TaskMessage parseMessage(String messageJson) {
         try {
             log.info("开始解析消息JSON，长度: {}", messageJson != null ? messageJson.length() : 0);
-            Map<String, Object> result = objectMapper.readValue(messageJson, Map.class);
+            TaskMessage result = TaskMessageCodec.decodeJson(messageJson);
             log.info("消息JSON解析成功，解析结果: {}", result);
             return result;
         } catch (Exception e) {
@@ -300,11 +330,16 @@ public class MessageConsumerService {
      * @param messageView 消息视图
      * @param reason 确认原因
      */
-    private void ackMessage(MessageView messageView, String reason) {
+    private void ackMessage(MessageView messageView, String reason, String outcome, long receivedNanos) {
         try {
             simpleConsumer.ack(messageView);
             log.info("消息确认成功: messageId={}, reason={}", messageView.getMessageId(), reason);
         } catch (Exception e) {
+            Counter.builder("supportbot.mq.ack.failures")
+                    .description("RocketMQ 消息确认失败次数")
+                    .tag("topic", topic)
+                    .register(meterRegistry)
+                    .increment();
             if (e.getMessage() != null && e.getMessage().contains("INVALID_RECEIPT_HANDLE")) {
                 log.warn("消息确认失败，receipt handle已过期: messageId={}, reason={}, error={}", 
                         messageView.getMessageId(), reason, e.getMessage());
@@ -312,9 +347,43 @@ public class MessageConsumerService {
                 log.error("消息确认失败: messageId={}, reason={}, error={}", 
                         messageView.getMessageId(), reason, e.getMessage(), e);
             }
+        } finally {
+            recordConsume(outcome, receivedNanos);
         }
     }
 
+    /**
+     * 记录消息从拉取到确认的耗时（按 topic、处理结果区分）
+     */
+    private void recordConsume(String outcome, long receivedNanos) {
+        Timer.builder(CONSUME_METRIC)
+                .description("RocketMQ 消息拉取到确认的耗时")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录消息从生产者发出到被拉取的延迟（按 topic 区分）
+     */
+    private void recordReceiveLag(MessageView messageView) {
+        long lagMs = System.currentTimeMillis() - messageView.getBornTimestamp();
+        Timer.builder(RECEIVE_LAG_METRIC)
+                .description("RocketMQ 消息发出到被拉取的延迟")
+                .tag("topic", topic)
+                .register(meterRegistry)
+                .record(Math.max(lagMs, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 任务消息中的链路上下文，消息体没有时从消息属性读取
+     */
+    private static TraceContext traceOf(TaskMessage task, MessageView messageView) {
+        TraceContext trace = TraceContext.of(task.getTraceId(), task.getOriginTsMs(), task.getMessageId());
+        return trace != null ? trace : TraceContext.fromProperties(messageView.getProperties());
+    }
+
 
 
     /**
@@ -1,16 +1,18 @@
 package com.szwl.supportbot.imdemo;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
  * IM Demo 主应用类
  * 提供HTTP服务，注册到Nacos
+ * 出站 HTTP 连接池（调用问题分类模块的 RestTemplate）、链路追踪由 common 模块自动配置
  */
 @SpringBootApplication
 @EnableDiscoveryClient
@@ -21,11 +23,20 @@ public class ImDemoApplication {
     }
 
     /**
-     * 配置 RestTemplate Bean，用于调用问题分类模块接口
+     * 聊天消息处理线程池（调用问题分类模块），有界队列，满时拒绝而不是阻塞 STOMP 入站线程
      */
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @Bean(name = "chatDispatchExecutor")
+    public ThreadPoolTaskExecutor chatDispatchExecutor(@Value("${im.chat.executor.core-size:16}") int coreSize,
+                                                       @Value("${im.chat.executor.max-size:64}") int maxSize,
+                                                       @Value("${im.chat.executor.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chat-dispatch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
     }
 
     /**
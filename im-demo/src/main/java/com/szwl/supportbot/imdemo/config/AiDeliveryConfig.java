@@ -0,0 +1,27 @@
+package com.szwl.supportbot.imdemo.config;
+
+import com.szwl.supportbot.imdemo.websocket.AiDeliveryHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * AI回复投递通道配置
+ * 为各 Agent 提供原生 WebSocket 长连接端点（不经过 STOMP / SockJS）
+ */
+@Configuration
+@EnableWebSocket
+public class AiDeliveryConfig implements WebSocketConfigurer {
+
+    private final AiDeliveryHandler aiDeliveryHandler;
+
+    public AiDeliveryConfig(AiDeliveryHandler aiDeliveryHandler) {
+        this.aiDeliveryHandler = aiDeliveryHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(aiDeliveryHandler, "/ws/ai-delivery");
+    }
+}
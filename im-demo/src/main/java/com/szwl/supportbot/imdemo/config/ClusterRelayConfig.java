@@ -0,0 +1,30 @@
+package com.szwl.supportbot.imdemo.config;
+
+import com.szwl.supportbot.imdemo.service.ClusterRelayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 集群模式配置
+ * 订阅本实例的转发频道，接收其他实例转发的用户消息
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "im.cluster.enabled", havingValue = "true")
+public class ClusterRelayConfig {
+
+    @Bean
+    public RedisMessageListenerContainer imRelayListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                  ClusterRelayService clusterRelayService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(clusterRelayService, new ChannelTopic(clusterRelayService.getRelayChannel()));
+        log.info("集群模式已启用，订阅转发频道: {}", clusterRelayService.getRelayChannel());
+        return container;
+    }
+}
@@ -1,10 +1,12 @@
 package com.szwl.supportbot.imdemo.controller;
 
+import com.szwl.supportbot.common.trace.TraceContext;
 import com.szwl.supportbot.imdemo.model.AiResponseRequest;
 import com.szwl.supportbot.imdemo.service.AiResponseService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -26,15 +28,18 @@ public class AiResponseController {
 
     /**
      * 接收AI回复并发送给用户
+     * 请求头中的链路上下文在处理期间设置到当前线程
      * @param request AI回复请求
+     * @param headers 请求头
      * @return 处理结果
      */
     @PostMapping("/send")
-    public Map<String, Object> sendAiResponse(@RequestBody AiResponseRequest request) {
+    public Map<String, Object> sendAiResponse(@RequestBody AiResponseRequest request,
+                                              @RequestHeader HttpHeaders headers) {
         log.info("收到AI回复: userId={}, source={}, content={}", 
                  request.getUserId(), request.getSource(), request.getContent());
         
-        try {
+        try (TraceContext.Scope ignored = TraceContext.attach(TraceContext.fromHeaders(headers::getFirst))) {
             boolean success = aiResponseService.sendAiResponse(request);
             return Map.of(
                 "success", success,
@@ -1,10 +1,15 @@
 package com.szwl.supportbot.imdemo.model;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 用户会话模型
  * 维护用户的连接信息和路由
+ * 心跳状态会被心跳处理线程与过期检查线程并发读写，使用 volatile / 原子类型
  */
 @Data
 public class UserSession {
@@ -14,12 +19,13 @@ public class UserSession {
     private String sessionId;        // WebSocket会话ID
     private String clientIp;         // 客户端IP
     private Integer clientPort;      // 客户端端口
-    private Long lastHeartbeat;      // 最近心跳时间
-    private Integer missedHeartbeats; // 连续丢失心跳次数
+    private volatile long lastHeartbeat; // 最近心跳时间
+
+    @Setter(AccessLevel.NONE)
+    private final AtomicInteger missedHeartbeats = new AtomicInteger(); // 连续丢失心跳次数
     
     public UserSession() {
         this.lastHeartbeat = System.currentTimeMillis();
-        this.missedHeartbeats = 0;
     }
     
     public UserSession(Long userId, String username, String sessionId, String clientIp, Integer clientPort) {
@@ -36,20 +42,28 @@ public class UserSession {
      */
     public void updateHeartbeat() {
         this.lastHeartbeat = System.currentTimeMillis();
-        this.missedHeartbeats = 0;
+        this.missedHeartbeats.set(0);
     }
     
     /**
      * 增加丢失心跳次数
+     * @return 增加后的次数
+     */
+    public int incrementMissedHeartbeats() {
+        return this.missedHeartbeats.incrementAndGet();
+    }
+
+    /**
+     * 连续丢失心跳次数
      */
-    public void incrementMissedHeartbeats() {
-        this.missedHeartbeats++;
+    public int getMissedHeartbeats() {
+        return this.missedHeartbeats.get();
     }
     
     /**
      * 检查是否需要清理（连续两次心跳丢失）
      */
     public boolean shouldBeCleaned() {
-        return this.missedHeartbeats >= 2;
+        return this.missedHeartbeats.get() >= 2;
     }
 }
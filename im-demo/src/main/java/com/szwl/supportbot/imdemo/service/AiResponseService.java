@@ -1,16 +1,20 @@
 package com.szwl.supportbot.imdemo.service;
 
+import com.szwl.supportbot.common.trace.TraceRecorder;
 import com.szwl.supportbot.imdemo.model.AiResponseRequest;
 import com.szwl.supportbot.imdemo.model.ChatMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
  * AI回复服务
  * 处理AI模块的回复并发送给用户
+ * 用户不在线时回复暂存到离线消息，用户重连后补发
+ * 回复带有链路上下文时记录 im.delivered 阶段，其距进入系统的时间即端到端耗时
  */
 @Slf4j
 @Service
@@ -19,12 +23,19 @@ public class AiResponseService {
     @Autowired
     private UserSessionService userSessionService;
 
+    @Autowired
+    private OfflineOutboxService offlineOutboxService;
+
+    @Autowired
+    private TraceRecorder traceRecorder;
+
     /**
      * 发送AI回复给用户
      * @param request AI回复请求
      * @return 是否发送成功
      */
     public boolean sendAiResponse(AiResponseRequest request) {
+        long start = System.nanoTime();
         try {
             log.info("处理AI回复: userId={}, source={}", request.getUserId(), request.getSource());
             
@@ -43,8 +54,10 @@ public class AiResponseService {
             if (success) {
                 log.info("AI回复发送成功: userId={}, content={}", request.getUserId(), request.getContent());
             } else {
-                log.warn("AI回复发送失败: userId={}", request.getUserId());
+                log.warn("AI回复发送失败，暂存等待用户重连: userId={}", request.getUserId());
+                offlineOutboxService.store(request.getUserId(), aiMessage);
             }
+            traceRecorder.recordSince(success ? "im.delivered" : "im.stored", start);
             
             return success;
             
@@ -53,4 +66,26 @@ public class AiResponseService {
             return false;
         }
     }
+
+    /**
+     * 补发用户的暂存消息
+     * 中途发送失败（会话再次断开）时，剩余消息重新暂存
+     * @param userId 用户ID
+     * @return 补发成功的消息数
+     */
+    public int replayPending(Long userId) {
+        List<ChatMessage> pending = offlineOutboxService.drain(userId);
+        int replayed = 0;
+        for (ChatMessage message : pending) {
+            if (!userSessionService.sendMessageToLocalUser(userId, message)) {
+                pending.subList(replayed, pending.size()).forEach(m -> offlineOutboxService.store(userId, m));
+                break;
+            }
+            replayed++;
+        }
+        if (!pending.isEmpty()) {
+            log.info("暂存消息补发完成: userId={}, 补发={}, 待补发={}", userId, replayed, pending.size() - replayed);
+        }
+        return replayed;
+    }
 }
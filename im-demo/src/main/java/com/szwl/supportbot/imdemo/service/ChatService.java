@@ -1,19 +1,30 @@
 package com.szwl.supportbot.imdemo.service;
 
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
 import com.szwl.supportbot.imdemo.model.ChatMessage;
+import com.szwl.supportbot.imdemo.model.ChatResponse;
 import com.szwl.supportbot.imdemo.model.UserSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * 聊天服务
  * 处理用户消息，调用问题分类模块接口
+ * 分类调用在独立的有界线程池中执行，不占用 STOMP 入站线程；每个用户同时处理中的消息数有上限
+ * 消息提交时开始一条链路（traceId + 进入系统时间 + 消息ID），分类请求通过请求头继续传递
  */
 @Slf4j
 @Service
@@ -25,9 +36,96 @@ public class ChatService {
     @Autowired
     private RestTemplate restTemplate;
     
+    @Autowired
+    @Qualifier("chatDispatchExecutor")
+    private ThreadPoolTaskExecutor chatDispatchExecutor;
+
+    @Autowired
+    private TraceRecorder traceRecorder;
+    
     @Value("${question-classifier.api.url:http://localhost:11001/api/classify}")
     private String questionClassifierApiUrl;
 
+    @Value("${im.chat.max-in-flight-per-user:3}")
+    private int maxInFlightPerUser;
+
+    // 每个用户处理中的消息数：userId -> 数量
+    private final Map<Long, Integer> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 消息提交结果
+     */
+    public enum Admission {
+        ACCEPTED,    // 已提交处理
+        USER_BUSY,   // 该用户处理中的消息已达上限
+        OVERLOADED   // 处理线程池已满
+    }
+
+    /**
+     * 异步提交用户消息
+     * 提交结果先通过 onAdmission 在调用线程上回调（用于立即响应用户），已提交的消息在回调完成后才开始处理，
+     * 保证"已收到"响应先于处理失败响应到达
+     * 调用问题分类模块失败时向用户推送失败响应
+     * @param message 聊天消息
+     * @param sessionId 会话ID
+     * @param onAdmission 提交结果回调
+     * @return 提交结果
+     */
+    public Admission submitUserMessage(ChatMessage message, String sessionId, Consumer<Admission> onAdmission) {
+        Long userId = message.getSender();
+        if (!acquire(userId)) {
+            log.warn("用户处理中的消息已达上限: userId={}, limit={}", userId, maxInFlightPerUser);
+            onAdmission.accept(Admission.USER_BUSY);
+            return Admission.USER_BUSY;
+        }
+        TraceContext trace = TraceContext.start(message.getMessageId());
+        long submittedNanos = System.nanoTime();
+        CompletableFuture<Void> admitted = new CompletableFuture<>();
+        try {
+            chatDispatchExecutor.execute(() -> {
+                try (TraceContext.Scope ignored = trace.attach()) {
+                    admitted.join();
+                    traceRecorder.recordSince("im.dispatch", submittedNanos);
+                    if (!handleUserMessage(message, sessionId)) {
+                        userSessionService.sendMessageToUser(userId,
+                                ChatResponse.failure(message.getMessageId(), "消息处理失败，请重试"));
+                    }
+                } finally {
+                    release(userId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            release(userId);
+            log.warn("消息处理线程池已满，拒绝消息: userId={}, messageId={}, traceId={}",
+                    userId, message.getMessageId(), trace.traceId());
+            onAdmission.accept(Admission.OVERLOADED);
+            return Admission.OVERLOADED;
+        }
+        try {
+            onAdmission.accept(Admission.ACCEPTED);
+        } finally {
+            admitted.complete(null);
+        }
+        return Admission.ACCEPTED;
+    }
+
+    private boolean acquire(Long userId) {
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(userId, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxInFlightPerUser) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(Long userId) {
+        inFlight.computeIfPresent(userId, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
     /**
      * 处理用户聊天消息
      * @param message 聊天消息
@@ -69,22 +167,23 @@ public class ChatService {
 
     /**
      * 调用问题分类模块接口
+     * 当前线程的链路上下文由 RestTemplate 拦截器写入请求头
      * @param message 聊天消息
      * @return 是否调用成功
      */
     private boolean callQuestionClassifier(ChatMessage message) {
+        long start = System.nanoTime();
         try {
-            // 构建GET请求URL，使用查询参数
+            // 构建GET请求URL，使用查询参数（URI 模板，变量值由 RestTemplate 严格编码）
             String baseUrl = questionClassifierApiUrl.replace("/api/classify", "");
-            String url = String.format("%s/api/classify?question=%s&uid=%s",
-                baseUrl,
-                java.net.URLEncoder.encode(message.getContent(), "UTF-8"),
-                message.getSender());
+            String url = baseUrl + "/api/classify?question={question}&uid={uid}";
             
-            log.debug("调用问题分类服务URL: {}", url);
+            log.debug("调用问题分类服务URL: {}, uid={}", url, message.getSender());
             
             // 发送GET请求
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class,
+                message.getContent(), message.getSender());
+            traceRecorder.recordSince("im.classify", start);
             
             if (response.getStatusCode().is2xxSuccessful()) {
                 log.info("问题分类模块调用成功: status={}, response={}", 
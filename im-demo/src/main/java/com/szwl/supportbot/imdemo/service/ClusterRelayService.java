@@ -0,0 +1,88 @@
+package com.szwl.supportbot.imdemo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.szwl.supportbot.common.im.ImRouteKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 集群消息转发服务
+ * 用户会话不在本实例时，将 /user/{id}/queue/messages 消息发布到用户所在实例的转发频道，
+ * 由该实例投递给本地会话；各实例只订阅自己的频道
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "im.cluster.enabled", havingValue = "true")
+public class ClusterRelayService implements MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final UserSessionService userSessionService;
+    private final String localAddress;
+
+    public ClusterRelayService(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                               UserSessionService userSessionService, ImRouteRegistry imRouteRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.userSessionService = userSessionService;
+        this.localAddress = imRouteRegistry.getLocalAddress();
+    }
+
+    /**
+     * 转发消息到用户所在实例
+     * @param targetAddress 用户所在实例地址
+     * @param userId 用户ID
+     * @param message 消息内容
+     * @return 是否有实例接收
+     */
+    public boolean relay(String targetAddress, Long userId, Object message) {
+        try {
+            ObjectNode envelope = objectMapper.createObjectNode();
+            envelope.put("userId", userId);
+            envelope.put("origin", localAddress);
+            envelope.set("payload", objectMapper.valueToTree(message));
+
+            Long receivers = redisTemplate.convertAndSend(ImRouteKeys.relayChannel(targetAddress),
+                    objectMapper.writeValueAsString(envelope));
+            boolean relayed = receivers != null && receivers > 0;
+            if (relayed) {
+                log.info("消息已转发到实例: userId={}, target={}", userId, targetAddress);
+            } else {
+                log.warn("消息转发无接收方，目标实例可能已下线: userId={}, target={}", userId, targetAddress);
+            }
+            return relayed;
+        } catch (Exception e) {
+            log.error("消息转发失败: userId={}, target={}", userId, targetAddress, e);
+            return false;
+        }
+    }
+
+    /**
+     * 接收其他实例转发过来的消息，投递给本地会话
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JsonNode envelope = objectMapper.readTree(message.getBody());
+            Long userId = envelope.path("userId").asLong();
+            log.debug("收到转发消息: userId={}, origin={}", userId, envelope.path("origin").asText());
+            // 只投递本地会话，不再二次转发，避免实例间循环
+            userSessionService.sendMessageToLocalUser(userId, envelope.path("payload"));
+        } catch (Exception e) {
+            log.error("转发消息处理失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 本实例转发频道
+     */
+    public String getRelayChannel() {
+        return ImRouteKeys.relayChannel(localAddress);
+    }
+}
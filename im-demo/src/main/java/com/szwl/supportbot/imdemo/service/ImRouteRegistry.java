@@ -0,0 +1,103 @@
+package com.szwl.supportbot.imdemo.service;
+
+import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
+import com.szwl.supportbot.common.im.ImRouteKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 用户亲和路由登记
+ * 用户在本实例注册会话时，将 userId -> 本实例地址 写入 Redis，
+ * 各 Agent 回复时据此直接投递到用户所在的 IM 实例
+ */
+@Slf4j
+@Service
+public class ImRouteRegistry {
+
+    /**
+     * 仅当路由仍指向本实例时才删除，避免误删用户已迁移到其他实例的登记
+     */
+    private static final RedisScript<Long> REMOVE_IF_OWNER = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String localAddress;
+
+    public ImRouteRegistry(StringRedisTemplate redisTemplate,
+                           NacosDiscoveryProperties nacosDiscoveryProperties,
+                           @Value("${server.port:11005}") int serverPort) {
+        this.redisTemplate = redisTemplate;
+        // 与注册到 Nacos 的地址保持一致，Agent 侧按该地址匹配实例快照
+        this.localAddress = ImRouteKeys.address(nacosDiscoveryProperties.getIp(), serverPort);
+        log.info("IM实例路由地址: {}", localAddress);
+    }
+
+    /**
+     * 登记用户所在实例
+     * @param userId 用户ID
+     */
+    public void register(Long userId) {
+        try {
+            redisTemplate.opsForValue().set(ImRouteKeys.userRouteKey(userId), localAddress, ImRouteKeys.USER_ROUTE_TTL);
+            log.debug("用户路由已登记: userId={}, instance={}", userId, localAddress);
+        } catch (Exception e) {
+            log.warn("用户路由登记失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 续期用户路由（心跳时调用）
+     * @param userId 用户ID
+     */
+    public void renew(Long userId) {
+        try {
+            Boolean renewed = redisTemplate.expire(ImRouteKeys.userRouteKey(userId), ImRouteKeys.USER_ROUTE_TTL);
+            if (!Boolean.TRUE.equals(renewed)) {
+                register(userId);
+            }
+        } catch (Exception e) {
+            log.warn("用户路由续期失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 移除用户路由（仅当仍指向本实例时）
+     * @param userId 用户ID
+     */
+    public void unregister(Long userId) {
+        try {
+            redisTemplate.execute(REMOVE_IF_OWNER, List.of(ImRouteKeys.userRouteKey(userId)), localAddress);
+            log.debug("用户路由已移除: userId={}", userId);
+        } catch (Exception e) {
+            log.warn("用户路由移除失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 查询用户所在实例
+     * @param userId 用户ID
+     * @return 实例地址（host:port），未登记或查询失败时返回null
+     */
+    public String lookup(Long userId) {
+        try {
+            return redisTemplate.opsForValue().get(ImRouteKeys.userRouteKey(userId));
+        } catch (Exception e) {
+            log.warn("用户路由查询失败: userId={}, error={}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 本实例地址（host:port）
+     */
+    public String getLocalAddress() {
+        return localAddress;
+    }
+}
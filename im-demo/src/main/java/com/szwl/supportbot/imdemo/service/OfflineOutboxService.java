@@ -0,0 +1,218 @@
+package com.szwl.supportbot.imdemo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.szwl.supportbot.imdemo.model.ChatMessage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线消息暂存服务
+ * 用户会话不存在时（如短暂断网）暂存未送达的AI回复，用户重新订阅消息队列后按顺序补发，
+ * 避免用户重新提问导致分类 + Agent + 大模型整条链路重复执行
+ *
+ * - 每个用户一个有界环形缓冲，超出容量时最早的消息溢出到 Redis（未开启溢出时丢弃）
+ * - 集群模式下消息可能在任意实例暂存，开启 Redis 溢出时全部写入 Redis，用户在任意实例重连都能补发
+ * - 超过暂存时间的消息不再补发
+ */
+@Slf4j
+@Service
+public class OfflineOutboxService {
+
+    private static final String REDIS_KEY_PREFIX = "im:outbox:";
+
+    /**
+     * 原子地取出并删除用户的全部溢出消息
+     */
+    private static final RedisScript<List> DRAIN_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('lrange', KEYS[1], 0, -1) redis.call('del', KEYS[1]) return v",
+            List.class);
+
+    /**
+     * 暂存条目
+     */
+    private record Entry(ChatMessage message, long expireAt) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${im.outbox.capacity:50}")
+    private int capacity;
+
+    @Value("${im.outbox.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${im.outbox.redis-spill:true}")
+    private boolean redisSpill;
+
+    @Value("${im.outbox.replay-delay-ms:500}")
+    private long replayDelayMs;
+
+    @Value("${im.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    // 用户暂存消息：userId -> 环形缓冲
+    private final Map<Long, Deque<Entry>> outboxes = new ConcurrentHashMap<>();
+
+    // 定时清理过期消息、延迟补发
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public OfflineOutboxService(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, 60, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 暂存未送达的消息
+     * @param userId 用户ID
+     * @param message 消息
+     */
+    public void store(Long userId, ChatMessage message) {
+        long expireAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        Entry entry = new Entry(message, expireAt);
+        if (clusterEnabled && redisSpill) {
+            spill(userId, entry);
+            log.info("消息已暂存到Redis，等待用户重连: userId={}, messageId={}", userId, message.getMessageId());
+            return;
+        }
+
+        // 缓冲的读写都在 compute 中进行，与取出、清理互斥
+        Entry[] evicted = new Entry[1];
+        outboxes.compute(userId, (key, outbox) -> {
+            Deque<Entry> current = outbox != null ? outbox : new ArrayDeque<>();
+            if (current.size() >= capacity) {
+                evicted[0] = current.pollFirst();
+            }
+            current.addLast(entry);
+            return current;
+        });
+        log.info("消息已暂存，等待用户重连: userId={}, messageId={}", userId, message.getMessageId());
+
+        if (evicted[0] != null) {
+            if (redisSpill) {
+                spill(userId, evicted[0]);
+            } else {
+                log.warn("暂存消息超出容量，丢弃最早的消息: userId={}, messageId={}", userId, evicted[0].message().getMessageId());
+            }
+        }
+    }
+
+    /**
+     * 取出用户全部未过期的暂存消息（按暂存顺序）
+     * @param userId 用户ID
+     * @return 暂存消息，没有时返回空列表
+     */
+    public List<ChatMessage> drain(Long userId) {
+        long now = System.currentTimeMillis();
+        List<ChatMessage> messages = new ArrayList<>();
+
+        // 溢出到 Redis 的消息早于本地缓冲中的消息
+        if (redisSpill) {
+            for (Entry entry : drainSpilled(userId)) {
+                if (entry.expireAt() > now) {
+                    messages.add(entry.message());
+                }
+            }
+        }
+
+        Deque<Entry> outbox = outboxes.remove(userId);
+        if (outbox != null) {
+            for (Entry entry : outbox) {
+                if (entry.expireAt() > now) {
+                    messages.add(entry.message());
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 延迟执行补发
+     * 订阅事件先于代理登记订阅发布，立即推送可能在订阅生效前被丢弃，因此稍作延迟
+     * @param replay 补发任务
+     */
+    public void scheduleReplay(Runnable replay) {
+        scheduler.schedule(() -> {
+            try {
+                replay.run();
+            } catch (Exception e) {
+                log.error("补发暂存消息异常", e);
+            }
+        }, replayDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void spill(Long userId, Entry entry) {
+        try {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("expireAt", entry.expireAt());
+            node.set("message", objectMapper.valueToTree(entry.message()));
+            String key = REDIS_KEY_PREFIX + userId;
+            redisTemplate.opsForList().rightPush(key, objectMapper.writeValueAsString(node));
+            redisTemplate.opsForList().trim(key, -capacity, -1);
+            redisTemplate.expire(key, Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            log.warn("暂存消息写入Redis失败: userId={}, messageId={}, error={}",
+                    userId, entry.message().getMessageId(), e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Entry> drainSpilled(Long userId) {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            List<Object> values = redisTemplate.execute(DRAIN_SCRIPT, List.of(REDIS_KEY_PREFIX + userId));
+            if (values == null) {
+                return entries;
+            }
+            for (Object value : values) {
+                JsonNode node = objectMapper.readTree(value.toString());
+                entries.add(new Entry(objectMapper.treeToValue(node.path("message"), ChatMessage.class),
+                        node.path("expireAt").asLong()));
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis暂存消息失败: userId={}, error={}", userId, e.getMessage());
+        }
+        return entries;
+    }
+
+    /**
+     * 清理过期消息和空缓冲
+     */
+    private void purgeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Long userId : outboxes.keySet()) {
+                outboxes.computeIfPresent(userId, (key, outbox) -> {
+                    outbox.removeIf(entry -> entry.expireAt() <= now);
+                    return outbox.isEmpty() ? null : outbox;
+                });
+            }
+        } catch (Exception e) {
+            log.error("清理过期暂存消息异常", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,30 +1,71 @@
 package com.szwl.supportbot.imdemo.service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 用户服务
  * 处理用户登录，用户名和UID映射存储在本地文件
+ *
+ * - 内存目录为并发 Map，登录为 O(1) 查询
+ * - users.txt 为追加写日志（每行 username=uid），新用户只追加一行，不再整体重写
+ * - 启动时缓冲逐行读取文件；重复或无效行超过阈值时压缩重写
+ * - UID 由单调递增的原子计数生成
  */
 @Slf4j
 @Service
 public class UserService {
 
     private static final String USER_FILE = "users.txt";
-    private final Map<String, Long> usernameToUid = new HashMap<>();
-    private final Map<Long, String> uidToUsername = new HashMap<>();
+
+    /**
+     * 无效行超过有效用户数的比例时触发压缩
+     */
+    private static final double COMPACTION_RATIO = 0.5;
+    private static final long COMPACTION_MIN_STALE_LINES = 1024;
+
+    private final Path userFile;
+    private final Map<String, Long> usernameToUid = new ConcurrentHashMap<>();
+    private final Map<Long, String> uidToUsername = new ConcurrentHashMap<>();
+
+    // UID 生成器，只增不减
+    private final AtomicLong uidGenerator = new AtomicLong();
+
+    // 日志文件中的行数（含重复与无效行），用于判断是否需要压缩
+    private final AtomicLong logLines = new AtomicLong();
+
+    // 追加写与压缩互斥
+    private final Object appendLock = new Object();
+    private FileChannel appendChannel;
+
+    // 定时检查是否需要压缩
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
     public UserService() {
+        this.userFile = Paths.get(USER_FILE);
         loadUsers();
+        seedUidGenerator();
+        compactIfNeeded();
+        openAppendChannel();
+        scheduler.scheduleWithFixedDelay(this::compactIfNeeded, 10, 10, TimeUnit.MINUTES);
     }
 
     /**
@@ -38,75 +79,167 @@ public class UserService {
         }
 
         Long uid = usernameToUid.get(username);
-        if (uid == null) {
-            // 生成新的UID
-            uid = generateUid();
-            usernameToUid.put(username, uid);
-            uidToUsername.put(uid, username);
-            saveUsers();
-            log.info("新用户注册: username={}, uid={}", username, uid);
-        } else {
+        if (uid != null) {
             log.info("用户登录: username={}, uid={}", username, uid);
+            return uid;
         }
 
-        return uid;
+        // 同一用户名并发登录时只有一个UID写入目录（落选的UID直接丢弃，UID 允许不连续）；
+        // 文件追加在目录更新之后、Map 锁之外进行
+        Long newUid = generateUid();
+        uid = usernameToUid.putIfAbsent(username, newUid);
+        if (uid != null) {
+            log.info("用户登录: username={}, uid={}", username, uid);
+            return uid;
+        }
+        synchronized (appendLock) {
+            uidToUsername.put(newUid, username);
+            appendUser(username, newUid);
+        }
+        log.info("新用户注册: username={}, uid={}", username, newUid);
+        return newUid;
     }
 
     /**
      * 生成UID
-     * 使用UUID的hashCode作为long类型的UID
+     * 单调递增，无锁
      */
     private Long generateUid() {
-        // 使用UUID的hashCode生成long类型的UID
-        long uid = Math.abs(UUID.randomUUID().hashCode());
-        return uid;
+        return uidGenerator.incrementAndGet();
+    }
+
+    /**
+     * 初始化UID生成器
+     * 种子取 已有最大UID 与 当前毫秒数 * 1000 中的较大值，
+     * 即使用户文件丢失也不会与重启前发放的UID重复，且保持在 2^53 以内，前端 JSON 数值不丢精度
+     */
+    private void seedUidGenerator() {
+        long maxLoaded = uidToUsername.keySet().stream().mapToLong(Long::longValue).max().orElse(0L);
+        uidGenerator.set(Math.max(maxLoaded, System.currentTimeMillis() * 1000));
     }
 
     /**
      * 加载用户数据
+     * 缓冲逐行读取（读取完即释放文件句柄，不影响之后的压缩替换），同一用户名以最后一行为准
      */
     private void loadUsers() {
-        try {
-            Path path = Paths.get(USER_FILE);
-            if (Files.exists(path)) {
-                try (BufferedReader reader = Files.newBufferedReader(path)) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        String[] parts = line.split("=");
-                        if (parts.length == 2) {
-                            String username = parts[0].trim();
-                            try {
-                                Long uid = Long.parseLong(parts[1].trim());
-                                usernameToUid.put(username, uid);
-                                uidToUsername.put(uid, username);
-                            } catch (NumberFormatException e) {
-                                log.warn("跳过无效的UID格式: {}", parts[1]);
-                            }
-                        }
-                    }
+        if (!Files.exists(userFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(userFile, StandardCharsets.UTF_8)) {
+            long lines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines++;
+                    parseLine(line);
                 }
-                log.info("加载用户数据: {} 个用户", usernameToUid.size());
             }
+            logLines.set(lines);
+            log.info("加载用户数据: {} 个用户, {} 行", usernameToUid.size(), lines);
         } catch (IOException e) {
             log.warn("加载用户数据失败，将创建新文件", e);
         }
     }
 
+    private void parseLine(String line) {
+        int separator = line.indexOf('=');
+        if (separator < 0 || separator != line.lastIndexOf('=')) {
+            return; // 与原格式一致：只接受恰好一个分隔符的行
+        }
+        String username = line.substring(0, separator).trim();
+        String uidText = line.substring(separator + 1).trim();
+        try {
+            Long uid = Long.parseLong(uidText);
+            Long previous = usernameToUid.put(username, uid);
+            if (previous != null && !previous.equals(uid)) {
+                uidToUsername.remove(previous);
+            }
+            uidToUsername.put(uid, username);
+        } catch (NumberFormatException e) {
+            log.warn("跳过无效的UID格式: {}", uidText);
+        }
+    }
+
+    private void openAppendChannel() {
+        try {
+            appendChannel = FileChannel.open(userFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("打开用户数据文件失败，新用户将不会持久化", e);
+        }
+    }
+
     /**
-     * 保存用户数据
+     * 追加一个用户，调用方需持有 appendLock
      */
-    private void saveUsers() {
+    private void appendUser(String username, Long uid) {
+        if (appendChannel == null) {
+            return;
+        }
         try {
-            Path path = Paths.get(USER_FILE);
-            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-                for (Map.Entry<String, Long> entry : usernameToUid.entrySet()) {
-                    writer.write(entry.getKey() + "=" + entry.getValue());
-                    writer.newLine();
-                }
+            ByteBuffer line = ByteBuffer.wrap((username + "=" + uid + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                appendChannel.write(line);
             }
-            log.info("保存用户数据: {} 个用户", usernameToUid.size());
+            logLines.incrementAndGet();
         } catch (IOException e) {
-            log.error("保存用户数据失败", e);
+            log.error("保存用户数据失败: username={}, uid={}", username, uid, e);
+        }
+    }
+
+    /**
+     * 重复或无效行较多时压缩用户文件：写入临时文件后原子替换
+     */
+    private void compactIfNeeded() {
+        long stale = logLines.get() - uidToUsername.size();
+        if (stale < COMPACTION_MIN_STALE_LINES || stale < uidToUsername.size() * COMPACTION_RATIO) {
+            return;
+        }
+        synchronized (appendLock) {
+            boolean reopen = appendChannel != null;
+            Path tempFile = userFile.resolveSibling(USER_FILE + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    StringBuilder content = new StringBuilder();
+                    uidToUsername.forEach((uid, username) -> content.append(username).append('=').append(uid).append('\n'));
+                    ByteBuffer bytes = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    channel.force(true);
+                }
+                closeAppendChannel();
+                Files.move(tempFile, userFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logLines.set(uidToUsername.size());
+                log.info("用户数据文件已压缩: {} 个用户, 清理 {} 行", uidToUsername.size(), stale);
+            } catch (IOException e) {
+                log.error("压缩用户数据文件失败", e);
+            } finally {
+                if (reopen && appendChannel == null) {
+                    openAppendChannel();
+                }
+            }
+        }
+    }
+
+    private void closeAppendChannel() {
+        if (appendChannel != null) {
+            try {
+                appendChannel.close();
+            } catch (IOException e) {
+                log.warn("关闭用户数据文件失败", e);
+            }
+            appendChannel = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        synchronized (appendLock) {
+            closeAppendChannel();
         }
     }
 
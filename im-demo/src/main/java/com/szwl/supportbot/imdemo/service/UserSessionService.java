@@ -1,7 +1,9 @@
 package com.szwl.supportbot.imdemo.service;
 
 import com.szwl.supportbot.imdemo.model.UserSession;
+import com.szwl.supportbot.imdemo.util.TimingWheel;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
@@ -14,12 +16,15 @@ import java.util.concurrent.TimeUnit;
 /**
  * 用户会话管理服务
  * 维护用户ID和路由信息的映射关系
+ * 集群模式下会话归属登记在 Redis，用户不在本实例时消息经 ClusterRelayService 转发到所在实例
  */
 @Slf4j
 @Service
 public class UserSessionService {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final ImRouteRegistry imRouteRegistry;
+    private final ObjectProvider<ClusterRelayService> clusterRelayService;
     
     // 用户会话存储：userId -> UserSession
     private final Map<Long, UserSession> userSessions = new ConcurrentHashMap<>();
@@ -27,14 +32,31 @@ public class UserSessionService {
     // 会话ID映射：sessionId -> userId
     private final Map<String, Long> sessionToUser = new ConcurrentHashMap<>();
     
-    // 定时任务执行器，用于心跳检查和会话清理
+    // 心跳超时时间：超过该时间未收到心跳记一次丢失
+    private static final long HEARTBEAT_TIMEOUT_MS = 60 * 1000;
+
+    // 记一次丢失后再次检查的间隔
+    private static final long HEARTBEAT_RECHECK_MS = 30 * 1000;
+
+    // 心跳时间轮：1秒一格，128格（约2分钟一圈）
+    private static final long HEARTBEAT_TICK_MS = 1000;
+    private static final int HEARTBEAT_WHEEL_SIZE = 128;
+
+    // 心跳到期时间轮，只处理到期的会话
+    private final TimingWheel<UserSession> heartbeatWheel =
+            new TimingWheel<>(HEARTBEAT_TICK_MS, HEARTBEAT_WHEEL_SIZE, System.currentTimeMillis());
+
+    // 定时任务执行器，用于推进心跳时间轮和会话清理
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
-    public UserSessionService(SimpMessagingTemplate messagingTemplate) {
+    public UserSessionService(SimpMessagingTemplate messagingTemplate, ImRouteRegistry imRouteRegistry,
+                              ObjectProvider<ClusterRelayService> clusterRelayService) {
         this.messagingTemplate = messagingTemplate;
+        this.imRouteRegistry = imRouteRegistry;
+        this.clusterRelayService = clusterRelayService;
         
-        // 启动定时心跳检查任务，每30秒检查一次
-        scheduler.scheduleAtFixedRate(this::checkHeartbeats, 30, 30, TimeUnit.SECONDS);
+        // 每个 tick 推进一次心跳时间轮
+        scheduler.scheduleAtFixedRate(this::checkHeartbeats, HEARTBEAT_TICK_MS, HEARTBEAT_TICK_MS, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -58,6 +80,10 @@ public class UserSessionService {
         UserSession userSession = new UserSession(userId, username, sessionId, clientIp, clientPort);
         userSessions.put(userId, userSession);
         sessionToUser.put(sessionId, userId);
+        heartbeatWheel.schedule(userSession, userSession.getLastHeartbeat() + HEARTBEAT_TIMEOUT_MS);
+
+        // 登记用户所在实例，Agent 回复时直接投递到本实例
+        imRouteRegistry.register(userId);
         
         log.info("用户 {} 注册成功，会话ID: {}, IP:{}:{}", userId, sessionId, clientIp, clientPort);
         return userSession;
@@ -83,6 +109,7 @@ public class UserSessionService {
         UserSession session = userSessions.remove(userId);
         if (session != null) {
             sessionToUser.remove(session.getSessionId());
+            imRouteRegistry.unregister(userId);
             log.info("用户 {} 会话已移除", userId);
         }
     }
@@ -106,6 +133,7 @@ public class UserSessionService {
         if (session != null) {
             // 记录心跳时间
             session.updateHeartbeat();
+            imRouteRegistry.renew(userId);
             log.debug("用户 {} 心跳记录", userId);
             return true;
         } else {
@@ -116,11 +144,32 @@ public class UserSessionService {
 
     /**
      * 向指定用户发送消息
+     * 用户不在本实例时，集群模式下转发到用户所在实例
      * @param userId 用户ID
      * @param message 消息内容
      * @return 是否发送成功
      */
     public boolean sendMessageToUser(Long userId, Object message) {
+        if (userSessions.containsKey(userId)) {
+            return sendMessageToLocalUser(userId, message);
+        }
+        ClusterRelayService relay = clusterRelayService.getIfAvailable();
+        if (relay != null) {
+            String owner = imRouteRegistry.lookup(userId);
+            if (owner != null && !owner.equals(imRouteRegistry.getLocalAddress())) {
+                return relay.relay(owner, userId, message);
+            }
+        }
+        return sendMessageToLocalUser(userId, message);
+    }
+
+    /**
+     * 向本实例上的用户会话发送消息
+     * @param userId 用户ID
+     * @param message 消息内容
+     * @return 是否发送成功
+     */
+    public boolean sendMessageToLocalUser(Long userId, Object message) {
         UserSession session = userSessions.get(userId);
         if (session != null) {
             try {
@@ -148,35 +197,46 @@ public class UserSessionService {
     }
 
     /**
-     * 检查心跳并清理无效会话
-     * 每30秒执行一次
+     * 推进心跳时间轮，检查到期会话并清理无效会话
+     * 心跳只更新会话的心跳时间，不调整时间轮；会话到期时若期间有过心跳，按新的到期时间重新放入时间轮
      */
     private void checkHeartbeats() {
+        try {
+            heartbeatWheel.advance(System.currentTimeMillis(), this::checkHeartbeat);
+        } catch (Exception e) {
+            log.error("心跳检查异常", e);
+        }
+    }
+
+    /**
+     * 检查单个到期会话
+     * 超过60秒未心跳记一次丢失，30秒后再次检查，连续两次丢失则清理
+     */
+    private void checkHeartbeat(UserSession session) {
+        // 会话已移除或已被新会话替换
+        if (userSessions.get(session.getUserId()) != session) {
+            return;
+        }
+
         long currentTime = System.currentTimeMillis();
-        long heartbeatTimeout = 60 * 1000; // 60秒心跳超时
-        
-        userSessions.entrySet().removeIf(entry -> {
-            UserSession session = entry.getValue();
-            long timeSinceLastHeartbeat = currentTime - session.getLastHeartbeat();
-            
-            if (timeSinceLastHeartbeat > heartbeatTimeout) {
-                // 增加丢失心跳次数
-                session.incrementMissedHeartbeats();
-                
-                if (session.shouldBeCleaned()) {
-                    log.info("清理无效会话: userId={}, IP:{}:{}, 丢失心跳次数: {}", 
-                             session.getUserId(), session.getClientIp(), session.getClientPort(), 
-                             session.getMissedHeartbeats());
-                    sessionToUser.remove(session.getSessionId());
-                    return true;
-                } else {
-                    log.warn("用户 {} 心跳丢失，当前丢失次数: {}", 
-                             session.getUserId(), session.getMissedHeartbeats());
-                }
+        long deadline = session.getLastHeartbeat() + HEARTBEAT_TIMEOUT_MS;
+        if (currentTime <= deadline) {
+            heartbeatWheel.schedule(session, deadline);
+            return;
+        }
+
+        // 增加丢失心跳次数
+        int missed = session.incrementMissedHeartbeats();
+        if (session.shouldBeCleaned()) {
+            if (userSessions.remove(session.getUserId(), session)) {
+                log.info("清理无效会话: userId={}, IP:{}:{}, 丢失心跳次数: {}",
+                         session.getUserId(), session.getClientIp(), session.getClientPort(), missed);
+                sessionToUser.remove(session.getSessionId());
+                imRouteRegistry.unregister(session.getUserId());
             }
-            return false;
-        });
+        } else {
+            log.warn("用户 {} 心跳丢失，当前丢失次数: {}", session.getUserId(), missed);
+            heartbeatWheel.schedule(session, currentTime + HEARTBEAT_RECHECK_MS);
+        }
     }
-    
-
 }
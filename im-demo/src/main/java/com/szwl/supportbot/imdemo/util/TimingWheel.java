@@ -0,0 +1,96 @@
+package com.szwl.supportbot.imdemo.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮
+ *
+ * 每个槽位对应一个 tick，元素按到期 tick 放入对应槽位；推进时只处理到期槽位中的元素，
+ * 开销与到期元素数量成正比，与元素总数无关。超过一圈的元素在经过槽位时放回，直到所在圈到期。
+ *
+ * 调度可以并发进行，推进（advance）需由单线程调用。
+ *
+ * @param <T> 元素类型
+ */
+public class TimingWheel<T> {
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final Queue<Entry<T>>[] buckets;
+
+    /**
+     * 已推进到的 tick，新元素至少放到下一个 tick
+     */
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    /**
+     * 在指定时间点到期
+     *
+     * @param item 元素
+     * @param deadlineMs 到期时间（epoch 毫秒）
+     */
+    public void schedule(T item, long deadlineMs) {
+        long tick = Math.max(deadlineMs / tickMs, currentTick + 1);
+        buckets[(int) (tick & mask)].add(new Entry<>(item, tick));
+    }
+
+    /**
+     * 推进到指定时间，依次交出已到期的元素
+     *
+     * @param nowMs 当前时间（epoch 毫秒）
+     * @param onExpire 到期回调，回调中可以重新调度
+     * @return 到期元素数量
+     */
+    public int advance(long nowMs, Consumer<T> onExpire) {
+        long targetTick = nowMs / tickMs;
+        int expired = 0;
+        while (currentTick < targetTick) {
+            long tick = currentTick + 1;
+            // 先推进 tick，处理期间（含回调中）新调度的元素都会落到后续 tick
+            currentTick = tick;
+            Queue<Entry<T>> bucket = buckets[(int) (tick & mask)];
+            // 只处理本轮开始时已在槽位中的元素，放回的未到期元素不再重复检查
+            for (int pending = bucket.size(); pending > 0; pending--) {
+                Entry<T> entry = bucket.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.deadlineTick() > tick) {
+                    bucket.add(entry);
+                } else {
+                    expired++;
+                    onExpire.accept(entry.item());
+                }
+            }
+        }
+        return expired;
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    public int getWheelSize() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.szwl.supportbot.imdemo.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.szwl.supportbot.common.im.DeliveryFrame;
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.imdemo.model.AiResponseRequest;
+import com.szwl.supportbot.imdemo.service.AiResponseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI回复投递通道处理器
+ * Agent 通过 /ws/ai-delivery 长连接批量投递回复，每帧处理完成后按条目返回 ack
+ */
+@Slf4j
+@Component
+public class AiDeliveryHandler extends TextWebSocketHandler {
+
+    private static final int SEND_TIME_LIMIT_MS = 5000;
+    private static final int SEND_BUFFER_SIZE_LIMIT = 1024 * 1024;
+
+    private final AiResponseService aiResponseService;
+    private final ObjectMapper objectMapper;
+
+    // 会话ID -> 线程安全的会话包装
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    // 会话ID -> 未接收完整的分片消息
+    private final Map<String, StringBuilder> partialFrames = new ConcurrentHashMap<>();
+
+    public AiDeliveryHandler(AiResponseService aiResponseService, ObjectMapper objectMapper) {
+        this.aiResponseService = aiResponseService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        sessions.put(session.getId(),
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_SIZE_LIMIT));
+        log.info("AI回复投递通道建立: sessionId={}, remote={}", session.getId(), session.getRemoteAddress());
+    }
+
+    /**
+     * 批量回复可能超过容器的单帧缓冲，按分片接收后再解析
+     */
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        String payload;
+        if (message.isLast()) {
+            StringBuilder partial = partialFrames.remove(session.getId());
+            payload = partial == null ? message.getPayload() : partial.append(message.getPayload()).toString();
+        } else {
+            partialFrames.computeIfAbsent(session.getId(), id -> new StringBuilder()).append(message.getPayload());
+            return;
+        }
+
+        DeliveryFrame frame = objectMapper.readValue(payload, DeliveryFrame.class);
+        if (!DeliveryFrame.TYPE_DELIVER.equals(frame.getType())) {
+            log.warn("忽略未知类型的投递帧: type={}", frame.getType());
+            return;
+        }
+
+        List<DeliveryFrame.Result> results = new ArrayList<>(frame.getItems().size());
+        for (DeliveryFrame.Item item : frame.getItems()) {
+            results.add(new DeliveryFrame.Result(item.getId(), deliver(item)));
+        }
+        log.debug("投递帧处理完成: sessionId={}, size={}", session.getId(), results.size());
+
+        WebSocketSession target = sessions.getOrDefault(session.getId(), session);
+        target.sendMessage(new TextMessage(objectMapper.writeValueAsString(DeliveryFrame.ack(results))));
+    }
+
+    private boolean deliver(DeliveryFrame.Item item) {
+        try (TraceContext.Scope ignored = TraceContext.attach(item.trace())) {
+            return aiResponseService.sendAiResponse(
+                    new AiResponseRequest(Long.valueOf(item.getUserId()), item.getContent(), item.getSource()));
+        } catch (NumberFormatException e) {
+            log.warn("投递帧中的用户ID无效: {}", item.getUserId());
+            return false;
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.warn("AI回复投递通道异常: sessionId={}, error={}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        partialFrames.remove(session.getId());
+        log.info("AI回复投递通道关闭: sessionId={}, status={}", session.getId(), status);
+    }
+}
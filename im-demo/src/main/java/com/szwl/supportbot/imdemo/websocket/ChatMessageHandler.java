@@ -2,6 +2,7 @@ package com.szwl.supportbot.imdemo.websocket;
 
 import com.szwl.supportbot.imdemo.model.ChatMessage;
 import com.szwl.supportbot.imdemo.model.ChatResponse;
+import com.szwl.supportbot.imdemo.model.UserSession;
 import com.szwl.supportbot.imdemo.service.ChatService;
 import com.szwl.supportbot.imdemo.service.UserSessionService;
 import com.szwl.supportbot.imdemo.service.UserService;
@@ -33,53 +34,42 @@ public class ChatMessageHandler {
 
     /**
      * 处理用户聊天消息
+     * 只做会话校验和提交，分类调用在独立线程池中执行，"已收到"响应立即返回
      */
     @MessageMapping("/chat")
     public void handleChatMessage(@Payload ChatMessage message, SimpMessageHeaderAccessor headerAccessor) {
         String sessionId = headerAccessor.getSessionId();
         Long userId = message.getSender();
         
-        log.info("=== 收到聊天消息 ===");
-        log.info("消息类型: {}", message.getType());
-        log.info("发送者: {}", message.getSender());
-        log.info("消息内容: {}", message.getContent());
-        log.info("时间戳: {}", message.getTimestamp());
-        log.info("会话ID: {}", sessionId);
-        log.info("连接头信息: {}", headerAccessor.toNativeHeaderMap());
+        log.info("收到聊天消息: type={}, sender={}, sessionId={}, messageId={}",
+                 message.getType(), userId, sessionId, message.getMessageId());
+        log.debug("消息内容: {}, 时间戳: {}", message.getContent(), message.getTimestamp());
         
-        // 获取客户端连接信息
-        String clientIp = getClientIp(headerAccessor);
-        Integer clientPort = getClientPort(headerAccessor);
-        
-        // 获取真实用户名
-        String username = userService.getUsername(userId);
-        if (username == null) {
-            log.warn("未找到用户ID对应的用户名: userId={}", userId);
-            username = "用户" + userId; // 使用默认用户名
-        }
-        
-        // 建立用户会话
-        userSessionService.registerUser(userId, username, sessionId, clientIp, clientPort);
-        log.info("用户会话已建立: userId={}, sessionId={}, username={}", userId, sessionId, username);
-        
-        // 转发给聊天服务处理
-        boolean success = chatService.handleUserMessage(message, sessionId);
-        
-        // 根据处理结果发送响应到用户队列
-        ChatResponse response;
-        if (success) {
-            response = ChatResponse.success(message.getMessageId(), "消息已收到，正在处理中...");
-            log.info("消息处理成功: userId={}, messageId={}", userId, message.getMessageId());
-        } else {
-            response = ChatResponse.failure(message.getMessageId(), "消息处理失败，请重试");
-            log.error("消息处理失败: userId={}, messageId={}", userId, message.getMessageId());
+        // 会话通常已在连接建立时注册，仅在缺失或会话ID变化时补注册
+        UserSession session = userSessionService.getUserSession(userId);
+        if (session == null || !sessionId.equals(session.getSessionId())) {
+            String username = userService.getUsername(userId);
+            if (username == null) {
+                log.warn("未找到用户ID对应的用户名: userId={}", userId);
+                username = "用户" + userId; // 使用默认用户名
+            }
+            userSessionService.registerUser(userId, username, sessionId, getClientIp(headerAccessor), getClientPort(headerAccessor));
+            log.info("用户会话已补注册: userId={}, sessionId={}, username={}", userId, sessionId, username);
         }
         
-        // 通过WebSocket发送响应到用户队列
-        boolean sent = userSessionService.sendMessageToUser(userId, response);
-        log.info("响应消息发送结果: userId={}, messageId={}, sent={}", userId, message.getMessageId(), sent);
-        
-        log.info("=== 聊天消息处理完成 ===");
+        // 提交给聊天服务异步处理，提交结果回调中立即发送响应（先于消息处理开始）
+        chatService.submitUserMessage(message, sessionId, admission -> {
+            ChatResponse response = switch (admission) {
+                case ACCEPTED -> ChatResponse.success(message.getMessageId(), "消息已收到，正在处理中...");
+                case USER_BUSY -> ChatResponse.failure(message.getMessageId(), "上一条消息仍在处理中，请稍后再试");
+                case OVERLOADED -> ChatResponse.failure(message.getMessageId(), "系统繁忙，请稍后重试");
+            };
+
+            // 通过WebSocket发送响应到用户队列
+            boolean sent = userSessionService.sendMessageToUser(userId, response);
+            log.info("响应消息发送结果: userId={}, messageId={}, admission={}, sent={}",
+                     userId, message.getMessageId(), admission, sent);
+        });
     }
     
     /**
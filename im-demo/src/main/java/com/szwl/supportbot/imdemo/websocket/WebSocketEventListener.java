@@ -1,19 +1,27 @@
 package com.szwl.supportbot.imdemo.websocket;
 
+import com.szwl.supportbot.imdemo.service.AiResponseService;
+import com.szwl.supportbot.imdemo.service.OfflineOutboxService;
+import com.szwl.supportbot.imdemo.service.UserService;
 import com.szwl.supportbot.imdemo.service.UserSessionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
 import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.util.Map;
 
 /**
  * WebSocket 连接事件监听器
- * 处理连接和断开事件
+ * 处理连接和断开事件，用户会话在连接建立时注册
  */
 @Slf4j
 @Component
@@ -22,6 +30,15 @@ public class WebSocketEventListener {
     @Autowired
     private UserSessionService userSessionService;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AiResponseService aiResponseService;
+
+    @Autowired
+    private OfflineOutboxService offlineOutboxService;
+
     /**
      * 处理WebSocket连接事件
      */
@@ -31,8 +48,45 @@ public class WebSocketEventListener {
         String sessionId = headerAccessor.getSessionId();
         
         log.info("WebSocket连接建立: sessionId={}", sessionId);
-        
-        // 可以在这里添加连接后的初始化逻辑
+
+        // 握手时以 uid 参数作为 Principal 名称（见 WebSocketConfig）
+        Principal user = event.getUser();
+        Long userId = parseUserId(user != null ? user.getName() : null);
+        if (userId == null) {
+            log.warn("连接未携带有效用户ID，暂不注册会话: sessionId={}", sessionId);
+            return;
+        }
+
+        // 获取真实用户名
+        String username = userService.getUsername(userId);
+        if (username == null) {
+            log.warn("未找到用户ID对应的用户名: userId={}", userId);
+            username = "用户" + userId; // 使用默认用户名
+        }
+
+        // 建立用户会话
+        InetSocketAddress remoteAddress = getRemoteAddress(headerAccessor);
+        String clientIp = remoteAddress != null ? remoteAddress.getAddress().getHostAddress() : "127.0.0.1";
+        Integer clientPort = remoteAddress != null && remoteAddress.getPort() > 0 ? remoteAddress.getPort() : null;
+        userSessionService.registerUser(userId, username, sessionId, clientIp, clientPort);
+        log.info("用户会话已建立: userId={}, sessionId={}, username={}", userId, sessionId, username);
+    }
+
+    /**
+     * 处理订阅事件
+     * 用户订阅个人消息队列后补发离线期间暂存的消息
+     */
+    @EventListener
+    public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (!"/user/queue/messages".equals(headerAccessor.getDestination())) {
+            return;
+        }
+        Principal user = event.getUser();
+        Long userId = parseUserId(user != null ? user.getName() : null);
+        if (userId != null) {
+            offlineOutboxService.scheduleReplay(() -> aiResponseService.replayPending(userId));
+        }
     }
 
     /**
@@ -48,4 +102,33 @@ public class WebSocketEventListener {
         // 清理用户会话
         userSessionService.removeUserBySessionId(sessionId);
     }
+
+    private Long parseUserId(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(name);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从原始 CONNECT 消息的会话属性中获取客户端地址
+     */
+    private InetSocketAddress getRemoteAddress(StompHeaderAccessor headerAccessor) {
+        try {
+            Object connectMessage = headerAccessor.getHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+            if (connectMessage instanceof Message<?> message) {
+                Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+                if (attributes != null && attributes.get("remoteAddress") instanceof InetSocketAddress address) {
+                    return address;
+                }
+            }
+        } catch (Exception e) {
+            log.debug("无法获取客户端地址，使用默认值", e);
+        }
+        return null;
+    }
 }
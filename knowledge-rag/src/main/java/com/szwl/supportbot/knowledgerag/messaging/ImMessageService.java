@@ -1,9 +1,13 @@
 package com.szwl.supportbot.knowledgerag.messaging;
 
+import com.szwl.supportbot.common.im.ImDeliveryChannel;
+import com.szwl.supportbot.common.im.ImInstanceRouter;
+import com.szwl.supportbot.common.im.ImInstanceRouter.ImInstance;
+import com.szwl.supportbot.common.trace.TraceRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -12,26 +16,33 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * IM消息服务
  * 通过Nacos服务发现获取IM服务的路由信息，然后调用HTTP接口
+ * 实例选择由 ImInstanceRouter 完成：本地实例快照 + 用户亲和路由 + 轮询
+ * 回复优先通过 ImDeliveryChannel 长连接投递，通道不可用时回退到HTTP接口
+ * 当前线程的链路上下文随回复传递（投递帧字段 / HTTP 请求头），im-demo 据此记录端到端耗时
  */
 @Slf4j
 @Service
 public class ImMessageService {
 
-    @Value("${im.service.name:im-demo}")
-    private String imServiceName;
-
-    private final DiscoveryClient discoveryClient;
+    private final ImInstanceRouter imInstanceRouter;
+    private final ImDeliveryChannel imDeliveryChannel;
     private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
 
-    public ImMessageService(DiscoveryClient discoveryClient, RestTemplate restTemplate) {
-        this.discoveryClient = discoveryClient;
+    public ImMessageService(ImInstanceRouter imInstanceRouter, ObjectProvider<ImDeliveryChannel> imDeliveryChannel,
+                            RestTemplate restTemplate, MeterRegistry meterRegistry, TraceRecorder traceRecorder) {
+        this.imInstanceRouter = imInstanceRouter;
+        this.imDeliveryChannel = imDeliveryChannel.getIfAvailable();
         this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+        this.traceRecorder = traceRecorder;
     }
 
     /**
@@ -44,21 +55,21 @@ public class ImMessageService {
         try {
             log.info("准备发送AI回复: userId={}, content={}", userId, content);
             
-            // 1. 通过Nacos服务发现获取IM服务实例
-            ServiceInstance imInstance = discoverImService();
+            // 1. 选择用户所在的IM服务实例
+            ImInstance imInstance = discoverImService(userId);
             if (imInstance == null) {
-                log.error("未找到IM服务实例: {}", imServiceName);
+                log.error("未找到IM服务实例: {}", imInstanceRouter.getServiceName());
                 return false;
             }
 
             // 2. 获取服务实例的网络地址信息
-            String host = imInstance.getHost();
-            int port = imInstance.getPort(); // HTTP端口
+            String host = imInstance.host();
+            int port = imInstance.port(); // HTTP端口
             
-            log.info("发现IM服务实例: {}:{} (HTTP)", host, port);
+            log.info("发现IM服务实例: {}:{}", host, port);
             
-            // 3. 调用HTTP服务发送消息
-            boolean success = callHttpService(host, port, userId, content);
+            // 3. 优先通过长连接投递，通道不可用时调用HTTP服务发送消息
+            boolean success = deliver(imInstance, userId, content);
             
             if (success) {
                 log.info("AI回复发送成功: userId={}, target={}:{}", userId, host, port);
@@ -75,35 +86,61 @@ public class ImMessageService {
     }
 
     /**
-     * 通过Nacos服务发现获取IM服务实例
+     * 选择IM服务实例
+     * 优先使用用户的亲和实例，否则在本地实例快照中轮询
+     * @param userId 用户ID
      * @return 服务实例，如果未找到返回null
      */
-    private ServiceInstance discoverImService() {
+    private ImInstance discoverImService(String userId) {
         try {
-            log.debug("开始服务发现，服务名: {}", imServiceName);
-            
-            // 调用Nacos客户端接口获取服务实例列表
-            List<ServiceInstance> instances = discoveryClient.getInstances(imServiceName);
-            
-            if (instances.isEmpty()) {
-                log.warn("服务 {} 没有可用实例", imServiceName);
+            ImInstance instance = imInstanceRouter.route(userId);
+            if (instance == null) {
+                log.warn("服务 {} 没有可用实例", imInstanceRouter.getServiceName());
                 return null;
             }
-            
-            // 选择第一个可用实例（实际项目中可以实现负载均衡策略）
-            ServiceInstance instance = instances.get(0);
-            
-            log.debug("服务发现成功: {} -> {}:{}", imServiceName, 
-                     instance.getHost(), instance.getPort());
-            
+
+            log.debug("服务发现成功: {} -> {}:{}", imInstanceRouter.getServiceName(),
+                     instance.host(), instance.port());
+
             return instance;
-            
+
         } catch (Exception e) {
-            log.error("服务发现异常: {}", imServiceName, e);
+            log.error("服务发现异常: {}", imInstanceRouter.getServiceName(), e);
             return null;
         }
     }
 
+    /**
+     * 投递回复：长连接可用时走长连接，否则回退到HTTP
+     */
+    private boolean deliver(ImInstance imInstance, String userId, String content) {
+        long start = System.nanoTime();
+        if (imDeliveryChannel != null) {
+            Boolean delivered = imDeliveryChannel.deliver(imInstance, userId, content, "knowledge-rag");
+            if (delivered != null) {
+                recordPush("websocket", delivered, start);
+                return delivered;
+            }
+            log.debug("投递长连接不可用，回退到HTTP: target={}", imInstance.address());
+        }
+        boolean success = callHttpService(imInstance.host(), imInstance.port(), userId, content);
+        recordPush("http", success, start);
+        return success;
+    }
+
+    /**
+     * 记录回复投递耗时（按投递方式、结果区分）
+     */
+    private void recordPush(String channel, boolean success, long startNanos) {
+        traceRecorder.recordSince("im.push", startNanos);
+        Timer.builder("supportbot.im.push")
+                .description("AI回复投递到IM服务的耗时")
+                .tag("channel", channel)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * 调用HTTP服务发送消息
      * @param host 服务主机地址
@@ -117,7 +154,8 @@ public class ImMessageService {
             log.debug("开始调用HTTP服务: {}:{}, userId={}", host, port, userId);
             
             // 1. 构建请求URL
-            String url = String.format("http://%s:%d/api/ai-response/send", host, port);
+            // 使用 URI 模板，请求指标按模板聚合而不是按实例地址展开
+            String url = "http://{host}:{port}/api/ai-response/send";
             
             // 2. 构建请求头
             HttpHeaders headers = new HttpHeaders();
@@ -132,7 +170,7 @@ public class ImMessageService {
             HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
             
             // 4. 发送HTTP请求
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
+            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class, host, port);
             
             // 5. 处理响应
             if (response.getStatusCode().is2xxSuccessful()) {
@@ -161,11 +199,7 @@ public class ImMessageService {
      * @return 服务状态信息
      */
     public String getServiceStatus() {
-        try {
-            List<ServiceInstance> instances = discoveryClient.getInstances(imServiceName);
-            return String.format("服务名: %s, 可用实例数: %d", imServiceName, instances.size());
-        } catch (Exception e) {
-            return String.format("服务名: %s, 状态检查失败: %s", imServiceName, e.getMessage());
-        }
+        return String.format("服务名: %s, 可用实例数: %d",
+                imInstanceRouter.getServiceName(), imInstanceRouter.getInstances().size());
     }
 }
@@ -30,6 +30,19 @@ public class KnowledgeRagService {
     @Autowired
     private DynamicConfigService dynamicConfigService;
 
+    // 无状态，首次使用时构建一次；系统提示词按请求传入
+    private volatile ChatClient chatClient;
+
+    // 检索顾问按检索参数缓存，Nacos 修改 topK / similarityThreshold 时重建
+    private volatile RetrievalAdvisor retrievalAdvisor;
+
+    /**
+     * 检索参数与对应的检索顾问
+     * QuestionAnswerAdvisor 以每次请求的用户问题作为检索词，可在请求之间复用
+     */
+    private record RetrievalAdvisor(int topK, double similarityThreshold, QuestionAnswerAdvisor advisor) {
+    }
+
     /**
      * 基于知识库回答问题
      * @param question 用户问题
@@ -47,31 +60,17 @@ public class KnowledgeRagService {
             RagConfig.RetrievalConfig retrievalConfig = dynamicConfigService.getRetrievalConfig();
             String systemPromptTemplate = dynamicConfigService.getSystemPromptTemplate();
 
-            // 构建搜索请求
-            SearchRequest searchRequest = SearchRequest.builder()
-                    .query(question)
-                    .topK(retrievalConfig.getTopK())
-                    .similarityThreshold(retrievalConfig.getSimilarityThreshold())
-                    .build();
-
-            log.info("构建搜索请求: topK={}, similarityThreshold={}", 
+            log.info("检索参数: topK={}, similarityThreshold={}", 
                     retrievalConfig.getTopK(), retrievalConfig.getSimilarityThreshold());
 
             // 构建系统提示词，包含历史会话
             String systemPrompt = buildSystemPromptWithHistory(systemPromptTemplate, conversationHistory);
 
             // 使用QuestionAnswerAdvisor进行RAG增强 - 参考Alibaba示例工程
-            ChatClient chatClient = ChatClient.builder(chatModel)
-                    .defaultSystem(systemPrompt)
-                    .build();
-            
-            String answer = chatClient.prompt()
+            String answer = chatClient().prompt()
+                    .system(systemPrompt)
                     .user(question)
-                    .advisors(QuestionAnswerAdvisor
-                            .builder(vectorStore)
-                            .searchRequest(searchRequest)
-                            .build()
-                    )
+                    .advisors(retrievalAdvisor(retrievalConfig))
                     .call()
                     .content();
 
@@ -85,6 +84,37 @@ public class KnowledgeRagService {
         }
     }
 
+    private ChatClient chatClient() {
+        ChatClient client = chatClient;
+        if (client == null) {
+            client = ChatClient.builder(chatModel).build();
+            chatClient = client;
+        }
+        return client;
+    }
+
+    /**
+     * 获取检索顾问，检索参数未变化时复用
+     */
+    private QuestionAnswerAdvisor retrievalAdvisor(RagConfig.RetrievalConfig retrievalConfig) {
+        RetrievalAdvisor current = retrievalAdvisor;
+        if (current != null && current.topK() == retrievalConfig.getTopK()
+                && current.similarityThreshold() == retrievalConfig.getSimilarityThreshold()) {
+            return current.advisor();
+        }
+        SearchRequest searchRequest = SearchRequest.builder()
+                .topK(retrievalConfig.getTopK())
+                .similarityThreshold(retrievalConfig.getSimilarityThreshold())
+                .build();
+        QuestionAnswerAdvisor advisor = QuestionAnswerAdvisor.builder(vectorStore)
+                .searchRequest(searchRequest)
+                .build();
+        retrievalAdvisor = new RetrievalAdvisor(retrievalConfig.getTopK(), retrievalConfig.getSimilarityThreshold(), advisor);
+        log.info("构建检索顾问: topK={}, similarityThreshold={}",
+                retrievalConfig.getTopK(), retrievalConfig.getSimilarityThreshold());
+        return advisor;
+    }
+
     /**
      * 构建包含历史会话的系统提示词
      * @param systemPromptTemplate 系统提示词模板
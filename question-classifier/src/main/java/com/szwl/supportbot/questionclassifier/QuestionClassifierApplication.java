@@ -5,6 +5,9 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.scheduling.annotation.EnableAsync;
 
+/**
+ * 大模型限流 / 对冲、链路追踪由 common 模块自动配置
+ */
 @SpringBootApplication
 @EnableDiscoveryClient
 @EnableAsync
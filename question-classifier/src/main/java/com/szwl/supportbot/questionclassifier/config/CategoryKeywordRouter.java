@@ -0,0 +1,248 @@
+package com.szwl.supportbot.questionclassifier.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分类关键词路由器
+ * 将"关键词 -> 主题"映射编译为 Aho-Corasick 自动机，一次扫描分类名称即可找出所有命中的关键词。
+ *
+ * 匹配规则（确定性）：
+ * 1. 分类名称与某个关键词完全相同时直接命中（哈希快速路径）
+ * 2. 否则取命中关键词中最长的一个；长度相同时按配置声明顺序，先声明者优先
+ * 3. 无命中返回 null，由调用方回退到默认主题
+ *
+ * 路由器构建后不可变，配置刷新时整体重建；分类名称的路由结果做有界缓存
+ */
+public final class CategoryKeywordRouter {
+
+    /**
+     * 路由结果缓存上限，超过后整体清空（分类名称集合通常很小，只防止异常输入撑爆内存）
+     */
+    private static final int MEMO_LIMIT = 1024;
+
+    /**
+     * 未命中时写入缓存的占位值
+     */
+    private static final String NO_MATCH = "";
+
+    private final Map<String, String> exactMatches;
+    private final String[] keywords;
+    private final String[] topics;
+
+    // 扁平化后的自动机：每个状态的出边按字符排序，匹配时二分查找
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    /**
+     * 以该状态结尾的最佳关键词下标（已沿失败链合并），-1 表示无
+     */
+    private final int[] best;
+
+    private final Map<String, String> memo = new ConcurrentHashMap<>();
+
+    private CategoryKeywordRouter(Map<String, String> exactMatches, String[] keywords, String[] topics,
+                                  char[][] edgeChars, int[][] edgeTargets, int[] fail, int[] best) {
+        this.exactMatches = exactMatches;
+        this.keywords = keywords;
+        this.topics = topics;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.best = best;
+    }
+
+    /**
+     * 编译映射关系，映射的迭代顺序即关键词优先级
+     */
+    public static CategoryKeywordRouter compile(Map<String, String> mappings) {
+        List<String> keywordList = new ArrayList<>();
+        List<String> topicList = new ArrayList<>();
+        Map<String, String> exactMatches = new HashMap<>();
+        if (mappings != null) {
+            for (Map.Entry<String, String> entry : mappings.entrySet()) {
+                String keyword = entry.getKey() != null ? entry.getKey().trim() : "";
+                // 空关键词会匹配任何分类，直接忽略；重复关键词保留先声明者
+                if (keyword.isEmpty() || exactMatches.containsKey(keyword)) {
+                    continue;
+                }
+                exactMatches.put(keyword, entry.getValue());
+                keywordList.add(keyword);
+                topicList.add(entry.getValue());
+            }
+        }
+        String[] keywords = keywordList.toArray(new String[0]);
+        String[] topics = topicList.toArray(new String[0]);
+
+        // 1. 构建字典树
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> output = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        output.add(-1);
+        for (int k = 0; k < keywords.length; k++) {
+            int state = 0;
+            for (char c : keywords[k].toCharArray()) {
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    output.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            output.set(state, k);
+        }
+
+        // 2. 广度优先计算失败指针，并沿失败链合并最佳输出
+        int size = trie.size();
+        int[] fail = new int[size];
+        int[] best = new int[size];
+        for (int i = 0; i < size; i++) {
+            best[i] = output.get(i);
+        }
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int child : trie.get(0).values()) {
+            fail[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                int f = fail[state];
+                while (f != 0 && !trie.get(f).containsKey(c)) {
+                    f = fail[f];
+                }
+                Integer target = trie.get(f).get(c);
+                fail[child] = target != null && target != child ? target : 0;
+                best[child] = better(keywords, best[child], best[fail[child]]);
+                queue[tail++] = child;
+            }
+        }
+
+        // 3. 扁平化为数组
+        char[][] edgeChars = new char[size][];
+        int[][] edgeTargets = new int[size][];
+        for (int i = 0; i < size; i++) {
+            TreeMap<Character, Integer> edges = trie.get(i);
+            char[] chars = new char[edges.size()];
+            int[] targets = new int[edges.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                chars[j] = edge.getKey();
+                targets[j] = edge.getValue();
+                j++;
+            }
+            edgeChars[i] = chars;
+            edgeTargets[i] = targets;
+        }
+
+        return new CategoryKeywordRouter(exactMatches, keywords, topics, edgeChars, edgeTargets, fail, best);
+    }
+
+    /**
+     * 路由分类名称
+     *
+     * @param category 已去除首尾空白的分类名称
+     * @return 命中的主题，未命中返回 null
+     */
+    public String route(String category) {
+        String exact = exactMatches.get(category);
+        if (exact != null) {
+            return exact;
+        }
+
+        String cached = memo.get(category);
+        if (cached != null) {
+            return cached == NO_MATCH ? null : cached;
+        }
+
+        int matched = match(category);
+        String topic = matched >= 0 ? topics[matched] : null;
+        if (memo.size() >= MEMO_LIMIT) {
+            memo.clear();
+        }
+        memo.put(category, topic != null ? topic : NO_MATCH);
+        return topic;
+    }
+
+    /**
+     * 返回命中的关键词，便于日志排查；未命中返回 null
+     */
+    public String matchedKeyword(String category) {
+        if (exactMatches.containsKey(category)) {
+            return category;
+        }
+        int matched = match(category);
+        return matched >= 0 ? keywords[matched] : null;
+    }
+
+    /**
+     * 关键词数量
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    /**
+     * 按优先级顺序返回关键词映射（只读副本）
+     */
+    public Map<String, String> mappings() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < keywords.length; i++) {
+            result.put(keywords[i], topics[i]);
+        }
+        return result;
+    }
+
+    private int match(String text) {
+        int state = 0;
+        int found = -1;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            int next = next(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = next(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            if (best[state] >= 0) {
+                found = better(keywords, found, best[state]);
+            }
+        }
+        return found;
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index >= 0 ? edgeTargets[state][index] : -1;
+    }
+
+    /**
+     * 比较两个候选关键词：更长者优先，等长时下标小（先声明）者优先
+     */
+    private static int better(String[] keywords, int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        int lengthA = keywords[a].length();
+        int lengthB = keywords[b].length();
+        if (lengthA != lengthB) {
+            return lengthA > lengthB ? a : b;
+        }
+        return Math.min(a, b);
+    }
+}
@@ -1,13 +1,18 @@
 package com.szwl.supportbot.questionclassifier.config;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -25,14 +30,32 @@ public class QuestionCategoryConfig {
     /**
      * 分类映射配置
      * key: 分类关键词，value: 对应的主题
+     * 使用 LinkedHashMap 保留配置声明顺序，等长关键词按声明顺序决定优先级
      */
-    private Map<String, String> categoryMappings = new HashMap<>();
+    private Map<String, String> categoryMappings = new LinkedHashMap<>();
 
     /**
      * 默认主题
      */
     private String defaultTopic = "supportbot.general.chat";
 
+    /**
+     * 由 categoryMappings 编译得到的关键词路由器，映射变更时置空并在下次使用时重建
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile CategoryKeywordRouter keywordRouter;
+
+    /**
+     * 设置分类映射，同时使已编译的路由器失效
+     */
+    public void setCategoryMappings(Map<String, String> categoryMappings) {
+        this.categoryMappings = categoryMappings != null ? categoryMappings : new LinkedHashMap<>();
+        this.keywordRouter = null;
+    }
+
     /**
      * 配置初始化后的回调
      */
@@ -64,6 +87,8 @@ public class QuestionCategoryConfig {
         }
         
         logConfigInfo();
+        keywordRouter = CategoryKeywordRouter.compile(categoryMappings);
+        log.info("关键词路由器编译完成，关键词数量: {}", keywordRouter.size());
         log.info("=== QuestionCategoryConfig 初始化完成 ===");
     }
 
@@ -73,12 +98,13 @@ public class QuestionCategoryConfig {
      */
     public void refresh() {
         log.info("问题分类配置已刷新，当前映射数量: {}", categoryMappings.size());
+        keywordRouter = CategoryKeywordRouter.compile(categoryMappings);
         logConfigInfo();
     }
 
     /**
      * 根据分类名称获取对应的主题
-     * 通过配置的映射关系动态判断，支持热更新
+     * 通过编译后的关键词自动机匹配：完全相同优先，其次最长关键词，等长按声明顺序
      * 
      * @param category 分类名称
      * @return 对应的主题
@@ -90,18 +116,10 @@ public class QuestionCategoryConfig {
         }
 
         String cleanCategory = category.trim();
-        log.debug("查找分类 '{}' 对应的主题", cleanCategory);
-        
-        // 遍历配置的映射关系，查找匹配的分类
-        for (Map.Entry<String, String> entry : categoryMappings.entrySet()) {
-            String keyword = entry.getKey();
-            String topic = entry.getValue();
-            
-            // 如果分类名称包含配置的关键词，返回对应的主题
-            if (cleanCategory.contains(keyword)) {
-                log.debug("分类 '{}' 匹配关键词 '{}'，路由到主题: {}", cleanCategory, keyword, topic);
-                return topic;
-            }
+        String topic = getKeywordRouter().route(cleanCategory);
+        if (topic != null) {
+            log.debug("分类 '{}' 路由到主题: {}", cleanCategory, topic);
+            return topic;
         }
 
         // 未找到匹配的分类，返回默认主题
@@ -109,13 +127,25 @@ public class QuestionCategoryConfig {
         return defaultTopic;
     }
 
+    /**
+     * 获取关键词路由器，映射变更后首次使用时重建
+     */
+    private CategoryKeywordRouter getKeywordRouter() {
+        CategoryKeywordRouter router = keywordRouter;
+        if (router == null) {
+            router = CategoryKeywordRouter.compile(categoryMappings);
+            keywordRouter = router;
+        }
+        return router;
+    }
+
     /**
      * 获取所有分类映射（只读）
      * 
      * @return 分类映射Map的副本
      */
     public Map<String, String> getAllCategoryMappings() {
-        return new HashMap<>(categoryMappings);
+        return new LinkedHashMap<>(categoryMappings);
     }
 
     /**
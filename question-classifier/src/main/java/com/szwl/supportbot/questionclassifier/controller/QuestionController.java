@@ -1,8 +1,11 @@
 package com.szwl.supportbot.questionclassifier.controller;
 
 
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
 import com.szwl.supportbot.questionclassifier.entity.ClassificationResult;
 import com.szwl.supportbot.questionclassifier.service.QuestionClassifierService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
@@ -17,19 +20,23 @@ import java.util.Map;
 public class QuestionController {
 
     private final QuestionClassifierService questionClassifierService;
+    private final TraceRecorder traceRecorder;
 
-    public QuestionController(QuestionClassifierService questionClassifierService) {
+    public QuestionController(QuestionClassifierService questionClassifierService, TraceRecorder traceRecorder) {
         this.questionClassifierService = questionClassifierService;
+        this.traceRecorder = traceRecorder;
     }
 
 
     /**
      * 问题分类（同步处理，返回分类状态）
+     * 请求头中的链路上下文（im-demo 传入）在处理期间设置到当前线程，随任务消息继续传递
      */
     @GetMapping("/classify")
     public ResponseEntity<Map<String, Object>> classifyQuestion(
             @RequestParam String question,
-            @RequestParam String uid) {
+            @RequestParam String uid,
+            @RequestHeader HttpHeaders headers) {
         // 参数验证
         if (!StringUtils.hasText(question) || !StringUtils.hasText(uid)) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -38,9 +45,11 @@ public class QuestionController {
             ));
         }
 
-        try {
+        long start = System.nanoTime();
+        try (TraceContext.Scope ignored = TraceContext.attach(TraceContext.fromHeaders(headers::getFirst))) {
             // 调用问题分类服务，使用uid作为sessionId
             ClassificationResult result = questionClassifierService.classifyQuestion(question, uid);
+            traceRecorder.recordSince("classify", start);
             
             // 构建响应数据
             Map<String, Object> responseData = Map.of(
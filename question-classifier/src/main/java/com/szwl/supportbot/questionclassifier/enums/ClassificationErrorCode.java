@@ -20,6 +20,9 @@ public enum ClassificationErrorCode {
     AI_RESULT_EMPTY(-11, "AI返回结果为空"),
     AI_PARSE_ERROR(-12, "AI结果解析失败"),
     
+    // 消息投递错误
+    MQ_SEND_FAILED(-20, "任务投递失败"),
+    
     // 系统错误
     SYSTEM_ERROR(-100, "系统错误"),
     CONFIG_ERROR(-101, "配置错误");
@@ -1,71 +1,248 @@
 package com.szwl.supportbot.questionclassifier.mq;
 
+import com.szwl.supportbot.common.mq.TaskMessage;
+import com.szwl.supportbot.common.mq.TaskMessageCodec;
+import com.szwl.supportbot.common.trace.TraceContext;
+import com.szwl.supportbot.common.trace.TraceRecorder;
 import com.szwl.supportbot.questionclassifier.config.QuestionCategoryConfig;
 import com.szwl.supportbot.questionclassifier.entity.QuestionClassificationResult.QuestionItem;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientServiceProvider;
-import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
 import org.apache.rocketmq.client.apis.producer.Producer;
 import org.apache.rocketmq.client.apis.producer.SendReceipt;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 任务生产者 (基于 RocketMQ 5.x API)
  * - 动态根据分类结果投递到不同的 Topic
  * - Producer 生命周期交给 Spring 管理
+ * - 异步发送，在途消息数受窗口限制；同一次分类的多个问题并发投递后统一等待结果
+ * - 启动时预声明并预热所有映射 Topic 的路由，分类映射变更后重建 Producer 重新预热
+ * - 消息体默认使用 protobuf 编码（TaskMessageCodec），通过 contentType 属性标识，可配置回 JSON
+ * - 当前线程的链路上下文写入任务消息字段与消息属性，任务键与 traceId 作为消息 Key，可在控制台按 Key 查询
  */
 @Slf4j
 @Service
 public class TaskProducer {
 
+    private static final String SEND_METRIC = "supportbot.mq.send";
+
     private final QuestionCategoryConfig categoryConfig;
     private final String nameServer;
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
     @Value("${rocketmq.default-topic}")
     private String defaultTopic;
-    private Producer producer; // v5 Producer 实例
+    @Value("${rocketmq.producer.send-message-timeout:10000}")
+    private long sendTimeoutMs;
+    @Value("${rocketmq.producer.max-in-flight:256}")
+    private int maxInFlight;
+    @Value("${rocketmq.producer.payload-content-type:" + TaskMessageCodec.CONTENT_TYPE_PROTOBUF + "}")
+    private String payloadContentType;
+
+    /**
+     * ServiceLoader 查找开销较大，只加载一次
+     */
+    private final ClientServiceProvider provider = ClientServiceProvider.loadService();
+    private volatile Producer producer; // v5 Producer 实例
+    private Semaphore inFlight;
 
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * 当前 Producer 已预热路由的 Topic 集合
+     */
+    private volatile Set<String> warmTopics = Collections.emptySet();
+
+    /**
+     * 是否全部映射 Topic 都已预热完成
+     */
+    private volatile boolean routesWarm;
+
+    /**
+     * 是否至少完成过一次全部 Topic 的预热（就绪检查只看首次预热）
+     */
+    private volatile boolean initiallyWarmed;
+
+    /**
+     * 最近一次预热失败、尚未预热的 Topic
+     */
+    private volatile Set<String> unwarmedTopics = Collections.emptySet();
+
+    /**
+     * 预热失败后的重试间隔
+     */
+    private static final long REWARM_RETRY_SECONDS = 30;
+    private final AtomicBoolean rewarmScheduled = new AtomicBoolean(false);
 
     public TaskProducer(
             QuestionCategoryConfig categoryConfig,
-            @Value("${rocketmq.name-server}") String nameServer
+            @Value("${rocketmq.name-server}") String nameServer,
+            MeterRegistry meterRegistry,
+            TraceRecorder traceRecorder
     ) {
         this.categoryConfig = categoryConfig;
         this.nameServer = nameServer;
+        this.meterRegistry = meterRegistry;
+        this.traceRecorder = traceRecorder;
     }
 
     /**
      * 初始化 Producer (Spring 启动时调用)
+     * 同步预热全部 Topic 路由，完成前应用不会就绪
      */
     @PostConstruct
     public void init() {
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        warmUp(collectTopics());
+    }
+
+    /**
+     * Nacos 配置刷新后，如果映射的 Topic 集合发生变化则重新预热
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onConfigRefreshed() {
+        Set<String> topics = collectTopics();
+        if (routesWarm && topics.equals(warmTopics)) {
+            log.debug("Topic 集合未变化，无需重新预热: {}", topics);
+            return;
+        }
+        log.info("分类映射已变更，重新预热 Topic 路由: {} -> {}", warmTopics, topics);
+        warmUp(topics);
+    }
+
+    /**
+     * 构建声明了全部 Topic 的 Producer（构建过程中客户端会拉取每个 Topic 的路由），成功后替换旧实例
+     */
+    private synchronized void warmUp(Set<String> topics) {
+        long start = System.currentTimeMillis();
         try {
-            ClientServiceProvider provider = ClientServiceProvider.loadService();
-            ClientConfiguration clientConfiguration = ClientConfiguration.newBuilder()
-                    .setEndpoints(nameServer)
-                    .build();
-
-            this.producer = provider.newProducerBuilder()
-                    .setClientConfiguration(clientConfiguration)
-                    // 提前声明默认 topic（可以用分类结果覆盖）
-                    .setTopics(defaultTopic)
-                    .build();
-
-            log.info("RocketMQ Producer 初始化成功, nameServer={}", nameServer);
+            Producer warmed = buildProducer(topics);
+            swapProducer(warmed);
+            warmTopics = topics;
+            unwarmedTopics = Collections.emptySet();
+            routesWarm = true;
+            initiallyWarmed = true;
+            log.info("RocketMQ Producer 初始化成功, nameServer={}, maxInFlight={}, 已预热 Topic={}, 耗时={}ms",
+                    nameServer, maxInFlight, topics, System.currentTimeMillis() - start);
+            return;
         } catch (Exception e) {
-            log.error("RocketMQ Producer 初始化失败: {}", e.getMessage(), e);
+            log.error("Topic 路由预热失败: topics={}, error={}", topics, e.getMessage(), e);
         }
+
+        routesWarm = false;
+        Set<String> unwarmed = new LinkedHashSet<>(topics);
+        unwarmed.removeAll(warmTopics);
+        unwarmedTopics = Collections.unmodifiableSet(unwarmed);
+        if (producer == null) {
+            // 保底：至少保证默认 Topic 可用（与预热前的行为一致）
+            try {
+                swapProducer(buildProducer(Set.of(defaultTopic)));
+                warmTopics = Set.of(defaultTopic);
+                log.warn("RocketMQ Producer 以默认 Topic 启动，其余 Topic 将在 {} 秒后重试预热", REWARM_RETRY_SECONDS);
+            } catch (Exception e) {
+                log.error("RocketMQ Producer 初始化失败: {}", e.getMessage(), e);
+            }
+        }
+        if (rewarmScheduled.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(REWARM_RETRY_SECONDS, TimeUnit.SECONDS)
+                    .execute(() -> {
+                        rewarmScheduled.set(false);
+                        if (!routesWarm) {
+                            warmUp(collectTopics());
+                        }
+                    });
+        }
+    }
+
+    private Producer buildProducer(Set<String> topics) throws Exception {
+        ClientConfiguration clientConfiguration = ClientConfiguration.newBuilder()
+                .setEndpoints(nameServer)
+                .build();
+
+        return provider.newProducerBuilder()
+                .setClientConfiguration(clientConfiguration)
+                // 预声明全部 Topic，启动阶段完成路由发现
+                .setTopics(topics.toArray(new String[0]))
+                .build();
+    }
+
+    /**
+     * 替换 Producer，旧实例等在途消息发送完成后再关闭
+     */
+    private void swapProducer(Producer warmed) {
+        Producer old = this.producer;
+        this.producer = warmed;
+        if (old != null) {
+            CompletableFuture.delayedExecutor(sendTimeoutMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> closeProducer(old));
+        }
+    }
+
+    /**
+     * 需要预热的 Topic：默认 Topic + 分类映射中的全部 Topic
+     */
+    private Set<String> collectTopics() {
+        Set<String> topics = new LinkedHashSet<>();
+        topics.add(defaultTopic);
+        if (categoryConfig.getDefaultTopic() != null) {
+            topics.add(categoryConfig.getDefaultTopic());
+        }
+        for (String topic : categoryConfig.getAllCategoryMappings().values()) {
+            if (topic != null && !topic.isBlank()) {
+                topics.add(topic.trim());
+            }
+        }
+        return Collections.unmodifiableSet(topics);
+    }
+
+    /**
+     * 路由是否已全部预热
+     */
+    public boolean isRoutesWarm() {
+        return routesWarm && producer != null;
+    }
+
+    /**
+     * 是否已就绪：首次全部预热成功后即保持就绪
+     * 配置刷新后的重新预热失败不影响就绪，旧 Producer 仍可投递到原有 Topic
+     */
+    public boolean isReady() {
+        return initiallyWarmed && producer != null;
+    }
+
+    /**
+     * 最近一次预热失败、尚未预热的 Topic
+     */
+    public Set<String> getUnwarmedTopics() {
+        return unwarmedTopics;
+    }
+
+    /**
+     * 已预热的 Topic
+     */
+    public Set<String> getWarmTopics() {
+        return warmTopics;
     }
 
     /**
@@ -73,9 +250,13 @@ public class TaskProducer {
      */
     @PreDestroy
     public void shutdown() {
-        if (producer != null) {
+        closeProducer(producer);
+    }
+
+    private void closeProducer(Producer target) {
+        if (target != null) {
             try {
-                producer.close();
+                target.close();
                 log.info("RocketMQ Producer 已关闭");
             } catch (Exception e) {
                 log.error("关闭 RocketMQ Producer 失败: {}", e.getMessage(), e);
@@ -84,24 +265,154 @@ public class TaskProducer {
     }
 
     /**
-     * 发送任务到队列
+     * 并发投递一次分类产生的全部任务，等待全部完成（或超时）后按条统计结果
+     * 整批共用一个发送截止时间：等待在途窗口与等待发送结果都从剩余时间里扣，最多阻塞 send-message-timeout
+     * 部分失败时不让整次请求失败：已投递的任务若随客户端重试再次投递会重复执行，
+     * 失败的任务只记录日志；超时未完成的任务仍可能投递成功，不计为失败
+     *
+     * @return 至少一条任务已投递（或仍在投递中）返回 true，全部失败返回 false
+     */
+    public boolean sendTasksToQueue(List<QuestionItem> questionItems, String sessionId) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        String batchId = batchId();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[questionItems.size()];
+        for (int i = 0; i < futures.length; i++) {
+            QuestionItem questionItem = questionItems.get(i);
+            futures[i] = sendTaskAsync(questionItem, questionItem.getOriginalText(), sessionId,
+                    taskKey(batchId, i), deadlineNanos);
+        }
+
+        try {
+            CompletableFuture.allOf(futures).get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("等待任务投递结果被中断: sessionId={}", sessionId);
+        } catch (TimeoutException e) {
+            log.error("等待任务投递结果超时: sessionId={}, timeout={}ms", sessionId, sendTimeoutMs);
+        } catch (Exception e) {
+            // 单条失败在下面按条统计
+        }
+
+        int sent = 0;
+        int pending = 0;
+        int failed = 0;
+        for (int i = 0; i < futures.length; i++) {
+            CompletableFuture<?> future = futures[i];
+            if (!future.isDone()) {
+                pending++;
+            } else if (future.isCompletedExceptionally()) {
+                failed++;
+                log.error("任务投递失败: sessionId={}, questionId={}", sessionId, questionItems.get(i).getId());
+            } else {
+                sent++;
+            }
+        }
+        if (failed > 0 || pending > 0) {
+            log.warn("任务部分投递: sessionId={}, total={}, sent={}, pending={}, failed={}",
+                    sessionId, futures.length, sent, pending, failed);
+        }
+        return sent > 0 || pending > 0;
+    }
+
+    /**
+     * 一次分类的批次ID：有链路上下文时使用 traceId（每条用户消息一个），否则随机生成
+     */
+    private static String batchId() {
+        TraceContext trace = TraceContext.current();
+        return trace != null ? trace.traceId() : randomId();
+    }
+
+    private static String randomId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * 任务键（批次ID + 问题在本次分类结果中的序号），每条任务唯一，作为消息 Key 可在控制台按 Key 查询；
+     * 客户端重试重复投递的消息 Key 相同。sessionId 是用户ID、问题ID是模型每次回复内的序号，都不能区分任务
      */
-    public void sendTaskToQueue(QuestionItem questionItem, String question, String sessionId) {
+    static String taskKey(String batchId, int index) {
+        return batchId + ":" + index;
+    }
+
+    /**
+     * 异步发送单个任务（单独成批，任务键随机生成）
+     * 在途消息数达到上限时阻塞等待窗口释放，超过发送超时时间则直接失败
+     */
+    public CompletableFuture<SendReceipt> sendTaskAsync(QuestionItem questionItem, String question, String sessionId) {
+        return sendTaskAsync(questionItem, question, sessionId, taskKey(randomId(), 0),
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs));
+    }
+
+    /**
+     * 异步发送单个任务，等待在途窗口最多到 deadlineNanos（System.nanoTime 时间）
+     */
+    private CompletableFuture<SendReceipt> sendTaskAsync(QuestionItem questionItem, String question, String sessionId,
+                                                         String taskKey, long deadlineNanos) {
         String topic = getTopicByCategory(questionItem.getCategory());
-        String messageBody = buildTaskMessage(questionItem, question, sessionId);
+        Producer producer = this.producer;
+        if (producer == null) {
+            recordSend(topic, 0, false);
+            return CompletableFuture.failedFuture(new IllegalStateException("RocketMQ Producer 未初始化"));
+        }
 
         try {
-            Message message = ClientServiceProvider.loadService()
-                    .newMessageBuilder()
-                    .setTopic(topic)
-                    .setBody(messageBody.getBytes())
-                    .build();
+            if (!inFlight.tryAcquire(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.error("在途消息数已达上限 {}，发送超时: topic={}", maxInFlight, topic);
+                recordSend(topic, 0, false);
+                return CompletableFuture.failedFuture(new TimeoutException("在途消息数已达上限"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordSend(topic, 0, false);
+            return CompletableFuture.failedFuture(e);
+        }
 
-            SendReceipt receipt = producer.send(message);
-            log.info("消息发送成功: topic={}, msgId={}", topic, receipt.getMessageId());
+        long start = System.nanoTime();
+        TraceContext trace = TraceContext.current();
+        CompletableFuture<SendReceipt> future;
+        try {
+            TaskMessage taskMessage = buildTaskMessage(questionItem, question, sessionId);
+            // MessageBuilder 非线程安全，每条消息从缓存的 provider 新建（仅是一个轻量对象）
+            MessageBuilder builder = provider.newMessageBuilder()
+                    .setTopic(topic)
+                    .setBody(encodeTaskMessage(taskMessage))
+                    .addProperty(TaskMessageCodec.CONTENT_TYPE_PROPERTY, payloadContentType);
+            if (trace != null) {
+                trace.writeProperties(builder::addProperty);
+                builder.setKeys(taskKey, trace.traceId());
+            } else {
+                builder.setKeys(taskKey);
+            }
+            future = producer.sendAsync(builder.build());
         } catch (Exception e) {
-            log.error("发送消息失败: {}", e.getMessage(), e);
+            inFlight.release();
+            recordSend(topic, System.nanoTime() - start, false);
+            log.error("发送消息失败: topic={}, error={}", topic, e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
         }
+
+        return future.whenComplete((receipt, throwable) -> {
+            inFlight.release();
+            recordSend(topic, System.nanoTime() - start, throwable == null);
+            traceRecorder.record(trace, "mq.send", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (throwable == null) {
+                log.info("消息发送成功: topic={}, msgId={}", topic, receipt.getMessageId());
+            } else {
+                log.error("发送消息失败: topic={}, error={}", topic, throwable.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 记录发送耗时与结果（按 topic 区分）
+     */
+    private void recordSend(String topic, long elapsedNanos, boolean success) {
+        Timer.builder(SEND_METRIC)
+                .description("RocketMQ 任务消息发送耗时")
+                .tag("topic", topic)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -112,24 +423,35 @@ public class TaskProducer {
     }
 
     /**
-     * 构建任务消息 (JSON 格式)
+     * 构建任务消息，附带当前线程的链路上下文
      */
-    private String buildTaskMessage(QuestionItem questionItem, String question, String sessionId) {
+    public TaskMessage buildTaskMessage(QuestionItem questionItem, String question, String sessionId) {
         // 在问题后面追加用户ID信息
         String questionWithUserId = question + "，用户ID是" + sessionId;
         log.info("问题追加用户ID: 原问题='{}', 追加后='{}', 用户ID={}", question, questionWithUserId, sessionId);
-        
-        Map<String, Object> messageMap = new HashMap<>();
-        messageMap.put("sessionId", sessionId);
-        messageMap.put("question", questionWithUserId);
-        messageMap.put("category", questionItem.getCategory());
-        messageMap.put("timestamp", LocalDateTime.now().format(formatter));
 
-        try {
-            return objectMapper.writeValueAsString(messageMap);
-        } catch (Exception e) {
-            return String.format("sessionId=%s, question=%s, category=%s",
-                    sessionId, questionWithUserId, questionItem.getCategory());
+        TaskMessage taskMessage = new TaskMessage();
+        taskMessage.setSessionId(sessionId);
+        taskMessage.setQuestion(questionWithUserId);
+        taskMessage.setCategory(questionItem.getCategory());
+        if (questionItem.getExtractedInfo() != null) {
+            taskMessage.setExtractedInfo(new LinkedHashMap<>(questionItem.getExtractedInfo()));
         }
+        taskMessage.setConfidence(questionItem.getConfidence());
+        taskMessage.setCreatedAtMs(System.currentTimeMillis());
+        TraceContext trace = TraceContext.current();
+        if (trace != null) {
+            taskMessage.setTraceId(trace.traceId());
+            taskMessage.setOriginTsMs(trace.originTsMs());
+            taskMessage.setMessageId(trace.messageId());
+        }
+        return taskMessage;
+    }
+
+    /**
+     * 按配置的内容类型编码消息体
+     */
+    public byte[] encodeTaskMessage(TaskMessage taskMessage) throws IOException {
+        return TaskMessageCodec.encode(taskMessage, payloadContentType);
     }
 }
@@ -0,0 +1,30 @@
+package com.szwl.supportbot.questionclassifier.mq;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Topic 路由预热健康检查
+ * 加入 readiness 分组后，首次全部映射 Topic 的路由预热完成才会对外就绪；
+ * 此后配置刷新导致的预热失败只在明细中列出未预热的 Topic，保持 UP，避免配置错误让所有实例同时摘流
+ */
+@Component("topicRoutes")
+public class TopicRouteHealthIndicator implements HealthIndicator {
+
+    private final TaskProducer taskProducer;
+
+    public TopicRouteHealthIndicator(TaskProducer taskProducer) {
+        this.taskProducer = taskProducer;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = taskProducer.isReady() ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("routesWarm", taskProducer.isRoutesWarm())
+                .withDetail("warmTopics", taskProducer.getWarmTopics())
+                .withDetail("unwarmedTopics", taskProducer.getUnwarmedTopics())
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.szwl.supportbot.questionclassifier.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的提示词模板
+ * 在配置加载/刷新时把模板切分为"字面量 + 占位符"片段，渲染时只做一次顺序拼接，
+ * 避免每个请求都重复执行 String.replace 和示例格式化
+ */
+public final class CompiledPromptTemplate {
+
+    /**
+     * 字面量片段，长度恒为 slots.length + 1
+     */
+    private final String[] literals;
+
+    /**
+     * 每个占位符位置对应的参数下标（与 compile 时传入的占位符顺序一致）
+     */
+    private final int[] slots;
+
+    /**
+     * 所有字面量的总长度，用于渲染时预估缓冲区大小
+     */
+    private final int literalLength;
+
+    private CompiledPromptTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板
+     * @param template 原始模板文本
+     * @param placeholders 占位符（如 "{user_input}"），渲染时按相同顺序传入参数
+     */
+    public static CompiledPromptTemplate compile(String template, String... placeholders) {
+        if (template == null) {
+            template = "";
+        }
+        List<String> literalList = new ArrayList<>();
+        List<Integer> slotList = new ArrayList<>();
+
+        int cursor = 0;
+        while (true) {
+            // 找到当前位置之后最先出现的占位符
+            int matchIndex = -1;
+            int matchSlot = -1;
+            for (int i = 0; i < placeholders.length; i++) {
+                int index = template.indexOf(placeholders[i], cursor);
+                if (index >= 0 && (matchIndex < 0 || index < matchIndex)) {
+                    matchIndex = index;
+                    matchSlot = i;
+                }
+            }
+            if (matchIndex < 0) {
+                break;
+            }
+            literalList.add(template.substring(cursor, matchIndex));
+            slotList.add(matchSlot);
+            cursor = matchIndex + placeholders[matchSlot].length();
+        }
+        literalList.add(template.substring(cursor));
+
+        int[] slots = new int[slotList.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = slotList.get(i);
+        }
+        return new CompiledPromptTemplate(literalList.toArray(new String[0]), slots);
+    }
+
+    /**
+     * 在模板前后追加固定文本（前缀/后缀同样在编译期完成拼接）
+     */
+    public CompiledPromptTemplate wrap(String prefix, String suffix) {
+        String[] wrapped = literals.clone();
+        wrapped[0] = (prefix != null ? prefix : "") + wrapped[0];
+        wrapped[wrapped.length - 1] = wrapped[wrapped.length - 1] + (suffix != null ? suffix : "");
+        return new CompiledPromptTemplate(wrapped, slots);
+    }
+
+    /**
+     * 渲染模板，参数顺序与编译时的占位符顺序一致
+     */
+    public String render(String... values) {
+        int capacity = literalLength;
+        for (int slot : slots) {
+            String value = values[slot];
+            capacity += value != null ? value.length() : 4;
+        }
+
+        StringBuilder sb = new StringBuilder(capacity);
+        sb.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(values[slots[i]]);
+            sb.append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 字面量总长度
+     */
+    public int getLiteralLength() {
+        return literalLength;
+    }
+
+    /**
+     * 占位符出现次数
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+}
@@ -4,6 +4,8 @@ import com.szwl.supportbot.questionclassifier.config.PromptTemplateConfig;
 import com.szwl.supportbot.questionclassifier.entity.QuestionClassificationResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 
@@ -12,18 +14,39 @@ import java.util.List;
 /**
  * 提示词构建器
  * 专门负责构建AI分类的提示词
+ * 模板在首次使用和每次配置刷新（@RefreshScope）时预编译，请求路径只做一次拼接
  */
 @Slf4j
 @Component
 public class PromptBuilder {
 
+    private static final String USER_INPUT = "{user_input}";
+    private static final String CONVERSATION_CONTEXT = "{conversation_context}";
+    private static final String CONTEXT = "{context}";
+    private static final String QUESTION = "{question}";
+    private static final String NO_HISTORY = "无历史对话记录";
+
+    /**
+     * 结构化输出格式要求
+     */
+    private static final String FORMAT_REQUIREMENT = """
+
+            请按照以下JSON格式输出结果，不要包含任何多余的文字：
+            {format}
+            """;
+
     private final PromptTemplateConfig promptTemplateConfig;
     private final BeanOutputConverter<QuestionClassificationResult> resultConverter;
     private final String resultFormat;
 
+    /**
+     * 当前生效的已编译模板，配置刷新时整体替换
+     */
+    private volatile CompiledPrompts compiledPrompts;
+
     public PromptBuilder(PromptTemplateConfig promptTemplateConfig) {
         this.promptTemplateConfig = promptTemplateConfig;
-        
+
         // 初始化结构化输出转换器
         this.resultConverter = new BeanOutputConverter<>(
             new ParameterizedTypeReference<QuestionClassificationResult>() {}
@@ -32,63 +55,101 @@ public class PromptBuilder {
         log.info("结构化输出格式: {}", resultFormat);
     }
 
+    /**
+     * 配置刷新后重新编译模板
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onConfigRefreshed() {
+        this.compiledPrompts = compile();
+        log.info("提示词配置已刷新，模板重新编译完成");
+    }
+
     /**
      * 构建分类提示词
      */
     public String buildClassificationPrompt(String question, String context) {
-        // 获取Nacos配置的提示词
+        CompiledPrompts prompts = getCompiledPrompts();
+
+        if (prompts.classification != null) {
+            // 使用Nacos配置的提示词（系统提示词、示例、格式要求已在编译期拼入模板）
+            String conversationContext = context != null && !context.trim().isEmpty() ? context : NO_HISTORY;
+            return prompts.classification.render(question, conversationContext);
+        }
+
+        if (prompts.systemPrefix != null) {
+            // 未配置用户提示词模板，使用默认用户提示词
+            StringBuilder prompt = new StringBuilder(
+                prompts.systemPrefix.length() + FORMAT_REQUIREMENT.length() + question.length()
+                    + (context != null ? context.length() : 0) + 128);
+            prompt.append(prompts.systemPrefix);
+            appendDefaultUserPrompt(prompt, question, context);
+            prompt.append(FORMAT_REQUIREMENT);
+            return prompt.toString();
+        }
+
+        // 回退到硬编码的模板
+        return prompts.fallback.render(context, question);
+    }
+
+    /**
+     * 获取已编译模板，首次调用时编译
+     */
+    private CompiledPrompts getCompiledPrompts() {
+        CompiledPrompts prompts = compiledPrompts;
+        if (prompts == null) {
+            synchronized (this) {
+                prompts = compiledPrompts;
+                if (prompts == null) {
+                    prompts = compile();
+                    compiledPrompts = prompts;
+                }
+            }
+        }
+        return prompts;
+    }
+
+    /**
+     * 根据当前配置编译模板
+     */
+    private CompiledPrompts compile() {
         var questionConfig = promptTemplateConfig.getQuestionClassification();
-        
+
         if (questionConfig != null && questionConfig.getSystemPrompt() != null) {
-            // 使用Nacos配置的提示词
-            String systemPrompt = questionConfig.getSystemPrompt();
-            
-            // 如果有示例，添加到系统提示词中
+            // 系统提示词 + 示例在编译期一次性格式化
+            StringBuilder systemPrompt = new StringBuilder(questionConfig.getSystemPrompt());
             if (questionConfig.getExamples() != null && !questionConfig.getExamples().isEmpty()) {
-                systemPrompt += "\n\n示例：\n" + formatExamples(questionConfig.getExamples());
+                systemPrompt.append("\n\n示例：\n");
+                appendExamples(systemPrompt, questionConfig.getExamples());
             }
-            
-            // 构建用户提示词，支持聊天记录上下文
-            String userPrompt = questionConfig.getUserPromptTemplate() != null ? 
-                questionConfig.getUserPromptTemplate()
-                    .replace("{user_input}", question)
-                    .replace("{conversation_context}", context != null && !context.trim().isEmpty() ? context : "无历史对话记录") :
-                buildDefaultUserPrompt(question, context);
-            
-            // 组合系统提示词和用户提示词，并添加结构化输出格式要求
-            String formatRequirement = """
-                
-                请按照以下JSON格式输出结果，不要包含任何多余的文字：
-                {format}
-                """;
-            
-            return systemPrompt + "\n\n" + userPrompt + formatRequirement;
-            
-        } else {
-            // 回退到硬编码的模板
-            log.warn("Nacos提示词配置未加载，使用硬编码模板");
-            String baseTemplate = promptTemplateConfig.getUnifiedAnalysisTemplate()
-                .replace("{context}", context)
-                .replace("{question}", question);
-            
-            // 添加结构化输出格式要求
-            String formatRequirement = """
-                
-                请按照以下JSON格式输出结果，不要包含任何多余的文字：
-                {format}
-                """;
-            
-            return baseTemplate + formatRequirement;
+            systemPrompt.append("\n\n");
+            String systemPrefix = systemPrompt.toString();
+
+            if (questionConfig.getUserPromptTemplate() != null) {
+                CompiledPromptTemplate classification = CompiledPromptTemplate
+                    .compile(questionConfig.getUserPromptTemplate(), USER_INPUT, CONVERSATION_CONTEXT)
+                    .wrap(systemPrefix, FORMAT_REQUIREMENT);
+                log.info("分类提示词模板编译完成: 示例数={}, 固定文本长度={}, 占位符数={}",
+                    questionConfig.getExamples() != null ? questionConfig.getExamples().size() : 0,
+                    classification.getLiteralLength(), classification.getSlotCount());
+                return new CompiledPrompts(classification, null, null);
+            }
+            log.info("未配置用户提示词模板，使用默认用户提示词");
+            return new CompiledPrompts(null, systemPrefix, null);
         }
+
+        log.warn("Nacos提示词配置未加载，使用硬编码模板");
+        CompiledPromptTemplate fallback = CompiledPromptTemplate
+            .compile(promptTemplateConfig.getUnifiedAnalysisTemplate(), CONTEXT, QUESTION)
+            .wrap(null, FORMAT_REQUIREMENT);
+        return new CompiledPrompts(null, null, fallback);
     }
 
     /**
      * 构建默认的用户提示词（当Nacos配置不可用时）
      */
-    private String buildDefaultUserPrompt(String question, String context) {
-        StringBuilder prompt = new StringBuilder();
+    private void appendDefaultUserPrompt(StringBuilder prompt, String question, String context) {
         prompt.append("请对以下用户输入进行分类和信息提取：\n\n");
-        
+
         // 如果有聊天记录上下文，添加到提示词中
         if (context != null && !context.trim().isEmpty()) {
             prompt.append("=== 对话历史上下文 ===\n");
@@ -100,25 +161,25 @@ public class PromptBuilder {
             prompt.append(question).append("\n\n");
             prompt.append("请对当前问题进行分类和信息提取。");
         }
-        
-        return prompt.toString();
     }
 
     /**
      * 格式化示例数据
      */
-    private String formatExamples(List<PromptTemplateConfig.Example> examples) {
-        if (examples == null || examples.isEmpty()) {
-            return "";
-        }
-        
-        StringBuilder sb = new StringBuilder();
+    private void appendExamples(StringBuilder sb, List<PromptTemplateConfig.Example> examples) {
         for (int i = 0; i < examples.size(); i++) {
             PromptTemplateConfig.Example example = examples.get(i);
             sb.append("示例").append(i + 1).append(":\n");
             sb.append("用户输入: ").append(example.getUserInput()).append("\n");
             sb.append("期望输出: ").append(example.getExpectedOutput()).append("\n\n");
         }
-        return sb.toString();
+    }
+
+    /**
+     * 一次配置对应的编译结果，三者只有一个生效
+     */
+    private record CompiledPrompts(CompiledPromptTemplate classification,
+                                   String systemPrefix,
+                                   CompiledPromptTemplate fallback) {
     }
 }
@@ -1,11 +1,13 @@
 package com.szwl.supportbot.questionclassifier.service;
 
-import com.szwl.supportbot.questionclassifier.config.PromptTemplateConfig;
+import com.szwl.supportbot.common.llm.LlmRateLimitException;
 import com.szwl.supportbot.questionclassifier.entity.ClassificationResult;
 import com.szwl.supportbot.questionclassifier.service.SessionMemory;
 import com.szwl.supportbot.questionclassifier.entity.QuestionClassificationResult;
 import com.szwl.supportbot.questionclassifier.enums.ClassificationErrorCode;
 import com.szwl.supportbot.questionclassifier.mq.TaskProducer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,18 +18,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class QuestionClassifierService {
 
+    private static final String CLASSIFY_METRIC = "supportbot.classify";
+    private static final String RETRY_METRIC = "supportbot.classify.retries";
+
     private final ChatClient chatClient;
     private final SessionMemory sessionMemory;
     private final TaskProducer taskProducer;
-    private final PromptTemplateConfig promptTemplateConfig;
 
     private final PromptBuilder promptBuilder;
     private final ResultParser resultParser;
+    private final MeterRegistry meterRegistry;
     
     @Value("${ai.classification.max-retries:3}")
     private int maxRetries;
@@ -38,13 +44,15 @@ public class QuestionClassifierService {
     public QuestionClassifierService(ChatClient.Builder builder, 
                                    SessionMemory sessionMemory, 
                                    TaskProducer taskProducer,
-                                   PromptTemplateConfig promptTemplateConfig) {
+                                   PromptBuilder promptBuilder,
+                                   MeterRegistry meterRegistry) {
         this.chatClient = builder.build();
         this.sessionMemory = sessionMemory;
         this.taskProducer = taskProducer;
-        this.promptTemplateConfig = promptTemplateConfig;
-        this.promptBuilder = new PromptBuilder(promptTemplateConfig);
+        // 使用容器中的 PromptBuilder，以便接收配置刷新事件重新编译模板
+        this.promptBuilder = promptBuilder;
         this.resultParser = new ResultParser();
+        this.meterRegistry = meterRegistry;
     }
 
 
@@ -53,6 +61,18 @@ public class QuestionClassifierService {
      * @return 包含错误码、原因和数据的分类结果
      */
     public ClassificationResult classifyQuestion(String question, String sessionId) {
+        long start = System.nanoTime();
+        ClassificationResult result = classify(question, sessionId);
+        Timer.builder(CLASSIFY_METRIC)
+                .description("问题分类耗时（含会话读取、模型调用与任务投递）")
+                .tag("outcome", result.getCode() == ClassificationErrorCode.SUCCESS.getCode() ? "success" : "failure")
+                .tag("code", String.valueOf(result.getCode()))
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private ClassificationResult classify(String question, String sessionId) {
         try {
             // 获取对话历史上下文作为分类模型的记忆
             String context = sessionMemory.getConversationContext(sessionId);
@@ -72,12 +92,17 @@ public class QuestionClassifierService {
             
             // 调用AI模型
             for (int attempt = 1; attempt <= maxRetries; attempt++) {
+                if (attempt > 1) {
+                    meterRegistry.counter(RETRY_METRIC).increment();
+                }
                 try {
                     QuestionClassificationResult classificationResult = callAIModel(prompt, context);
                     
                     if (classificationResult != null && classificationResult.getQuestions() != null && !classificationResult.getQuestions().isEmpty()) {
-                        // 处理分类结果
-                        processClassificationResult(classificationResult, question, sessionId);
+                        // 处理分类结果（投递失败不重试AI调用）
+                        if (!processClassificationResult(classificationResult, question, sessionId)) {
+                            return ClassificationResult.failure(ClassificationErrorCode.MQ_SEND_FAILED);
+                        }
                         log.info("问题分类成功，共处理 {} 个问题", classificationResult.getQuestions().size());
                         return ClassificationResult.success();
                     } else {
@@ -88,6 +113,11 @@ public class QuestionClassifierService {
                     }
                     
                 } catch (Exception e) {
+                    if (LlmRateLimitException.isCause(e)) {
+                        // 已在限流队列中等待超时，立即重试只会加剧拥塞
+                        log.warn("AI调用被限流拒绝，不再重试: {}", e.getMessage());
+                        return ClassificationResult.failure(ClassificationErrorCode.AI_CALL_FAILED);
+                    }
                     if (attempt == maxRetries) {
                         log.error("问题分类失败，已重试{}次: {}", maxRetries, e.getMessage());
                         return ClassificationResult.failure(ClassificationErrorCode.AI_CALL_FAILED);
@@ -134,14 +164,13 @@ public class QuestionClassifierService {
 
     /**
      * 处理分类结果
+     * 所有问题并发投递，全部完成后返回；部分失败不视为整体失败，避免客户端重试重复投递已成功的任务
+     *
+     * @return 至少一条任务投递成功返回 true
      */
-    private void processClassificationResult(QuestionClassificationResult result, String originalQuestion, String sessionId) {
+    private boolean processClassificationResult(QuestionClassificationResult result, String originalQuestion, String sessionId) {
         log.info("处理分类结果，共 {} 个问题", result.getQuestions().size());
-        
-        // 统一循环处理所有问题
-        for (QuestionClassificationResult.QuestionItem questionItem : result.getQuestions()) {
-            taskProducer.sendTaskToQueue(questionItem, questionItem.getOriginalText(), sessionId);
-        }
+        return taskProducer.sendTasksToQueue(result.getQuestions(), sessionId);
     }
 
 }